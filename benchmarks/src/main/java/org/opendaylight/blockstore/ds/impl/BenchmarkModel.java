@@ -0,0 +1,126 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.common.QNameModule;
+import org.opendaylight.yangtools.yang.common.Uint32;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapNode;
+import org.opendaylight.yangtools.yang.data.spi.node.ImmutableNodes;
+import org.opendaylight.yangtools.yang.model.api.EffectiveModelContext;
+import org.opendaylight.yangtools.yang.test.util.YangParserTestUtils;
+
+/**
+ * The data shapes of {@code blockstore-benchmark.yang}: a wide list of items, and a list of items below eight levels
+ * of containers.
+ */
+@SuppressWarnings("all")
+final class BenchmarkModel {
+
+    static final QNameModule MODULE = QNameModule.of("urn:opendaylight:blockstore:benchmark");
+    static final QName WIDE = QName.create(MODULE, "wide");
+    static final QName DEEP = QName.create(MODULE, "deep");
+    static final QName ITEM = QName.create(MODULE, "item");
+    static final QName ID = QName.create(MODULE, "id");
+    static final QName NAME = QName.create(MODULE, "name");
+    static final QName COUNTER = QName.create(MODULE, "counter");
+    static final int DEPTH = 8;
+
+    static final YangInstanceIdentifier WIDE_PATH = YangInstanceIdentifier.of(WIDE);
+    static final YangInstanceIdentifier DEEP_PATH = YangInstanceIdentifier.of(DEEP);
+
+    private static volatile EffectiveModelContext context;
+
+    private BenchmarkModel() {
+    }
+
+    static EffectiveModelContext context() {
+        EffectiveModelContext parsed = context;
+        if (parsed == null) {
+            synchronized (BenchmarkModel.class) {
+                parsed = context;
+                if (parsed == null) {
+                    parsed = YangParserTestUtils.parseYangResource("/blockstore-benchmark.yang");
+                    context = parsed;
+                }
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Returns the {@code wide} container with {@code size} items, whose counters are set to {@code round}.
+     */
+    static ContainerNode wide(int size, long round) {
+        return ImmutableNodes.newContainerBuilder()
+            .withNodeIdentifier(new NodeIdentifier(WIDE))
+            .withChild(items(size, round))
+            .build();
+    }
+
+    /**
+     * Returns the {@code deep} container with {@code size} items at the bottom, whose counters are set to
+     * {@code round}.
+     */
+    static ContainerNode deep(int size, long round) {
+        ContainerNode level = ImmutableNodes.newContainerBuilder()
+            .withNodeIdentifier(new NodeIdentifier(level(DEPTH)))
+            .withChild(ImmutableNodes.leafNode(NAME, "level" + DEPTH))
+            .withChild(items(size, round))
+            .build();
+        for (int i = DEPTH - 1; i > 0; i--) {
+            level = ImmutableNodes.newContainerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(level(i)))
+                .withChild(ImmutableNodes.leafNode(NAME, "level" + i))
+                .withChild(level)
+                .build();
+        }
+        return ImmutableNodes.newContainerBuilder()
+            .withNodeIdentifier(new NodeIdentifier(DEEP))
+            .withChild(level)
+            .build();
+    }
+
+    /**
+     * Returns the path of an item of the {@code wide} list.
+     */
+    static YangInstanceIdentifier widePath(int id) {
+        return YangInstanceIdentifier.builder().node(WIDE).node(ITEM).nodeWithKey(ITEM, ID, Uint32.valueOf(id))
+            .build();
+    }
+
+    /**
+     * Returns the path of an item of the list at the bottom of the {@code deep} container.
+     */
+    static YangInstanceIdentifier deepPath(int id) {
+        YangInstanceIdentifier.InstanceIdentifierBuilder builder = YangInstanceIdentifier.builder().node(DEEP);
+        for (int i = 1; i <= DEPTH; i++) {
+            builder.node(level(i));
+        }
+        return builder.node(ITEM).nodeWithKey(ITEM, ID, Uint32.valueOf(id)).build();
+    }
+
+    static MapEntryNode item(int id, long round) {
+        return ImmutableNodes.newMapEntryBuilder()
+            .withNodeIdentifier(NodeIdentifierWithPredicates.of(ITEM, ID, Uint32.valueOf(id)))
+            .withChild(ImmutableNodes.leafNode(ID, Uint32.valueOf(id)))
+            .withChild(ImmutableNodes.leafNode(NAME, "item-" + id))
+            .withChild(ImmutableNodes.leafNode(COUNTER, round))
+            .build();
+    }
+
+    private static MapNode items(int size, long round) {
+        var builder = ImmutableNodes.newSystemMapBuilder().withNodeIdentifier(new NodeIdentifier(ITEM));
+        for (int i = 0; i < size; i++) {
+            builder.withChild(item(i, round));
+        }
+        return builder.build();
+    }
+
+    private static QName level(int depth) {
+        return QName.create(MODULE, "level" + depth);
+    }
+}
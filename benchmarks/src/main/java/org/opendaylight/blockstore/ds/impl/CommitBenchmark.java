@@ -0,0 +1,105 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.mdsal.dom.spi.store.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.mdsal.dom.spi.store.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of committing a transaction to a {@link HyperledgerDataStore} backed by a {@link SimulatedLedgerBackend}
+ * which cuts a block per transaction, from the three-phase commit of the local data tree to the ledger commit status.
+ * Commits alternate between two versions of {@code size} list items which differ in every counter, either at the top
+ * of the tree ({@code wide}) or below eight levels of containers ({@code deep}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@SuppressWarnings("all")
+public class CommitBenchmark {
+
+    @Param({"wide", "deep"})
+    public String shape;
+
+    @Param({"10", "1000"})
+    public int size;
+
+    @Param({"SUBTREE", "LIST_ENTRY"})
+    public HyperledgerStorageGranularity granularity;
+
+    /**
+     * Time the simulated ledger takes to endorse a transaction, and again to commit it.
+     */
+    @Param({"0", "2000"})
+    public long ledgerLatencyMicros;
+
+    private ExecutorService listenerExecutor;
+    private SimulatedLedgerBackend ledger;
+    private HyperledgerDataStore store;
+    private YangInstanceIdentifier path;
+    private NormalizedNode[] versions;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        listenerExecutor = Executors.newSingleThreadExecutor();
+        ledger = new SimulatedLedgerBackend("benchmark", SimulatedLedgerProperties.builder()
+            .endorseLatency(ledgerLatencyMicros)
+            .orderLatency(0)
+            .commitLatency(ledgerLatencyMicros)
+            .latencyJitter(0)
+            .blockTimeout(0)
+            .build());
+        store = new HyperledgerDataStore("benchmark", LogicalDatastoreType.CONFIGURATION, listenerExecutor, 1000,
+                false, ledger, HyperledgerDataStoreConfigProperties.builder()
+                    .storageGranularity(granularity)
+                    .applyRemoteChanges(false)
+                    .traceSampleRate(0)
+                    .metricsJmx(false)
+                    .build());
+        store.onModelContextUpdated(BenchmarkModel.context());
+        store.init(0);
+        boolean deep = "deep".equals(shape);
+        path = deep ? BenchmarkModel.DEEP_PATH : BenchmarkModel.WIDE_PATH;
+        versions = new NormalizedNode[] {
+            deep ? BenchmarkModel.deep(size, 0) : BenchmarkModel.wide(size, 0),
+            deep ? BenchmarkModel.deep(size, 1) : BenchmarkModel.wide(size, 1)
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.close();
+        ledger.close();
+        listenerExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void commit() throws Exception {
+        DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(path, versions[round++ & 1]);
+        DOMStoreThreePhaseCommitCohort cohort = transaction.ready();
+        cohort.canCommit().get();
+        cohort.preCommit().get();
+        cohort.commit().get();
+    }
+}
@@ -0,0 +1,54 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to encode and decode ledger keys with {@link HyperledgerKeyCodec}, for the path of a list item at the top of
+ * the tree ({@code wide}) and below eight levels of containers ({@code deep}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("all")
+public class KeyCodecBenchmark {
+
+    @Param({"wide", "deep"})
+    public String shape;
+
+    private HyperledgerKeyCodec codec;
+    private YangInstanceIdentifier path;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        codec = new HyperledgerKeyCodec(HyperledgerDataStore.CONFIGURATION_PREFIX);
+        codec.setModelContext(BenchmarkModel.context());
+        path = "deep".equals(shape) ? BenchmarkModel.deepPath(42) : BenchmarkModel.widePath(42);
+        encoded = codec.encode(path);
+    }
+
+    @Benchmark
+    public String encode() {
+        return codec.encode(path);
+    }
+
+    @Benchmark
+    public YangInstanceIdentifier decode() throws HyperledgerException {
+        return codec.decode(encoded);
+    }
+}
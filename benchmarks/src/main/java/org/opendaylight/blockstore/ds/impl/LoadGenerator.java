@@ -0,0 +1,180 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.mdsal.dom.api.DOMDataBroker;
+import org.opendaylight.mdsal.dom.api.DOMDataTreeWriteTransaction;
+import org.opendaylight.mdsal.dom.spi.FixedDOMSchemaService;
+
+/**
+ * Drives whole brokers against a {@link SimulatedLedgerBackend}, or with {@code ledger=log} against a
+ * {@link LogLedgerBackend} in {@code ledgerDirectory}. {@code controllers} brokers share one ledger and follow each
+ * other's changes through its change stream. Each has {@code clients} threads which commit
+ * write transactions of {@code itemsPerTransaction} items back to back. After {@code warmup} seconds, commits
+ * are measured for {@code duration} seconds, then the throughput and commit latency seen by the clients are reported
+ * together with what the ledger made of the transactions.
+ *
+ * <p>Settings are system properties named after the constants below, for example:
+ * <pre>
+ *   java -Dcontrollers=2 -Dclients=16 -DasyncSubmit=true -DblockSize=50 \
+ *       -cp benchmarks/target/benchmarks.jar org.opendaylight.blockstore.ds.impl.LoadGenerator
+ * </pre>
+ * Clients write items of their own unless {@code sharedKeys} is set, in which case they pick from the same
+ * {@code keysPerClient} items and their transactions may conflict, in the datastore or, with {@code mvccConflicts}, on
+ * the ledger.
+ */
+@SuppressWarnings("all")
+public final class LoadGenerator {
+
+    private static final int CONTROLLERS = Integer.getInteger("controllers", 1);
+    private static final int CLIENTS = Integer.getInteger("clients", 8);
+    private static final int WARMUP = Integer.getInteger("warmup", 5);
+    private static final int DURATION = Integer.getInteger("duration", 30);
+    private static final int ITEMS_PER_TRANSACTION = Integer.getInteger("itemsPerTransaction", 1);
+    private static final int KEYS_PER_CLIENT = Integer.getInteger("keysPerClient", 1000);
+    private static final boolean SHARED_KEYS = Boolean.getBoolean("sharedKeys");
+
+    private static final boolean ASYNC_SUBMIT = Boolean.getBoolean("asyncSubmit");
+    private static final long GROUP_COMMIT_WINDOW = Long.getLong("groupCommitWindow", 0);
+    private static final String GRANULARITY = System.getProperty("granularity", "list_entry");
+
+    private static final String LEDGER = System.getProperty("ledger", "simulated");
+    private static final String LEDGER_DIRECTORY = System.getProperty("ledgerDirectory", "target/load-ledger");
+    private static final long ENDORSE_LATENCY = Long.getLong("endorseLatency",
+            SimulatedLedgerProperties.DEFAULT_ENDORSE_LATENCY);
+    private static final long ORDER_LATENCY = Long.getLong("orderLatency",
+            SimulatedLedgerProperties.DEFAULT_ORDER_LATENCY);
+    private static final long COMMIT_LATENCY = Long.getLong("commitLatency",
+            SimulatedLedgerProperties.DEFAULT_COMMIT_LATENCY);
+    private static final double LATENCY_JITTER = Double.parseDouble(System.getProperty("latencyJitter",
+            String.valueOf(SimulatedLedgerProperties.DEFAULT_LATENCY_JITTER)));
+    private static final int BLOCK_SIZE = Integer.getInteger("blockSize", SimulatedLedgerProperties.DEFAULT_BLOCK_SIZE);
+    private static final long BLOCK_TIMEOUT = Long.getLong("blockTimeout",
+            SimulatedLedgerProperties.DEFAULT_BLOCK_TIMEOUT);
+    private static final boolean MVCC_CONFLICTS = Boolean.getBoolean("mvccConflicts");
+
+    private final HyperledgerHistogram latencies = new HyperledgerHistogram();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        LedgerBackend ledger = "log".equals(LEDGER)
+            ? new LogLedgerBackend("load", LogLedgerProperties.builder().directory(LEDGER_DIRECTORY).build())
+            : new SimulatedLedgerBackend("load", SimulatedLedgerProperties.builder()
+                .endorseLatency(ENDORSE_LATENCY)
+                .orderLatency(ORDER_LATENCY)
+                .commitLatency(COMMIT_LATENCY)
+                .latencyJitter(LATENCY_JITTER)
+                .blockSize(BLOCK_SIZE)
+                .blockTimeout(BLOCK_TIMEOUT)
+                .mvccConflicts(MVCC_CONFLICTS)
+                .build());
+        HyperledgerDataStoreConfigProperties properties = HyperledgerDataStoreConfigProperties.builder()
+            .asyncSubmit(ASYNC_SUBMIT)
+            .groupCommitWindow(GROUP_COMMIT_WINDOW)
+            .storageGranularity(HyperledgerStorageGranularity.parse(GRANULARITY))
+            .traceSampleRate(0)
+            .metricsJmx(false)
+            .build();
+        FixedDOMSchemaService schemaService = new FixedDOMSchemaService(BenchmarkModel.context());
+
+        List<HyperledgerDOMDataBrokerProvider> controllers = new ArrayList<>();
+        List<Thread> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONTROLLERS; i++) {
+                HyperledgerDOMDataBrokerProvider controller = new HyperledgerDOMDataBrokerProvider("controller-" + i,
+                        schemaService, ledger, properties);
+                controller.init();
+                controllers.add(controller);
+                for (int j = 0; j < CLIENTS; j++) {
+                    int client = i * CLIENTS + j;
+                    Thread thread = new Thread(() -> commitLoop(controller.getDOMDataBroker(), client),
+                            "load-client-" + client);
+                    clients.add(thread);
+                }
+            }
+            clients.forEach(Thread::start);
+
+            TimeUnit.SECONDS.sleep(WARMUP);
+            measuring = true;
+            long start = System.nanoTime();
+            TimeUnit.SECONDS.sleep(DURATION);
+            measuring = false;
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(ledger, seconds);
+        } finally {
+            stopped = true;
+            for (Thread client : clients) {
+                client.join();
+            }
+            for (HyperledgerDOMDataBrokerProvider controller : controllers) {
+                controller.close();
+            }
+            ledger.close();
+        }
+    }
+
+    private void commitLoop(DOMDataBroker broker, int client) {
+        int firstKey = SHARED_KEYS ? 0 : client * KEYS_PER_CLIENT;
+        long round = 0;
+        while (!stopped) {
+            round++;
+            long start = System.nanoTime();
+            DOMDataTreeWriteTransaction transaction = broker.newWriteOnlyTransaction();
+            for (int i = 0; i < ITEMS_PER_TRANSACTION; i++) {
+                int id = firstKey + ThreadLocalRandom.current().nextInt(KEYS_PER_CLIENT);
+                transaction.put(LogicalDatastoreType.CONFIGURATION, BenchmarkModel.widePath(id),
+                        BenchmarkModel.item(id, round));
+            }
+            try {
+                transaction.commit().get();
+                if (measuring) {
+                    latencies.record(System.nanoTime() - start);
+                }
+            } catch (ExecutionException e) {
+                if (measuring) {
+                    failures.computeIfAbsent(e.getCause().getClass().getSimpleName(), ignored -> new LongAdder())
+                        .increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void report(LedgerBackend ledger, double seconds) throws HyperledgerException {
+        Map<String, Long> failed = new TreeMap<>();
+        failures.forEach((cause, count) -> failed.put(cause, count.sum()));
+        System.out.printf("%d controllers x %d clients, %d items per transaction, %s submit, %s granularity%n",
+                CONTROLLERS, CLIENTS, ITEMS_PER_TRANSACTION, ASYNC_SUBMIT ? "async" : "sync", GRANULARITY);
+        System.out.printf("commits:   %d in %.1f s, %.1f/s, failed %s%n", latencies.count(), seconds,
+                latencies.count() / seconds, failed);
+        System.out.printf("latency:   mean %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, "
+                + "max %.2f ms%n", latencies.mean() / 1e6, millis(latencies.percentile(0.5)),
+                millis(latencies.percentile(0.9)), millis(latencies.percentile(0.99)),
+                millis(latencies.percentile(0.999)), millis(latencies.max()));
+        System.out.printf("ledger:    %s at height %d, %d MVCC conflicts%n", ledger.name(), ledger.height(),
+                ledger instanceof SimulatedLedgerBackend ? ((SimulatedLedgerBackend) ledger).conflicts() : 0);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
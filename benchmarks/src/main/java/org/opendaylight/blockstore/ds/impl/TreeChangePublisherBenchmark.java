@@ -0,0 +1,112 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.opendaylight.blockstore.ds.inmemory.copypaste.InMemoryDOMDataStore;
+import org.opendaylight.mdsal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.mdsal.dom.spi.store.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.mdsal.dom.spi.store.DOMStoreWriteTransaction;
+import org.opendaylight.yangtools.concepts.Registration;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from committing a change to an {@link InMemoryDOMDataStore} until each of {@code listeners} tree change
+ * listeners of the changed subtree has been notified, through the store's tree change publisher and its notification
+ * queues on a pool of {@code threads}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("all")
+public class TreeChangePublisherBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int listeners;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private final AtomicInteger notified = new AtomicInteger();
+    private final List<Registration> registrations = new ArrayList<>();
+    private ExecutorService listenerExecutor;
+    private InMemoryDOMDataStore store;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        listenerExecutor = Executors.newFixedThreadPool(threads);
+        store = new InMemoryDOMDataStore("benchmark", listenerExecutor, 1000, false);
+        store.onModelContextUpdated(BenchmarkModel.context());
+        commit(BenchmarkModel.wide(10, 0));
+        for (int i = 0; i < listeners; i++) {
+            registrations.add(store.registerTreeChangeListener(BenchmarkModel.WIDE_PATH,
+                new DOMDataTreeChangeListener() {
+                    @Override
+                    public void onDataTreeChanged(List<DataTreeCandidate> changes) {
+                        notified.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onInitialData() {
+                        notified.incrementAndGet();
+                    }
+                }));
+        }
+        awaitNotified(listeners);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registrations.forEach(Registration::close);
+        store.close();
+    }
+
+    @Benchmark
+    public void publish() throws Exception {
+        notified.set(0);
+        DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.merge(BenchmarkModel.widePath(0), BenchmarkModel.item(0, ++round));
+        commit(transaction);
+        awaitNotified(listeners);
+    }
+
+    private void commit(NormalizedNode data) throws Exception {
+        DOMStoreWriteTransaction transaction = store.newWriteOnlyTransaction();
+        transaction.write(BenchmarkModel.WIDE_PATH, data);
+        commit(transaction);
+    }
+
+    private static void commit(DOMStoreWriteTransaction transaction) throws Exception {
+        DOMStoreThreePhaseCommitCohort cohort = transaction.ready();
+        cohort.canCommit().get();
+        cohort.preCommit().get();
+        cohort.commit().get();
+    }
+
+    private void awaitNotified(int count) {
+        while (notified.get() < count) {
+            Thread.onSpinWait();
+        }
+    }
+}
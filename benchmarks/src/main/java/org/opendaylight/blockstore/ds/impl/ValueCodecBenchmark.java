@@ -0,0 +1,59 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to encode and decode ledger values with {@link HyperledgerValueCodec}, the binary {@code NormalizedNode}
+ * streaming format deflated above a size threshold. The value is the {@code wide} container with {@code size} items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("all")
+public class ValueCodecBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int size;
+
+    /**
+     * Minimum encoded size of compressed values, 0 for no compression.
+     */
+    @Param({"0", "1024"})
+    public int compressionThreshold;
+
+    private HyperledgerValueCodec codec;
+    private NormalizedNode value;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws HyperledgerException {
+        codec = new HyperledgerValueCodec(compressionThreshold);
+        value = BenchmarkModel.wide(size, 0);
+        encoded = codec.encode(value);
+    }
+
+    @Benchmark
+    public byte[] encode() throws HyperledgerException {
+        return codec.encode(value);
+    }
+
+    @Benchmark
+    public NormalizedNode decode() throws HyperledgerException {
+        return codec.decode(encoded);
+    }
+}
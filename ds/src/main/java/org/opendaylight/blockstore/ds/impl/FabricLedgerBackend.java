@@ -0,0 +1,202 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalLong;
+import org.hyperledger.fabric.client.ChaincodeEvent;
+import org.hyperledger.fabric.client.CloseableIterator;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.GatewayRuntimeException;
+import org.hyperledger.fabric.client.Proposal;
+import org.hyperledger.fabric.client.Status;
+import org.hyperledger.fabric.client.SubmittedTransaction;
+import org.hyperledger.fabric.client.Transaction;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.BlockchainInfo;
+
+/**
+ * Runs the ledger on a Fabric channel through gateway connections to its peers, with the {@code blockstore}
+ * chaincode providing {@code ReadEntry}, {@code ScanEntries} and {@code PutBatch}. Changes are the {@code PutBatch}
+ * chaincode events, which only valid transactions emit. Takes ownership of the peer pool.
+ */
+@SuppressWarnings("all")
+public final class FabricLedgerBackend implements LedgerBackend {
+
+    private static final String PUT_BATCH = "PutBatch";
+
+    private final HyperledgerPeerPool peers;
+
+    public FabricLedgerBackend(HyperledgerPeerPool peers) {
+        this.peers = peers;
+    }
+
+    @Override
+    public String name() {
+        return "channel " + peers.channelName();
+    }
+
+    @Override
+    public long height() throws HyperledgerException {
+        try {
+            byte[] info = peers.call((network, contract) -> network.getContract("qscc")
+                .evaluateTransaction("GetChainInfo", network.getName()));
+            return BlockchainInfo.parseFrom(info).getHeight();
+        } catch (GatewayException | InvalidProtocolBufferException e) {
+            throw new HyperledgerException("Failed to query height of channel " + peers.channelName(), e);
+        }
+    }
+
+    @Override
+    public byte[] read(String key) throws HyperledgerException {
+        try {
+            return peers.call((network, contract) -> contract.evaluateTransaction("ReadEntry", key));
+        } catch (GatewayException e) {
+            throw new HyperledgerException("ReadEntry failed", e);
+        }
+    }
+
+    @Override
+    public HyperledgerScanPage scan(String startKey, String endKey, int pageSize, String bookmark)
+            throws HyperledgerException {
+        try {
+            return HyperledgerScanPage.parse(peers.call((network, contract) -> contract.evaluateTransaction(
+                    "ScanEntries", startKey, endKey, Integer.toString(pageSize), bookmark)));
+        } catch (GatewayException e) {
+            throw new HyperledgerException("ScanEntries from bookmark '" + bookmark + "' failed", e);
+        }
+    }
+
+    @Override
+    public Submitted submit(byte[] payload, SubmitListener listener) throws HyperledgerException {
+        final SubmittedTransaction submitted;
+        try {
+            submitted = peers.call((network, contract) -> {
+                Proposal proposal = contract.newProposal(PUT_BATCH).addArguments(payload).build();
+                listener.proposed(proposal.getTransactionId());
+                try {
+                    long start = System.nanoTime();
+                    Transaction endorsed = proposal.endorse();
+                    listener.phase(HyperledgerTracer.Phase.ENDORSE, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    SubmittedTransaction transaction = endorsed.submitAsync();
+                    listener.phase(HyperledgerTracer.Phase.SUBMIT, System.nanoTime() - start);
+                    return transaction;
+                } catch (GatewayException e) {
+                    listener.abandoned(proposal.getTransactionId());
+                    throw e;
+                }
+            });
+        } catch (GatewayException e) {
+            throw new HyperledgerException("Endorsement or submission to the orderer failed", e);
+        }
+        return new Submitted() {
+            @Override
+            public String transactionId() {
+                return submitted.getTransactionId();
+            }
+
+            @Override
+            public CommitStatus commitStatus() throws HyperledgerException {
+                final Status status;
+                try {
+                    status = submitted.getStatus();
+                } catch (CommitStatusException e) {
+                    throw new HyperledgerException("Commit status of transaction " + submitted.getTransactionId()
+                            + " not available", e);
+                }
+                return new CommitStatus(status.getTransactionId(), status.getBlockNumber(), status.isSuccessful(),
+                        status.getCode().name());
+            }
+        };
+    }
+
+    @Override
+    public void readChanges(long fromBlock, long toBlock, ChangeHandler handler) throws HyperledgerException {
+        if (fromBlock >= toBlock) {
+            return;
+        }
+        HyperledgerBlockReader.EventHandler events = (blockNumber, transactionId, eventName, payload) -> {
+            if (PUT_BATCH.equals(eventName)) {
+                handler.onChange(new Change(blockNumber, transactionId, payload));
+            }
+        };
+        try (CloseableIterator<Block> blocks = peers.network().newBlockEventsRequest().startBlock(fromBlock).build()
+                .getEvents()) {
+            while (blocks.hasNext()) {
+                Block block = blocks.next();
+                HyperledgerBlockReader.readChaincodeEvents(block, peers.chaincodeName(), events);
+                if (block.getHeader().getNumber() >= toBlock - 1) {
+                    break;
+                }
+            }
+        } catch (GatewayRuntimeException e) {
+            throw new HyperledgerException("Block event stream from " + fromBlock + " failed", e);
+        }
+    }
+
+    @Override
+    public ChangeStream changes(Checkpoint checkpoint) {
+        return new EventStream(peers.network().newChaincodeEventsRequest(peers.chaincodeName())
+            .checkpoint(new org.hyperledger.fabric.client.Checkpoint() {
+                @Override
+                public OptionalLong getBlockNumber() {
+                    return checkpoint.getBlockNumber();
+                }
+
+                @Override
+                public Optional<String> getTransactionId() {
+                    return checkpoint.getTransactionId();
+                }
+            })
+            .build()
+            .getEvents());
+    }
+
+    @Override
+    public long failovers() {
+        return peers.failovers();
+    }
+
+    @Override
+    public void close() {
+        peers.close();
+    }
+
+    // Skips the events of other names, which other functions of the chaincode may emit
+    private static final class EventStream implements ChangeStream {
+        private final CloseableIterator<ChaincodeEvent> events;
+        private Change next;
+
+        EventStream(CloseableIterator<ChaincodeEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && events.hasNext()) {
+                ChaincodeEvent event = events.next();
+                if (PUT_BATCH.equals(event.getEventName())) {
+                    next = new Change(event.getBlockNumber(), event.getTransactionId(), event.getPayload());
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Change change = next;
+            next = null;
+            return change;
+        }
+
+        @Override
+        public void close() {
+            events.close();
+        }
+    }
+}
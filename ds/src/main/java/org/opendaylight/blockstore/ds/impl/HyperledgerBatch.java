@@ -0,0 +1,149 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Accumulates puts and deletes of a single transaction and renders them as one compact chaincode argument.
+ *
+ * <p>Wire format: {@code varint count} followed by {@code count} entries, each being one op byte ({@link #PUT} or
+ * {@link #DELETE}), a varint-length-prefixed key and, for puts only, a varint-length-prefixed value.
+ */
+@SuppressWarnings("all")
+final class HyperledgerBatch {
+
+    static final byte PUT    = 'P';
+    static final byte DELETE = 'D';
+
+    /**
+     * Receives the entries of an encoded batch, see {@link HyperledgerBatch#replay(byte[], Handler)}.
+     */
+    interface Handler {
+        void put(String key, byte[] value) throws HyperledgerException;
+
+        void delete(String key) throws HyperledgerException;
+    }
+
+    private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+    private int size;
+
+    void put(String key, byte[] value) {
+        entries.write(PUT);
+        writeBytes(entries, key.getBytes(StandardCharsets.UTF_8));
+        writeBytes(entries, value);
+        size++;
+    }
+
+    void delete(String key) {
+        entries.write(DELETE);
+        writeBytes(entries, key.getBytes(StandardCharsets.UTF_8));
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(entries.size() + 5);
+        writeVarInt(out, size);
+        out.writeBytes(entries.toByteArray());
+        return out.toByteArray();
+    }
+
+    /**
+     * Concatenates payloads produced by {@link #toByteArray()} into one, whose entries are those of the payloads in
+     * list order. Entries are copied as they are, without decoding them.
+     */
+    static byte[] merge(List<byte[]> payloads) throws HyperledgerException {
+        if (payloads.size() == 1) {
+            return payloads.get(0);
+        }
+        int count = 0;
+        int length = 0;
+        int[] starts = new int[payloads.size()];
+        try {
+            for (int i = 0; i < payloads.size(); i++) {
+                int[] offset = {0};
+                count += readVarInt(payloads.get(i), offset);
+                starts[i] = offset[0];
+                length += payloads.get(i).length - offset[0];
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new HyperledgerException("Truncated batch payload", e);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + 5);
+        writeVarInt(out, count);
+        for (int i = 0; i < payloads.size(); i++) {
+            out.write(payloads.get(i), starts[i], payloads.get(i).length - starts[i]);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a payload produced by {@link #toByteArray()} and hands its entries to a handler, in order.
+     */
+    static void replay(byte[] payload, Handler handler) throws HyperledgerException {
+        int[] offset = {0};
+        try {
+            int count = readVarInt(payload, offset);
+            for (int i = 0; i < count; i++) {
+                byte op = payload[offset[0]++];
+                String key = new String(readBytes(payload, offset), StandardCharsets.UTF_8);
+                switch (op) {
+                    case PUT:
+                        handler.put(key, readBytes(payload, offset));
+                        break;
+                    case DELETE:
+                        handler.delete(key);
+                        break;
+                    default:
+                        throw new HyperledgerException("Unknown batch operation " + op);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new HyperledgerException("Truncated batch payload", e);
+        }
+    }
+
+    static byte[] readBytes(byte[] payload, int[] offset) {
+        int length = readVarInt(payload, offset);
+        if (length > payload.length - offset[0]) {
+            throw new IndexOutOfBoundsException("Entry of " + length + " bytes at " + offset[0]);
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(payload, offset[0], bytes, 0, length);
+        offset[0] += length;
+        return bytes;
+    }
+
+    static int readVarInt(byte[] payload, int[] offset) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = payload[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    static void writeBytes(ByteArrayOutputStream out, byte[] bytes) {
+        writeVarInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
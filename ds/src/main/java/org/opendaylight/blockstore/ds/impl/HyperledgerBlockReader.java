@@ -0,0 +1,71 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.hyperledger.fabric.protos.common.Block;
+import org.hyperledger.fabric.protos.common.BlockMetadataIndex;
+import org.hyperledger.fabric.protos.common.ChannelHeader;
+import org.hyperledger.fabric.protos.common.Envelope;
+import org.hyperledger.fabric.protos.common.HeaderType;
+import org.hyperledger.fabric.protos.common.Payload;
+import org.hyperledger.fabric.protos.peer.ChaincodeAction;
+import org.hyperledger.fabric.protos.peer.ChaincodeActionPayload;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.ProposalResponsePayload;
+import org.hyperledger.fabric.protos.peer.Transaction;
+import org.hyperledger.fabric.protos.peer.TransactionAction;
+import org.hyperledger.fabric.protos.peer.TxValidationCode;
+
+/**
+ * Extracts the chaincode events of valid transactions from a full {@link Block}, for replaying a known range of
+ * blocks. Unlike the chaincode event stream, block delivery tells us when the end of the range has been reached even
+ * if its last blocks carry no event of ours.
+ */
+@SuppressWarnings("all")
+final class HyperledgerBlockReader {
+
+    @FunctionalInterface
+    interface EventHandler {
+        void onEvent(long blockNumber, String transactionId, String eventName, byte[] payload)
+                throws HyperledgerException;
+    }
+
+    private HyperledgerBlockReader() {
+    }
+
+    static void readChaincodeEvents(Block block, String chaincodeName, EventHandler handler)
+            throws HyperledgerException {
+        long blockNumber = block.getHeader().getNumber();
+        ByteString validationCodes = block.getMetadata().getMetadata(BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE);
+
+        try {
+            for (int i = 0; i < block.getData().getDataCount(); i++) {
+                if (i < validationCodes.size() && validationCodes.byteAt(i) != TxValidationCode.VALID_VALUE) {
+                    continue;
+                }
+
+                Payload payload = Payload.parseFrom(Envelope.parseFrom(block.getData().getData(i)).getPayload());
+                ChannelHeader header = ChannelHeader.parseFrom(payload.getHeader().getChannelHeader());
+                if (header.getType() != HeaderType.ENDORSER_TRANSACTION_VALUE) {
+                    continue;
+                }
+
+                for (TransactionAction action : Transaction.parseFrom(payload.getData()).getActionsList()) {
+                    ChaincodeAction chaincodeAction = ChaincodeAction.parseFrom(ProposalResponsePayload.parseFrom(
+                            ChaincodeActionPayload.parseFrom(action.getPayload()).getAction()
+                                .getProposalResponsePayload()).getExtension());
+                    if (chaincodeAction.getEvents().isEmpty()) {
+                        continue;
+                    }
+                    ChaincodeEvent event = ChaincodeEvent.parseFrom(chaincodeAction.getEvents());
+                    if (chaincodeName.equals(event.getChaincodeId())) {
+                        handler.onEvent(blockNumber, header.getTxId(), event.getEventName(),
+                                event.getPayload().toByteArray());
+                    }
+                }
+            }
+        } catch (InvalidProtocolBufferException e) {
+            throw new HyperledgerException("Malformed block " + blockNumber, e);
+        }
+    }
+}
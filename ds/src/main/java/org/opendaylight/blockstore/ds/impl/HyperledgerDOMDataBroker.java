@@ -6,11 +6,11 @@ import org.apache.aries.blueprint.annotation.service.Reference;
 import org.opendaylight.mdsal.dom.api.DOMDataBroker;
 import org.opendaylight.mdsal.dom.api.DOMSchemaService;
 import org.opendaylight.mdsal.dom.spi.ForwardingDOMDataBroker;
+import org.opendaylight.blockstore.ds.inmemory.copypaste.TreeChangeOverflowPolicy;
 import io.grpc.ManagedChannel;
 import io.grpc.TlsChannelCredentials;
 import io.grpc.internal.DnsNameResolverProvider;
 
-import org.hyperledger.fabric.client.Contract;
 import org.hyperledger.fabric.client.Gateway;
 import org.hyperledger.fabric.client.identity.Identities;
 import org.hyperledger.fabric.client.identity.Identity;
@@ -35,9 +35,127 @@ public class HyperledgerDOMDataBroker extends ForwardingDOMDataBroker {
     private static final String MSP_ID = System.getenv().getOrDefault("MSP_ID", "Org1MSP");
 	private static final String CHANNEL_NAME = System.getenv().getOrDefault("CHANNEL_NAME", "mychannel");
 	private static final String CHAINCODE_NAME = System.getenv().getOrDefault("CHAINCODE_NAME", "blockstore");
+	// Commit to the local data tree first and pipeline ledger submissions in the background.
+	private static final boolean ASYNC_SUBMIT = Boolean.parseBoolean(System.getenv().getOrDefault("ASYNC_SUBMIT", "false"));
+	private static final int MAX_IN_FLIGHT = Integer.parseInt(System.getenv().getOrDefault("MAX_IN_FLIGHT",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_MAX_IN_FLIGHT_SUBMISSIONS)));
+	// Ledger values at least this many bytes long are Deflate-compressed, 0 disables compression.
+	private static final int COMPRESSION_THRESHOLD = Integer.parseInt(System.getenv().getOrDefault(
+			"COMPRESSION_THRESHOLD", String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_COMPRESSION_THRESHOLD)));
+	// Number of ledger entries fetched per ScanEntries call when loading the datastores on startup.
+	private static final int LOAD_PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("LOAD_PAGE_SIZE",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_LOAD_PAGE_SIZE)));
+	// Number of ledger entries fetched per ScanEntries call, and pages fetched ahead, when reading a subtree.
+	private static final int SCAN_PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("SCAN_PAGE_SIZE",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_SCAN_PAGE_SIZE)));
+	private static final int SCAN_PREFETCH = Integer.parseInt(System.getenv().getOrDefault("SCAN_PREFETCH",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_SCAN_PREFETCH)));
+	// Directory for local datastore snapshots, snapshots are disabled if not set.
+	private static final String SNAPSHOT_DIR = System.getenv().getOrDefault("SNAPSHOT_DIR", "");
+	private static final long SNAPSHOT_INTERVAL = Long.parseLong(System.getenv().getOrDefault("SNAPSHOT_INTERVAL",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_SNAPSHOT_INTERVAL)));
+	// Maximum number of ledger values cached for reads, 0 disables the cache.
+	private static final long READ_CACHE_SIZE = Long.parseLong(System.getenv().getOrDefault("READ_CACHE_SIZE",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_READ_CACHE_SIZE)));
+	// Follow the ledger change stream and apply transactions committed by other controllers.
+	private static final boolean APPLY_REMOTE_CHANGES = Boolean.parseBoolean(System.getenv().getOrDefault(
+			"APPLY_REMOTE_CHANGES", "true"));
+	private static final int MAX_COALESCED_EVENTS = Integer.parseInt(System.getenv().getOrDefault(
+			"MAX_COALESCED_EVENTS", String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_MAX_COALESCED_EVENTS)));
+	// Minimum number of milliseconds between two fsyncs of the event stream checkpoint.
+	private static final long CHECKPOINT_SYNC_INTERVAL = Long.parseLong(System.getenv().getOrDefault(
+			"CHECKPOINT_SYNC_INTERVAL",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_CHECKPOINT_SYNC_INTERVAL)));
+	// Directory of the local write-behind journal, commits go straight to the ledger if not set.
+	private static final String JOURNAL_DIR = System.getenv().getOrDefault("JOURNAL_DIR", "");
+	private static final int JOURNAL_SEGMENT_SIZE = Integer.parseInt(System.getenv().getOrDefault(
+			"JOURNAL_SEGMENT_SIZE", String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_JOURNAL_SEGMENT_SIZE)));
+	// Asynchronous submissions arriving within this many microseconds are merged, up to GROUP_COMMIT_MAX_SIZE of them.
+	private static final long GROUP_COMMIT_WINDOW = Long.parseLong(System.getenv().getOrDefault("GROUP_COMMIT_WINDOW",
+			"0"));
+	private static final int GROUP_COMMIT_MAX_SIZE = Integer.parseInt(System.getenv().getOrDefault(
+			"GROUP_COMMIT_MAX_SIZE", String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_GROUP_COMMIT_MAX_SIZE)));
+	// Maximum number of journal records shipped to the ledger as one PutBatch transaction.
+	private static final int SHIP_BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("SHIP_BATCH_SIZE",
+			String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_SHIP_BATCH_SIZE)));
+	// Where each datastore is persisted by default: ledger, journal (local disk only) or memory.
+	private static final String CONFIGURATION_PERSISTENCE = System.getenv().getOrDefault("CONFIGURATION_PERSISTENCE",
+			"ledger");
+	private static final String OPERATIONAL_PERSISTENCE = System.getenv().getOrDefault("OPERATIONAL_PERSISTENCE",
+			"ledger");
+	// Subtree overrides as path=persistence;path=persistence, see HyperledgerPersistence.parseRules().
+	private static final String CONFIGURATION_PERSISTENCE_RULES = System.getenv().getOrDefault(
+			"CONFIGURATION_PERSISTENCE_RULES", "");
+	private static final String OPERATIONAL_PERSISTENCE_RULES = System.getenv().getOrDefault(
+			"OPERATIONAL_PERSISTENCE_RULES", "");
+	// Fraction of commits traced, and whether traced commits log the entries they send with their data.
+	private static final double TRACE_SAMPLE_RATE = Double.parseDouble(System.getenv().getOrDefault(
+			"TRACE_SAMPLE_RATE", String.valueOf(HyperledgerDataStoreConfigProperties.DEFAULT_TRACE_SAMPLE_RATE)));
+	private static final boolean TRACE_PAYLOADS = Boolean.parseBoolean(System.getenv().getOrDefault("TRACE_PAYLOADS",
+			"false"));
+	// Register the metrics of the datastores as MBeans.
+	private static final boolean METRICS_JMX = Boolean.parseBoolean(System.getenv().getOrDefault("METRICS_JMX",
+			"true"));
+	// Maintain digests of the data trees on each commit for consistency checks against the ledger.
+	private static final boolean HASH_INDEX = Boolean.parseBoolean(System.getenv().getOrDefault("HASH_INDEX",
+			"false"));
+	// How finely the datastores are cut into ledger entries: subtree, list_entry, container or leaf.
+	private static final String STORAGE_GRANULARITY = System.getenv().getOrDefault("STORAGE_GRANULARITY", "subtree");
+	// Granularity overrides as path=granularity;path=granularity, see HyperledgerStorageGranularity.parseRules().
+	private static final String STORAGE_GRANULARITY_RULES = System.getenv().getOrDefault("STORAGE_GRANULARITY_RULES",
+			"");
+	// Coordinate CONFIGURATION and OPERATIONAL commits on separate threads instead of one shared thread.
+	private static final boolean PARALLEL_COMMIT_COORDINATORS = Boolean.parseBoolean(System.getenv().getOrDefault(
+			"PARALLEL_COMMIT_COORDINATORS", "false"));
+	// Merge the changes queued for a slow data tree change listener instead of delivering every commit.
+	private static final boolean COALESCE_LISTENER_NOTIFICATIONS = Boolean.parseBoolean(System.getenv().getOrDefault(
+			"COALESCE_LISTENER_NOTIFICATIONS", "false"));
+	// Candidates queued per data tree change listener, and what a commit does when a queue is full: block, merge or
+	// drop_to_resync.
+	private static final int LISTENER_QUEUE_SIZE = Integer.parseInt(System.getenv().getOrDefault(
+			"LISTENER_QUEUE_SIZE", "1000"));
+	private static final String LISTENER_OVERFLOW_POLICY = System.getenv().getOrDefault("LISTENER_OVERFLOW_POLICY",
+			"block");
+	// Threads notifying data tree change listeners, 0 for as many as needed.
+	private static final int LISTENER_THREADS = Integer.parseInt(System.getenv().getOrDefault(
+			"LISTENER_THREADS", "0"));
+	// Notify data tree change listeners on virtual threads, where the runtime has them.
+	private static final boolean VIRTUAL_THREAD_LISTENERS = Boolean.parseBoolean(System.getenv().getOrDefault(
+			"VIRTUAL_THREAD_LISTENERS", "false"));
+
+	// Ledger to persist to: fabric, log for an append-only log on local disk, or simulated for an in-memory
+	// emulation of a channel without any network.
+	private static final String LEDGER_BACKEND = System.getenv().getOrDefault("LEDGER_BACKEND", "fabric");
+	// Latencies of the simulated ledger in microseconds and how it cuts blocks, see SimulatedLedgerProperties.
+	private static final long SIMULATED_ENDORSE_LATENCY = Long.parseLong(System.getenv().getOrDefault(
+			"SIMULATED_ENDORSE_LATENCY", String.valueOf(SimulatedLedgerProperties.DEFAULT_ENDORSE_LATENCY)));
+	private static final long SIMULATED_ORDER_LATENCY = Long.parseLong(System.getenv().getOrDefault(
+			"SIMULATED_ORDER_LATENCY", String.valueOf(SimulatedLedgerProperties.DEFAULT_ORDER_LATENCY)));
+	private static final long SIMULATED_COMMIT_LATENCY = Long.parseLong(System.getenv().getOrDefault(
+			"SIMULATED_COMMIT_LATENCY", String.valueOf(SimulatedLedgerProperties.DEFAULT_COMMIT_LATENCY)));
+	private static final double SIMULATED_LATENCY_JITTER = Double.parseDouble(System.getenv().getOrDefault(
+			"SIMULATED_LATENCY_JITTER", String.valueOf(SimulatedLedgerProperties.DEFAULT_LATENCY_JITTER)));
+	private static final int SIMULATED_BLOCK_SIZE = Integer.parseInt(System.getenv().getOrDefault(
+			"SIMULATED_BLOCK_SIZE", String.valueOf(SimulatedLedgerProperties.DEFAULT_BLOCK_SIZE)));
+	// Milliseconds the simulated orderer waits for a block to fill up.
+	private static final long SIMULATED_BLOCK_TIMEOUT = Long.parseLong(System.getenv().getOrDefault(
+			"SIMULATED_BLOCK_TIMEOUT", String.valueOf(SimulatedLedgerProperties.DEFAULT_BLOCK_TIMEOUT)));
+	// Fail transactions of the simulated ledger whose keys were committed by another one since their endorsement.
+	private static final boolean SIMULATED_MVCC_CONFLICTS = Boolean.parseBoolean(System.getenv().getOrDefault(
+			"SIMULATED_MVCC_CONFLICTS", "false"));
+	// Directory of the log ledger, its segment size and how many blocks pass between world state checkpoints.
+	private static final String LOG_LEDGER_DIR = System.getenv().getOrDefault("LOG_LEDGER_DIR", "ledger");
+	private static final int LOG_LEDGER_SEGMENT_SIZE = Integer.parseInt(System.getenv().getOrDefault(
+			"LOG_LEDGER_SEGMENT_SIZE", String.valueOf(LogLedgerProperties.DEFAULT_SEGMENT_SIZE)));
+	private static final long LOG_LEDGER_CHECKPOINT_INTERVAL = Long.parseLong(System.getenv().getOrDefault(
+			"LOG_LEDGER_CHECKPOINT_INTERVAL", String.valueOf(LogLedgerProperties.DEFAULT_CHECKPOINT_INTERVAL)));
+	// Blocks of the log ledger kept before its last checkpoint, 0 keeps the whole history.
+	private static final long LOG_LEDGER_RETAINED_BLOCKS = Long.parseLong(System.getenv().getOrDefault(
+			"LOG_LEDGER_RETAINED_BLOCKS", "0"));
 
 	// Path to crypto materials.
-	private static final Path CRYPTO_PATH = Paths.get("/home/vboxuser/fabric-samples/test-network/organizations/peerOrganizations/org1.example.com");
+	private static final Path CRYPTO_PATH = Paths.get(System.getenv().getOrDefault("CRYPTO_PATH",
+			"/home/vboxuser/fabric-samples/test-network/organizations/peerOrganizations/org1.example.com"));
 	// Path to user certificate.
 	private static final Path CERT_PATH = CRYPTO_PATH.resolve(Paths.get("users/User1@org1.example.com/msp/signcerts/cert.pem"));
 	// Path to user private key directory.
@@ -45,43 +163,120 @@ public class HyperledgerDOMDataBroker extends ForwardingDOMDataBroker {
 	// Path to peer tls certificate.
 	private static final Path TLS_CERT_PATH = CRYPTO_PATH.resolve(Paths.get("peers/peer0.org1.example.com/tls/ca.crt"));
 
-	// Gateway peer end point.
-	private static final String PEER_ENDPOINT = "localhost:7051";
-	private static final String OVERRIDE_AUTH = "peer0.org1.example.com";
+	// Gateway peer end points as comma-separated host:port/tls-authority, all signed by the TLS CA above.
+	private static final String PEER_ENDPOINTS = System.getenv().getOrDefault("PEER_ENDPOINTS",
+			"localhost:7051/peer0.org1.example.com");
+	// Number of gRPC connections opened to each gateway peer.
+	private static final int CHANNELS_PER_PEER = Integer.parseInt(System.getenv().getOrDefault("CHANNELS_PER_PEER", "1"));
 
-	private final Contract contract;
+	private final LedgerBackend ledger;
 	//private final String assetId = "asset" + Instant.now().toEpochMilli();
 	//private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
 
     public HyperledgerDOMDataBroker(@Reference DOMSchemaService schemaService)
             throws Exception {
-        // The gRPC client connection should be shared by all Gateway connections to
-		// this endpoint.
-		var channel = newGrpcConnection();
-
-		var builder = Gateway.newInstance().identity(newIdentity()).signer(newSigner()).connection(channel)
-				// Default timeouts for different gRPC calls
-				.evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-				.endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
-				.submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
-				.commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
-
-        var gateway = builder.connect();
-        var network = gateway.getNetwork(CHANNEL_NAME);
-
-        // Get the smart contract from the network.
-        contract = network.getContract(CHAINCODE_NAME);
-        wiring = new HyperledgerDOMDataBrokerProvider("", schemaService, contract);
+        if ("simulated".equalsIgnoreCase(LEDGER_BACKEND)) {
+            ledger = newSimulatedLedger();
+        } else if ("log".equalsIgnoreCase(LEDGER_BACKEND)) {
+            ledger = newLogLedger();
+        } else {
+            ledger = newFabricLedger();
+        }
+        wiring = new HyperledgerDOMDataBrokerProvider("", schemaService, ledger,
+                HyperledgerDataStoreConfigProperties.builder()
+                    .asyncSubmit(ASYNC_SUBMIT)
+                    .maxInFlightSubmissions(MAX_IN_FLIGHT)
+                    .compressionThreshold(COMPRESSION_THRESHOLD)
+                    .loadPageSize(LOAD_PAGE_SIZE)
+                    .scanPageSize(SCAN_PAGE_SIZE)
+                    .scanPrefetch(SCAN_PREFETCH)
+                    .snapshotDirectory(SNAPSHOT_DIR)
+                    .snapshotInterval(SNAPSHOT_INTERVAL)
+                    .readCacheSize(READ_CACHE_SIZE)
+                    .applyRemoteChanges(APPLY_REMOTE_CHANGES)
+                    .maxCoalescedEvents(MAX_COALESCED_EVENTS)
+                    .checkpointSyncInterval(CHECKPOINT_SYNC_INTERVAL)
+                    .journalDirectory(JOURNAL_DIR)
+                    .journalSegmentSize(JOURNAL_SEGMENT_SIZE)
+                    .shipBatchSize(SHIP_BATCH_SIZE)
+                    .groupCommitWindow(GROUP_COMMIT_WINDOW)
+                    .groupCommitMaxSize(GROUP_COMMIT_MAX_SIZE)
+                    .parallelCommitCoordinators(PARALLEL_COMMIT_COORDINATORS)
+                    .coalesceListenerNotifications(COALESCE_LISTENER_NOTIFICATIONS)
+                    .listenerQueueSize(LISTENER_QUEUE_SIZE)
+                    .listenerOverflowPolicy(TreeChangeOverflowPolicy.parse(LISTENER_OVERFLOW_POLICY))
+                    .listenerThreads(LISTENER_THREADS)
+                    .virtualThreadListeners(VIRTUAL_THREAD_LISTENERS)
+                    .configurationPersistence(HyperledgerPersistence.parse(CONFIGURATION_PERSISTENCE))
+                    .operationalPersistence(HyperledgerPersistence.parse(OPERATIONAL_PERSISTENCE))
+                    .configurationPersistenceRules(HyperledgerPersistence.parseRules(CONFIGURATION_PERSISTENCE_RULES))
+                    .operationalPersistenceRules(HyperledgerPersistence.parseRules(OPERATIONAL_PERSISTENCE_RULES))
+                    .storageGranularity(HyperledgerStorageGranularity.parse(STORAGE_GRANULARITY))
+                    .storageGranularityRules(HyperledgerStorageGranularity.parseRules(STORAGE_GRANULARITY_RULES))
+                    .hashIndex(HASH_INDEX)
+                    .traceSampleRate(TRACE_SAMPLE_RATE)
+                    .traceLogPayloads(TRACE_PAYLOADS)
+                    .metricsJmx(METRICS_JMX)
+                    .build());
         wiring.init();
     }
 
-    private static ManagedChannel newGrpcConnection() throws IOException {
+    private static LedgerBackend newFabricLedger() throws Exception {
+        var identity = newIdentity();
+		var signer = newSigner();
+
+		// Each gRPC client connection is shared by the Gateway connections to its endpoint, of which there is one.
+		var peers = new HyperledgerPeerPool(CHANNEL_NAME, CHAINCODE_NAME);
+		for (String endpoint : PEER_ENDPOINTS.split(",")) {
+			String[] targetAndAuthority = endpoint.trim().split("/", 2);
+			for (int i = 0; i < CHANNELS_PER_PEER; i++) {
+				var channel = newGrpcConnection(targetAndAuthority[0],
+						targetAndAuthority.length > 1 ? targetAndAuthority[1] : null);
+
+				var builder = Gateway.newInstance().identity(identity).signer(signer).connection(channel)
+						// Default timeouts for different gRPC calls
+						.evaluateOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+						.endorseOptions(options -> options.withDeadlineAfter(15, TimeUnit.SECONDS))
+						.submitOptions(options -> options.withDeadlineAfter(5, TimeUnit.SECONDS))
+						.commitStatusOptions(options -> options.withDeadlineAfter(1, TimeUnit.MINUTES));
+
+				peers.addPeer(targetAndAuthority[0] + "#" + i, channel, builder.connect());
+			}
+		}
+		return new FabricLedgerBackend(peers);
+	}
+
+    private static LedgerBackend newSimulatedLedger() {
+        return new SimulatedLedgerBackend(CHANNEL_NAME, SimulatedLedgerProperties.builder()
+            .endorseLatency(SIMULATED_ENDORSE_LATENCY)
+            .orderLatency(SIMULATED_ORDER_LATENCY)
+            .commitLatency(SIMULATED_COMMIT_LATENCY)
+            .latencyJitter(SIMULATED_LATENCY_JITTER)
+            .blockSize(SIMULATED_BLOCK_SIZE)
+            .blockTimeout(SIMULATED_BLOCK_TIMEOUT)
+            .mvccConflicts(SIMULATED_MVCC_CONFLICTS)
+            .build());
+    }
+
+    private static LedgerBackend newLogLedger() throws IOException {
+        return new LogLedgerBackend(CHANNEL_NAME, LogLedgerProperties.builder()
+            .directory(LOG_LEDGER_DIR)
+            .segmentSize(LOG_LEDGER_SEGMENT_SIZE)
+            .checkpointInterval(LOG_LEDGER_CHECKPOINT_INTERVAL)
+            .retainedBlocks(LOG_LEDGER_RETAINED_BLOCKS)
+            .build());
+    }
+
+    private static ManagedChannel newGrpcConnection(String target, String overrideAuthority) throws IOException {
 		var credentials = TlsChannelCredentials.newBuilder()
 				.trustManager(TLS_CERT_PATH.toFile())
 				.build();
-		return NettyChannelBuilder.forTarget(PEER_ENDPOINT, credentials)
-				.overrideAuthority(OVERRIDE_AUTH).nameResolverFactory(new DnsNameResolverProvider())
-				.build();
+		var builder = NettyChannelBuilder.forTarget(target, credentials)
+				.nameResolverFactory(new DnsNameResolverProvider());
+		if (overrideAuthority != null) {
+			builder.overrideAuthority(overrideAuthority);
+		}
+		return builder.build();
 	}
 
 	private static Identity newIdentity() throws IOException, CertificateException {
@@ -107,6 +302,7 @@ public class HyperledgerDOMDataBroker extends ForwardingDOMDataBroker {
     @PreDestroy
     public void close() throws Exception {
         wiring.close();
+        ledger.close();
     }
 
     @Override
@@ -5,11 +5,12 @@ import static org.opendaylight.mdsal.common.api.LogicalDatastoreType.OPERATIONAL
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 import javax.inject.Provider;
 
-import org.hyperledger.fabric.client.Contract;
 import org.opendaylight.infrautils.utils.concurrent.Executors;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
@@ -17,7 +18,6 @@ import org.opendaylight.mdsal.dom.api.DOMDataBroker;
 import org.opendaylight.mdsal.dom.api.DOMSchemaService;
 import org.opendaylight.mdsal.dom.broker.SerializedDOMDataBroker;
 import org.opendaylight.mdsal.dom.spi.store.DOMStore;
-import org.opendaylight.mdsal.dom.store.inmemory.InMemoryDOMDataStoreConfigProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,28 +31,41 @@ public class HyperledgerDOMDataBrokerProvider implements Provider<DOMDataBroker>
     private final HyperledgerDataStore operDS;
     private final DOMDataBroker domDataBroker;
 
-    public HyperledgerDOMDataBrokerProvider(String nodeName, DOMSchemaService schemas, Contract c) throws Exception {
-        this(nodeName, schemas,
-                Executors.newListeningSingleThreadExecutor("HyperledgerDB-commitCoordinator", LOG),
-                Executors.newListeningCachedThreadPool("HyperledgerDB-DTCLs", LOG), c);
+    public HyperledgerDOMDataBrokerProvider(String nodeName, DOMSchemaService schemas, LedgerBackend ledger,
+            HyperledgerDataStoreConfigProperties properties) throws Exception {
+        this(nodeName, schemas, properties.getParallelCommitCoordinators() ? null
+                : Executors.newListeningSingleThreadExecutor("HyperledgerDB-commitCoordinator", LOG),
+                newListenerExecutor(properties), ledger, properties);
     }
 
     public HyperledgerDOMDataBrokerProvider(String nodeName, DOMSchemaService schemaService,
-            ListeningExecutorService commitCoordinatorExecutor, ListeningExecutorService dtclExecutor, Contract c)
-            throws Exception {
+            ListeningExecutorService commitCoordinatorExecutor, ListeningExecutorService dtclExecutor,
+            LedgerBackend ledger, HyperledgerDataStoreConfigProperties properties) throws Exception {
         this.name = nodeName;
 
-        configDS = createConfigurationDatastore(CONFIGURATION, dtclExecutor, schemaService, c);
-        operDS = createConfigurationDatastore(OPERATIONAL, dtclExecutor, schemaService, c);
-        Map<LogicalDatastoreType, DOMStore> datastores = ImmutableMap.of(CONFIGURATION, configDS, OPERATIONAL, operDS);
-        domDataBroker = new SerializedDOMDataBroker(datastores, commitCoordinatorExecutor);
+        configDS = createConfigurationDatastore(CONFIGURATION, dtclExecutor, schemaService, ledger, properties);
+        operDS = createConfigurationDatastore(OPERATIONAL, dtclExecutor, schemaService, ledger, properties);
+        if (properties.getParallelCommitCoordinators()) {
+            // Each datastore gets its own coordinator thread, no shared executor is needed
+            domDataBroker = new HyperledgerParallelDOMDataBroker(
+                    ImmutableMap.of(CONFIGURATION, configDS, OPERATIONAL, operDS));
+        } else {
+            Map<LogicalDatastoreType, DOMStore> datastores = ImmutableMap.of(CONFIGURATION, configDS,
+                    OPERATIONAL, operDS);
+            domDataBroker = new SerializedDOMDataBroker(datastores, commitCoordinatorExecutor);
+        }
     }
 
     public void init() throws Exception {
+        configDS.init(0);
+        operDS.init(0);
     }
 
     @Override
     public void close() throws Exception {
+        if (domDataBroker instanceof HyperledgerParallelDOMDataBroker) {
+            ((HyperledgerParallelDOMDataBroker) domDataBroker).close();
+        }
         if (operDS != null) {
             operDS.close();
         }
@@ -71,9 +84,39 @@ public class HyperledgerDOMDataBrokerProvider implements Provider<DOMDataBroker>
     }
 
     private HyperledgerDataStore createConfigurationDatastore(LogicalDatastoreType type,
-            ExecutorService dataTreeChangeListenerExecutor, DOMSchemaService schemaService, Contract c) {
+            ExecutorService dataTreeChangeListenerExecutor, DOMSchemaService schemaService,
+            LedgerBackend ledger, HyperledgerDataStoreConfigProperties properties) {
         HyperledgerDataStore store = new HyperledgerDataStore(name, type, dataTreeChangeListenerExecutor,
-                InMemoryDOMDataStoreConfigProperties.DEFAULT_MAX_DATA_CHANGE_LISTENER_QUEUE_SIZE, true, c);
+                properties.getListenerQueueSize(), true, ledger, properties);
+        store.setCloseable(schemaService.registerSchemaContextListener(store::onModelContextUpdated));
         return store;
     }
+
+    private static ListeningExecutorService newListenerExecutor(HyperledgerDataStoreConfigProperties properties) {
+        if (properties.getVirtualThreadListeners()) {
+            ExecutorService virtual = newVirtualThreadExecutor("HyperledgerDB-DTCL-");
+            if (virtual != null) {
+                return MoreExecutors.listeningDecorator(virtual);
+            }
+        }
+        return properties.getListenerThreads() > 0
+                ? MoreExecutors.listeningDecorator(
+                        Executors.newFixedThreadPool(properties.getListenerThreads(), "HyperledgerDB-DTCLs", LOG))
+                : Executors.newListeningCachedThreadPool("HyperledgerDB-DTCLs", LOG);
+    }
+
+    // Thread.ofVirtual() is looked up reflectively, the code being built for a runtime which may not have it
+    private static ExecutorService newVirtualThreadExecutor(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory threads = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            return (ExecutorService) java.util.concurrent.Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threads);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Virtual threads are not available on this runtime, notifying listeners on platform threads", e);
+            return null;
+        }
+    }
 }
@@ -1,20 +1,42 @@
 package org.opendaylight.blockstore.ds.impl;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
-import org.hyperledger.fabric.client.Contract;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
 import org.opendaylight.mdsal.dom.spi.store.DOMStoreReadTransaction;
 import org.opendaylight.mdsal.dom.spi.store.DOMStoreReadWriteTransaction;
 import org.opendaylight.mdsal.dom.spi.store.DOMStoreWriteTransaction;
 import org.opendaylight.blockstore.ds.impl.HyperledgerYangKV.HyperledgerTxn;
 import org.opendaylight.blockstore.ds.inmemory.copypaste.InMemoryDOMDataStore;
+import org.opendaylight.blockstore.ds.inmemory.copypaste.InMemoryDOMDataStoreConfigProperties;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
 import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidate;
 import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeModification;
 import org.opendaylight.yangtools.yang.data.tree.api.DataValidationFailedException;
 import org.opendaylight.yangtools.yang.data.tree.api.ModificationType;
+import org.opendaylight.yangtools.yang.model.api.EffectiveModelContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,19 +48,89 @@ public class HyperledgerDataStore extends InMemoryDOMDataStore {
     public static final String CONFIGURATION_PREFIX = "C";
     public static final String OPERATIONAL_PREFIX   = "O";
 
-    private final Contract contract;
+    // Journal records written by a commit, to be synced once the store lock is released
+    private static final class JournalSequences {
+        long shipped = -1;
+        long local = -1;
+    }
+
     private final HyperledgerYangKV kv;
+    private final boolean asyncSubmit;
+    private final int loadPageSize;
+    private final int scanPageSize;
+    private final int scanPrefetch;
+    private final int loadParallelism;
+    private final HyperledgerSnapshotStore snapshotStore;
+    private final long snapshotInterval;
+    private ListeningScheduledExecutorService snapshotExecutor;
+    private final boolean applyRemoteChanges;
+    // Digests of the committed data tree, null unless enabled
+    private final HyperledgerHashIndex hashIndex;
+    private final int maxCoalescedEvents;
+    private final long checkpointSyncInterval;
+    private HyperledgerEventCheckpointer checkpointer;
+    private HyperledgerEventListener eventListener;
+    private final Path journalDirectory;
+    private final int journalSegmentSize;
+    private final int shipBatchSize;
+    private HyperledgerJournal journal;
+    private HyperledgerJournalShipper shipper;
+    private final HyperledgerPersistencePolicy persistence;
+    private final HyperledgerStorageLayout layout;
+    private final Path localJournalDirectory;
+    private HyperledgerJournal localJournal;
+
+    // Number of the last ledger block reflected by the local data tree
+    private final AtomicLong lastLedgerBlock = new AtomicLong(-1);
+    private long lastSnapshotBlock = -1;
+    // Set once remote changes failed to apply, guarded by this
+    private boolean diverged;
+    private String lastSnapshotTransaction = "";
 
     private boolean hasSchemaContext = false;
     private final AtomicBoolean isInitialized = new AtomicBoolean(false);
 
     public HyperledgerDataStore(String name, LogicalDatastoreType type, ExecutorService dataChangeListenerExecutor,
-            int maxDataChangeListenerQueueSize, boolean debugTransactions, Contract c) {
-        super(name + "-" + prefixChar(type), dataChangeListenerExecutor, maxDataChangeListenerQueueSize,
-                debugTransactions);
-        this.contract = c;
+            int maxDataChangeListenerQueueSize, boolean debugTransactions, LedgerBackend ledger,
+            HyperledgerDataStoreConfigProperties properties) {
+        super(name + "-" + prefixChar(type), dataChangeListenerExecutor, InMemoryDOMDataStoreConfigProperties.builder()
+            .maxDataChangeListenerQueueSize(maxDataChangeListenerQueueSize)
+            .debugTransactions(debugTransactions)
+            .coalesceDataChangeNotifications(properties.getCoalesceListenerNotifications())
+            .dataChangeListenerOverflowPolicy(properties.getListenerOverflowPolicy())
+            .build());
+        this.asyncSubmit = properties.getAsyncSubmit();
+        this.loadPageSize = properties.getLoadPageSize();
+        this.scanPageSize = properties.getScanPageSize();
+        this.scanPrefetch = properties.getScanPrefetch();
+        this.loadParallelism = properties.getLoadParallelism();
+        this.snapshotStore = properties.getSnapshotDirectory().isEmpty() ? null
+                : new HyperledgerSnapshotStore(Path.of(properties.getSnapshotDirectory()), getIdentifier());
+        this.snapshotInterval = properties.getSnapshotInterval();
+        this.applyRemoteChanges = properties.getApplyRemoteChanges();
+        this.hashIndex = properties.getHashIndex() ? new HyperledgerHashIndex() : null;
+        this.maxCoalescedEvents = properties.getMaxCoalescedEvents();
+        this.checkpointSyncInterval = properties.getCheckpointSyncInterval();
+        this.journalDirectory = properties.getJournalDirectory().isEmpty() ? null
+                : Path.of(properties.getJournalDirectory());
+        this.journalSegmentSize = properties.getJournalSegmentSize();
+        this.shipBatchSize = properties.getShipBatchSize();
+        this.persistence = type.equals(LogicalDatastoreType.CONFIGURATION)
+                ? new HyperledgerPersistencePolicy(properties.getConfigurationPersistence(),
+                    properties.getConfigurationPersistenceRules())
+                : new HyperledgerPersistencePolicy(properties.getOperationalPersistence(),
+                    properties.getOperationalPersistenceRules());
+        // Journal-only data lives next to the write-behind journal, or next to the snapshots
+        this.localJournalDirectory = journalDirectory != null ? journalDirectory
+                : snapshotStore != null ? snapshotStore.directory() : null;
+        if (persistence.uses(HyperledgerPersistence.JOURNAL) && localJournalDirectory == null) {
+            throw new IllegalArgumentException(getIdentifier()
+                    + " needs a journal or snapshot directory to persist data to a local journal");
+        }
 
-        kv = new HyperledgerYangKV(getIdentifier(), prefix(type), contract);
+        kv = new HyperledgerYangKV(getIdentifier(), prefix(type), ledger, properties, persistence);
+        this.layout = kv.layout();
+        kv.metrics().listenerQueues(this::getListenerQueueStats);
     }
 
     @Override
@@ -59,15 +151,399 @@ public class HyperledgerDataStore extends InMemoryDOMDataStore {
         return super.newWriteOnlyTransaction();
     }
 
+    @Override
+    public synchronized void onModelContextUpdated(EffectiveModelContext newModelContext) {
+        super.onModelContextUpdated(newModelContext);
+        kv.setModelContext(newModelContext);
+        hasSchemaContext = true;
+    }
+
     public void init(long rev) throws Exception {
         if (!hasSchemaContext) {
             throw new IllegalStateException("onGlobalContextUpdated() not yet called");
         }
+        boolean usesLedger = persistence.uses(HyperledgerPersistence.LEDGER);
+        if (usesLedger) {
+            loadFromLedger();
+        }
+        if (journalDirectory != null && usesLedger) {
+            startJournal();
+        }
+        if (persistence.uses(HyperledgerPersistence.JOURNAL)) {
+            startLocalJournal();
+        }
+        if (applyRemoteChanges && usesLedger) {
+            checkpointer = new HyperledgerEventCheckpointer(snapshotStore == null ? null
+                    : snapshotStore.directory().resolve(getIdentifier() + ".checkpoint"), checkpointSyncInterval);
+            eventListener = kv.newEventListener(this::applyRemoteChanges, checkpointer, maxCoalescedEvents);
+            eventListener.start(lastLedgerBlock.get() + 1);
+        }
+        startSnapshots();
         this.isInitialized.set(true);
     }
 
+    private void loadFromLedger() throws HyperledgerException, DataValidationFailedException {
+        long start = System.nanoTime();
+        // Everything committed before this height is reflected by what we load below
+        long height = kv.ledgerHeight();
+        DataTreeModification modification = newModification();
+
+        Optional<HyperledgerSnapshotStore.Snapshot> snapshot = loadSnapshot();
+        if (snapshot.isPresent()) {
+            long fromBlock = snapshot.orElseThrow().blockNumber() + 1;
+            modification.write(YangInstanceIdentifier.of(), snapshot.orElseThrow().root());
+            long count = kv.replay(modification, fromBlock, snapshot.orElseThrow().transactionId(), height);
+            commitModification(modification);
+            LOG.info("{} restored snapshot and replayed {} ledger transactions from blocks {} to {} in {} ms",
+                    getIdentifier(), count, fromBlock, height - 1,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } else {
+            ExecutorService decodeExecutor = Executors.newFixedThreadPool(loadParallelism,
+                    "HyperledgerDB-load-" + getIdentifier(), LOG);
+            try {
+                long count = kv.load(modification, loadPageSize, decodeExecutor);
+                if (count > 0) {
+                    commitModification(modification);
+                }
+                LOG.info("{} loaded {} entries from the ledger in {} ms", getIdentifier(), count,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } finally {
+                Executors.shutdownAndAwaitTermination(decodeExecutor);
+            }
+        }
+        updateLastLedgerBlock(height - 1);
+    }
+
+    /**
+     * Opens the journal, re-applies the records which did not reach the ledger before the last shutdown on top of what
+     * was loaded from it, and starts shipping them.
+     */
+    private void startJournal() throws IOException, HyperledgerException, DataValidationFailedException {
+        journal = new HyperledgerJournal(journalDirectory, getIdentifier(), journalSegmentSize);
+        long count = replay(journal);
+        if (count > 0) {
+            LOG.info("{} re-applied {} journal records not yet on the ledger", getIdentifier(), count);
+        }
+
+        shipper = new HyperledgerJournalShipper(getIdentifier(), journal, kv::ship, this::updateLastLedgerBlock,
+                shipBatchSize, kv.metrics());
+        shipper.start();
+    }
+
+    /**
+     * Opens the journal of the data which is not persisted to the ledger, and re-applies it on top of the ledger data.
+     * Records are replayed from the last compaction, see {@link #compactLocalJournal()}.
+     */
+    private void startLocalJournal() throws IOException, HyperledgerException, DataValidationFailedException {
+        localJournal = new HyperledgerJournal(localJournalDirectory, getIdentifier() + ".local", journalSegmentSize);
+        long count = replay(localJournal);
+        if (count > 0) {
+            LOG.info("{} restored {} local journal records", getIdentifier(), count);
+        }
+    }
+
+    /**
+     * Applies the records of a journal which are not marked as shipped to the local data tree, as a single
+     * modification.
+     *
+     * @return the number of records applied
+     */
+    private long replay(HyperledgerJournal replayed) throws HyperledgerException, DataValidationFailedException {
+        HyperledgerJournal.Reader reader = replayed.newReader();
+        DataTreeModification modification = newModification();
+        long count = 0;
+        for (List<HyperledgerJournal.Record> records = reader.next(shipBatchSize, Integer.MAX_VALUE);
+                !records.isEmpty(); records = reader.next(shipBatchSize, Integer.MAX_VALUE)) {
+            for (HyperledgerJournal.Record record : records) {
+                kv.applyBatch(modification, record.payload());
+            }
+            count += records.size();
+        }
+        if (count > 0) {
+            commitModification(modification);
+        }
+        return count;
+    }
+
+    /**
+     * Appends the current journal-only data as a single record, after which the older records are no longer needed
+     * and their segments are deleted. Called with the store lock held once the journal spans a few segments.
+     */
+    private void compactLocalJournal() throws IOException, HyperledgerException {
+        NormalizedNode root = takeSnapshot().readNode(YangInstanceIdentifier.of()).orElseThrow();
+        HyperledgerTxn compacted = kv.newTransaction();
+        for (Map.Entry<YangInstanceIdentifier, NormalizedNode> region
+                : persistence.regions(root, HyperledgerPersistence.JOURNAL)) {
+            compacted.put(region.getKey(), region.getValue());
+        }
+        long sequence = compacted.append(localJournal);
+        // The compaction record has to be on disk before the records it replaces go
+        localJournal.sync(localJournal.lastSequence());
+        localJournal.markShipped(sequence > 0 ? sequence - 1 : localJournal.lastSequence());
+        LOG.debug("{} compacted the local journal, {} segments left", getIdentifier(), localJournal.segmentCount());
+    }
+
+    private Optional<HyperledgerSnapshotStore.Snapshot> loadSnapshot() {
+        if (snapshotStore == null) {
+            return Optional.empty();
+        }
+        try {
+            return snapshotStore.load();
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn("{} ignoring unreadable snapshot, falling back to a full ledger load", getIdentifier(), e);
+            return Optional.empty();
+        }
+    }
+
+    private void startSnapshots() {
+        if (snapshotStore == null) {
+            return;
+        }
+        if (persistence.defaultPersistence() != HyperledgerPersistence.LEDGER) {
+            // A snapshot only holds ledger data, its parents would be missing when restoring it
+            LOG.info("{} is not persisted to the ledger by default, snapshots are disabled", getIdentifier());
+            return;
+        }
+        snapshotExecutor = Executors.newListeningSingleThreadScheduledExecutor(
+                "HyperledgerDB-snapshot-" + getIdentifier(), LOG);
+        snapshotExecutor.scheduleWithFixedDelay(this::saveSnapshot, snapshotInterval, snapshotInterval,
+                TimeUnit.SECONDS);
+    }
+
+    private void saveSnapshot() {
+        final NormalizedNode root;
+        final long blockNumber;
+        final String transactionId;
+        synchronized (this) {
+            if (diverged) {
+                return;
+            }
+            ListenableFuture<?> synced = kv.sync();
+            if (!synced.isDone() || journal != null && journal.shippedSequence() < journal.lastSequence()) {
+                // The local data tree is ahead of the ledger, there is no block number to tag it with
+                LOG.debug("{} skipping snapshot while ledger submissions are in flight", getIdentifier());
+                return;
+            }
+            try {
+                Futures.getDone(synced);
+            } catch (ExecutionException e) {
+                // Committed locally but not on the ledger, a snapshot would keep data that a reload cannot restore
+                LOG.warn("{} skipping snapshot, a ledger submission failed", getIdentifier(), e.getCause());
+                return;
+            }
+            // Data which is not on the ledger is restored from elsewhere, or not at all
+            root = persistence.retain(YangInstanceIdentifier.of(),
+                    takeSnapshot().readNode(YangInstanceIdentifier.of()).orElseThrow());
+            if (checkpointer == null) {
+                blockNumber = lastLedgerBlock.get();
+                transactionId = "";
+            } else {
+                // Local commits are at or before the checkpoint, or replaying from it is harmless
+                blockNumber = checkpointer.processedBlock();
+                transactionId = checkpointer.getTransactionId().orElse("");
+            }
+        }
+        if (blockNumber < 0 || blockNumber == lastSnapshotBlock && transactionId.equals(lastSnapshotTransaction)) {
+            return;
+        }
+
+        try {
+            snapshotStore.save(root, blockNumber, transactionId);
+            synchronized (this) {
+                if (diverged) {
+                    // Lost the race with diverged()
+                    snapshotStore.delete();
+                    return;
+                }
+            }
+            lastSnapshotBlock = blockNumber;
+            lastSnapshotTransaction = transactionId;
+            LOG.debug("{} saved snapshot at block {}", getIdentifier(), blockNumber);
+        } catch (IOException e) {
+            LOG.warn("{} failed to save snapshot at block {}", getIdentifier(), blockNumber, e);
+        }
+    }
+
+    /**
+     * Applies {@code PutBatch} transactions committed to the ledger by other controllers to the local data tree, as a
+     * single modification. Data tree change listeners are notified as for a local commit.
+     *
+     * <p>If they cannot be applied, the local data tree no longer follows the ledger. The snapshot is deleted and no
+     * further snapshots are taken, so that a restart loads the datastore from the ledger again.
+     */
+    private void applyRemoteChanges(List<LedgerBackend.Change> changes) throws HyperledgerException {
+        DataTreeModification modification = newModification();
+        try {
+            for (LedgerBackend.Change change : changes) {
+                kv.applyBatch(modification, change.getPayload());
+            }
+            commitModification(modification);
+        } catch (HyperledgerException | DataValidationFailedException e) {
+            diverged();
+            throw new HyperledgerException(getIdentifier() + " failed to apply remote ledger transactions", e);
+        }
+        LOG.debug("{} applied {} remote ledger transactions up to block {}", getIdentifier(), changes.size(),
+                changes.get(changes.size() - 1).getBlockNumber());
+    }
+
+    private void diverged() {
+        synchronized (this) {
+            diverged = true;
+        }
+        if (snapshotStore != null) {
+            try {
+                snapshotStore.delete();
+            } catch (IOException e) {
+                LOG.warn("{} failed to delete its snapshot, remove it before restarting", getIdentifier(), e);
+            }
+        }
+        LOG.error("{} no longer follows the ledger, restart it to reload it from the ledger", getIdentifier());
+    }
+
+    private void updateLastLedgerBlock(long blockNumber) {
+        lastLedgerBlock.accumulateAndGet(blockNumber, Math::max);
+    }
+
+    /**
+     * Reads the subtree at a path straight from the ledger, bypassing the local data tree. The entries below the path
+     * are fetched with paged range scans rather than one by one.
+     */
+    public Optional<NormalizedNode> readFromLedger(YangInstanceIdentifier path) throws HyperledgerException {
+        return kv.readSubtree(path, scanPageSize, scanPrefetch);
+    }
+
+    /**
+     * Returns the digest of the subtree at a path of the local data tree, or of the root for an empty path.
+     */
+    public Optional<HashCode> getDigest(YangInstanceIdentifier path) {
+        HyperledgerHashIndex index = hashIndex != null ? hashIndex : new HyperledgerHashIndex();
+        return newModification().readNode(path).map(index::digest);
+    }
+
+    /**
+     * Returns the digest of the subtree at a path as stored on the ledger. It matches {@link #getDigest} if the
+     * subtree is in sync and persisted to the ledger as a whole.
+     */
+    public Optional<HashCode> getLedgerDigest(YangInstanceIdentifier path) throws HyperledgerException {
+        return readFromLedger(path).map(new HyperledgerHashIndex()::digest);
+    }
+
+    /**
+     * Compares the subtree at a path with the ledger, leaving out the parts not persisted to the ledger. The digests of
+     * both sides are compared top-down, descending only into mismatching children. With {@code repair}, the top-most
+     * mismatching subtrees are replaced with their ledger content, unless a commit changed the subtree meanwhile.
+     *
+     * <p>Commits not yet on the ledger show up as differences, so in asynchronous and journal modes the check is only
+     * meaningful once {@link #syncToLedger()} completed without further commits.
+     *
+     * @return the paths of the top-most subtrees which differ
+     * @throws IllegalArgumentException if the path itself is not persisted to the ledger
+     */
+    public List<YangInstanceIdentifier> checkConsistency(YangInstanceIdentifier path, boolean repair)
+            throws HyperledgerException, DataValidationFailedException {
+        if (persistence.persistenceOf(path) != HyperledgerPersistence.LEDGER) {
+            throw new IllegalArgumentException(path + " is not persisted to the ledger");
+        }
+        HyperledgerHashIndex ledgerIndex = new HyperledgerHashIndex();
+        NormalizedNode ledger = readFromLedger(path).map(data -> persistence.retain(path, data)).orElse(null);
+        Optional<NormalizedNode> localData = newModification().readNode(path);
+        NormalizedNode local = localData.map(data -> persistence.retain(path, data)).orElse(null);
+
+        List<HyperledgerHashIndex.Difference> differences = new ArrayList<>();
+        (hashIndex != null ? hashIndex : new HyperledgerHashIndex())
+            .differences(path, local, ledgerIndex, ledger, differences);
+        LOG.info("{} found {} subtrees under {} which differ from the ledger", getIdentifier(), differences.size(),
+                path);
+        if (repair && !differences.isEmpty()) {
+            repair(path, localData.orElse(null), differences);
+        }
+        return differences.stream().map(difference -> difference.path).collect(Collectors.toList());
+    }
+
+    private synchronized void repair(YangInstanceIdentifier path, NormalizedNode compared,
+            List<HyperledgerHashIndex.Difference> differences) throws DataValidationFailedException {
+        DataTreeModification modification = newModification();
+        if (modification.readNode(path).orElse(null) != compared) {
+            LOG.warn("{} not repairing {}, it was modified during the check", getIdentifier(), path);
+            return;
+        }
+        for (HyperledgerHashIndex.Difference difference : differences) {
+            if (difference.expected != null) {
+                modification.write(difference.path, difference.expected);
+            } else {
+                modification.delete(difference.path);
+            }
+        }
+        commitModification(modification);
+    }
+
+    /**
+     * Sets the fraction of commits traced, from 0 for none to 1 for all.
+     *
+     * @throws IllegalArgumentException if the rate is not between 0 and 1
+     */
+    public void setTraceSampleRate(double sampleRate) {
+        kv.tracer().setSampleRate(sampleRate);
+    }
+
+    /**
+     * Sets whether traced commits log each ledger entry they put or delete, with its data.
+     */
+    public void setTraceLogPayloads(boolean logPayloads) {
+        kv.tracer().setLogPayloads(logPayloads);
+    }
+
+    /**
+     * Returns the current value of every metric of this store by name, for exporters other than JMX: commit phase
+     * latency percentiles in microseconds, ledger transaction, entry, failure and retry counts, payload sizes,
+     * submissions in flight and listener queue depths.
+     */
+    public Map<String, Number> getMetrics() {
+        return kv.metrics().snapshot();
+    }
+
+    /**
+     * Returns hit and miss statistics of the ledger read cache, if it is enabled.
+     */
+    public Optional<CacheStats> getReadCacheStats() {
+        return kv.readCacheStats();
+    }
+
+    /**
+     * Returns a future which completes once every candidate committed to this store so far is also committed to the
+     * ledger. In synchronous mode this is always the case and the returned future is already complete.
+     */
+    public ListenableFuture<?> syncToLedger() {
+        return shipper != null ? shipper.sync() : kv.sync();
+    }
+
     @Override
     public void close() {
+        if (eventListener != null) {
+            eventListener.close();
+        }
+        if (snapshotExecutor != null) {
+            Executors.shutdownAndAwaitTermination(snapshotExecutor);
+        }
+        if (shipper != null) {
+            shipper.close();
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.warn("{} failed to close journal", getIdentifier(), e);
+            }
+        }
+        if (localJournal != null) {
+            try {
+                localJournal.close();
+            } catch (IOException e) {
+                LOG.warn("{} failed to close local journal", getIdentifier(), e);
+            }
+        }
+        kv.close();
+        super.close();
     }
 
     private static char prefixChar(LogicalDatastoreType type) {
@@ -79,41 +555,183 @@ public class HyperledgerDataStore extends InMemoryDOMDataStore {
     }
 
     @Override
-    protected synchronized void commit(DataTreeCandidate candidate) {
+    protected void validated(long elapsedNanos) {
+        kv.metrics().record(HyperledgerTracer.Phase.VALIDATE, elapsedNanos);
+    }
+
+    @Override
+    protected void prepared(long elapsedNanos) {
+        kv.metrics().record(HyperledgerTracer.Phase.CANDIDATE, elapsedNanos);
+    }
+
+    @Override
+    protected void committed(DataTreeCandidate candidate) {
+        if (hashIndex != null) {
+            hashIndex.update(candidate);
+        }
+    }
+
+    @Override
+    protected void commit(DataTreeModification modification, DataTreeCandidate candidate)
+            throws DataValidationFailedException {
+        JournalSequences sequences = commitAndSend(modification, candidate);
+        // Outside of the store lock, so that concurrent commits share a single fsync
+        if (sequences.shipped > 0) {
+            journal.sync(sequences.shipped);
+        }
+        if (sequences.local > 0) {
+            localJournal.sync(sequences.local);
+        }
+    }
+
+    /**
+     * Commits a candidate to the local data tree and sends each part of it where its persistence policy says: to the
+     * ledger or the write-behind journal, to the local journal, or nowhere.
+     *
+     * <p>Remote changes may have been applied since the candidate was prepared. It is prepared again first, so that
+     * nothing is sent which the local data tree then refuses.
+     *
+     * @return the sequence numbers of the journal records which have to be synced, -1 if there are none
+     */
+    private synchronized JournalSequences commitAndSend(DataTreeModification modification,
+            DataTreeCandidate prepared) throws DataValidationFailedException {
         isInitialized();
+        DataTreeCandidate candidate = rebase(modification, prepared);
         if (!candidate.getRootPath().equals(YangInstanceIdentifier.of())) {
             LOG.error("DataTreeCandidate: YangInstanceIdentifier path={}", candidate.getRootPath());
             throw new IllegalArgumentException("I've not learnt how to deal with DataTreeCandidate where "
                     + "root path != YangInstanceIdentifier.EMPTY yet - will you teach me? ;)");
         }
 
-        LOG.info("{} commit: DataTreeCandidate={}", getIdentifier(), candidate);
-        print("", candidate.getRootNode());
-
+        HyperledgerTracer.Trace trace = kv.tracer().start("commit");
+        boolean submitted = false;
         try {
-            HyperledgerTxn kvTx = kv.newTransaction();
-            sendToHyperledger(kvTx, candidate, candidate.getRootPath(), candidate.getRootNode());
-        } catch (HyperledgerException | IllegalArgumentException e) {
+            long start = System.nanoTime();
+            if (trace.isSampled()) {
+                trace.nodes(countModified(candidate.getRootNode()));
+            }
+            JournalSequences sequences = new JournalSequences();
+            HyperledgerTxn kvTx = kv.newTransaction(trace);
+            HyperledgerTxn localTx = localJournal != null ? kv.newTransaction(trace) : null;
+            if (layout.isIncremental()) {
+                sendChanges(kvTx, localTx, candidate.getRootNode());
+            } else {
+                sendToHyperledger(kvTx, localTx, candidate, candidate.getRootPath(), candidate.getRootNode());
+            }
+            kv.metrics().record(HyperledgerTracer.Phase.PREPARE, start, trace);
+            if (journal != null) {
+                // Acknowledged once on local disk, the shipper takes it to the ledger in the background
+                sequences.shipped = kvTx.append(journal);
+                super.commit(modification, candidate);
+            } else if (asyncSubmit) {
+                // The local data tree is authoritative right away, the ledger catches up in the background
+                super.commit(modification, candidate);
+                Futures.addCallback(kvTx.submit(), new FutureCallback<Long>() {
+                    @Override
+                    public void onSuccess(Long blockNumber) {
+                        if (blockNumber != null) {
+                            updateLastLedgerBlock(blockNumber);
+                        }
+                        trace.finish("committed");
+                    }
+
+                    @Override
+                    public void onFailure(Throwable cause) {
+                        // Already logged by the submitter
+                        trace.finish("failed");
+                    }
+                }, MoreExecutors.directExecutor());
+                submitted = true;
+            } else {
+                updateLastLedgerBlock(kvTx.commit());
+                super.commit(modification, candidate);
+            }
+            if (localTx != null) {
+                sequences.local = localTx.append(localJournal);
+                if (localJournal.segmentCount() > 2) {
+                    compactLocalJournal();
+                }
+            }
+            if (!submitted) {
+                trace.finish(journal != null ? "journaled" : "committed");
+            }
+            return sequences;
+        } catch (HyperledgerException | IOException | IllegalArgumentException e) {
+            trace.finish("failed");
             throw new RuntimeException(e);
         }
     }
 
+    // Counts the nodes a candidate touched, for traces
+    private static long countModified(DataTreeCandidateNode node) {
+        if (node.modificationType() == ModificationType.UNMODIFIED) {
+            return 0;
+        }
+        long count = 1;
+        for (DataTreeCandidateNode child : node.childNodes()) {
+            count += countModified(child);
+        }
+        return count;
+    }
+
+    /**
+     * Sends the entries of the storage layout whose content changed, rather than every written subtree.
+     */
+    private void sendChanges(HyperledgerTxn kvTx, HyperledgerTxn localTx, DataTreeCandidateNode root)
+            throws HyperledgerException {
+        for (HyperledgerStorageLayout.Change change : layout.changes(root)) {
+            HyperledgerTxn target = target(kvTx, localTx, change.path);
+            if (target == null) {
+                continue;
+            }
+            if (change.data != null) {
+                target.put(change.path, change.data);
+            } else {
+                target.delete(change.path);
+            }
+        }
+    }
+
+    private HyperledgerTxn target(HyperledgerTxn kvTx, HyperledgerTxn localTx, YangInstanceIdentifier path) {
+        switch (persistence.persistenceOf(path)) {
+            case LEDGER:
+                return kvTx;
+            case JOURNAL:
+                return localTx;
+            default:
+                return null;
+        }
+    }
+
     @SuppressWarnings("checkstyle:MissingSwitchDefault")
-    private void sendToHyperledger(HyperledgerTxn kvTx, DataTreeCandidate candidate, YangInstanceIdentifier base,
-            DataTreeCandidateNode node) throws IllegalArgumentException, HyperledgerException {
+    private void sendToHyperledger(HyperledgerTxn kvTx, HyperledgerTxn localTx, DataTreeCandidate candidate,
+            YangInstanceIdentifier base, DataTreeCandidateNode node)
+            throws IllegalArgumentException, HyperledgerException {
         YangInstanceIdentifier newBase = candidate.getRootNode().equals(node) ? base : base.node(node.name());
+        HyperledgerTxn target = target(kvTx, localTx, newBase);
 
         ModificationType modificationType = node.modificationType();
         switch (modificationType) {
             case WRITE:
             case APPEARED:
-                kvTx.put(newBase,
-                        node.getDataAfter());
-                break;
+                if (Objects.equals(node.dataBefore(), node.dataAfter())) {
+                    // Rewritten with the same content, nothing to send for the whole subtree
+                    return;
+                }
+                HyperledgerPersistence written = persistence.persistenceOf(newBase);
+                if (target != null) {
+                    deleteRewritten(target, newBase, node, written);
+                    target.put(newBase, persistence.retain(newBase, node.getDataAfter()));
+                }
+                // The put holds the whole subtree, except for the parts persisted differently
+                sendStripped(kvTx, localTx, candidate, newBase, node, written);
+                return;
 
             case DELETE:
             case DISAPPEARED:
-                kvTx.delete(newBase);
+                if (target != null) {
+                    target.delete(newBase);
+                }
                 break;
 
             case UNMODIFIED:
@@ -123,27 +741,38 @@ public class HyperledgerDataStore extends InMemoryDOMDataStore {
         }
 
         for (DataTreeCandidateNode childNode : node.childNodes()) {
-            sendToHyperledger(kvTx, candidate, newBase, childNode);
+            sendToHyperledger(kvTx, localTx, candidate, newBase, childNode);
         }
     }
 
-    private void print(String indent, DataTreeCandidateNode node) {
-        if (LOG.isInfoEnabled()) {
-            LOG.info("{}{} DataTreeCandidateNode: modificationType={}, PathArgument identifier={}",
-                    indent, getIdentifier(), node.modificationType(), getIdentifierAsString(node));
-            LOG.info("{}{}   dataAfter = {}", indent, getIdentifier(), node.getDataAfter());
-
-            for (DataTreeCandidateNode childNode : node.childNodes()) {
-                print(indent + "    ", childNode);
+    // Deletes the entries which descendants of a written node may have of their own, as loading them after the put
+    // would bring back their previous content
+    private void deleteRewritten(HyperledgerTxn target, YangInstanceIdentifier base, DataTreeCandidateNode node,
+            HyperledgerPersistence written) throws HyperledgerException {
+        for (DataTreeCandidateNode childNode : node.childNodes()) {
+            YangInstanceIdentifier path = base.node(childNode.name());
+            if (childNode.modificationType() != ModificationType.UNMODIFIED && childNode.dataBefore() != null
+                    && persistence.persistenceOf(path) == written) {
+                deleteRewritten(target, path, childNode, written);
+                target.delete(path);
             }
         }
     }
 
-    private static String getIdentifierAsString(DataTreeCandidateNode node) {
-        try {
-            return node.name().toString();
-        } catch (IllegalStateException e) {
-            return "-ROOT-";
+    // Sends the changed subtrees below a written node which its put left out, being persisted differently
+    private void sendStripped(HyperledgerTxn kvTx, HyperledgerTxn localTx, DataTreeCandidate candidate,
+            YangInstanceIdentifier base, DataTreeCandidateNode node, HyperledgerPersistence written)
+            throws HyperledgerException {
+        for (DataTreeCandidateNode childNode : node.childNodes()) {
+            if (childNode.modificationType() == ModificationType.UNMODIFIED) {
+                continue;
+            }
+            YangInstanceIdentifier path = base.node(childNode.name());
+            if (persistence.persistenceOf(path) != written) {
+                sendToHyperledger(kvTx, localTx, candidate, base, childNode);
+            } else {
+                sendStripped(kvTx, localTx, candidate, path, childNode, written);
+            }
         }
     }
 
@@ -0,0 +1,344 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.Map;
+import javax.annotation.processing.Generated;
+import org.eclipse.jdt.annotation.NonNull;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+import org.opendaylight.blockstore.ds.inmemory.copypaste.InMemoryDOMDataStoreConfigProperties;
+import org.opendaylight.blockstore.ds.inmemory.copypaste.TreeChangeOverflowPolicy;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+
+/**
+ * Holds the ledger-related configuration properties of a {@link HyperledgerDataStore}.
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PRIVATE, allowedClasspathAnnotations = {
+    SuppressWarnings.class, Generated.class
+})
+@SuppressWarnings("all")
+public abstract class HyperledgerDataStoreConfigProperties {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT_SUBMISSIONS = 16;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    public static final int DEFAULT_LOAD_PAGE_SIZE = 1000;
+    public static final int DEFAULT_SCAN_PAGE_SIZE = 1000;
+    public static final int DEFAULT_SCAN_PREFETCH = 2;
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 300;
+    public static final long DEFAULT_READ_CACHE_SIZE = 10000;
+    public static final int DEFAULT_MAX_COALESCED_EVENTS = 1000;
+    public static final long DEFAULT_CHECKPOINT_SYNC_INTERVAL = 1000;
+    public static final int DEFAULT_JOURNAL_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SHIP_BATCH_SIZE = 256;
+    public static final int DEFAULT_GROUP_COMMIT_MAX_SIZE = 100;
+    public static final double DEFAULT_TRACE_SAMPLE_RATE = 0.01;
+
+    private static final @NonNull HyperledgerDataStoreConfigProperties DEFAULT = builder().build();
+
+    /**
+     * Returns the HyperledgerDataStoreConfigProperties instance with default values.
+     *
+     * @return the HyperledgerDataStoreConfigProperties instance with default values.
+     */
+    public static @NonNull HyperledgerDataStoreConfigProperties getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a new {@link HyperledgerDataStoreConfigPropertiesBuilder}.
+     *
+     * @return a new {@link HyperledgerDataStoreConfigPropertiesBuilder}.
+     */
+    public static @NonNull HyperledgerDataStoreConfigPropertiesBuilder builder() {
+        return new HyperledgerDataStoreConfigPropertiesBuilder();
+    }
+
+    /**
+     * Returns true if ledger submission should happen asynchronously, after the local data tree has been committed.
+     *
+     * @return true if ledger submission should happen asynchronously.
+     */
+    @Value.Default
+    public boolean getAsyncSubmit() {
+        return false;
+    }
+
+    /**
+     * Returns the maximum number of ledger transactions which have been submitted but whose commit status is not
+     * known yet. Only used when {@link #getAsyncSubmit()} is true.
+     */
+    @Value.Default
+    public int getMaxInFlightSubmissions() {
+        return DEFAULT_MAX_IN_FLIGHT_SUBMISSIONS;
+    }
+
+    /**
+     * Returns the encoded size in bytes from which ledger values are compressed. Non-positive values disable
+     * compression.
+     */
+    @Value.Default
+    public int getCompressionThreshold() {
+        return DEFAULT_COMPRESSION_THRESHOLD;
+    }
+
+    /**
+     * Returns the number of entries requested per page when loading the datastore from the ledger on startup.
+     */
+    @Value.Default
+    public int getLoadPageSize() {
+        return DEFAULT_LOAD_PAGE_SIZE;
+    }
+
+    /**
+     * Returns the number of entries requested per page when reading a subtree from the ledger.
+     */
+    @Value.Default
+    public int getScanPageSize() {
+        return DEFAULT_SCAN_PAGE_SIZE;
+    }
+
+    /**
+     * Returns the number of pages fetched ahead of the one being assembled when reading a subtree from the ledger.
+     */
+    @Value.Default
+    public int getScanPrefetch() {
+        return DEFAULT_SCAN_PREFETCH;
+    }
+
+    /**
+     * Returns the number of threads decoding ledger entries when loading the datastore on startup.
+     */
+    @Value.Default
+    public int getLoadParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns the directory holding local snapshots of the datastores. An empty string disables snapshots.
+     */
+    @Value.Default
+    public String getSnapshotDirectory() {
+        return "";
+    }
+
+    /**
+     * Returns the interval in seconds between two local snapshots.
+     */
+    @Value.Default
+    public long getSnapshotInterval() {
+        return DEFAULT_SNAPSHOT_INTERVAL;
+    }
+
+    /**
+     * Returns the maximum number of ledger values kept in the read cache. Non-positive values disable the cache.
+     */
+    @Value.Default
+    public long getReadCacheSize() {
+        return DEFAULT_READ_CACHE_SIZE;
+    }
+
+    /**
+     * Returns true if transactions committed to the ledger by other controllers should be applied to the local data
+     * tree as they appear on the ledger change stream.
+     */
+    @Value.Default
+    public boolean getApplyRemoteChanges() {
+        return true;
+    }
+
+    /**
+     * Returns the maximum number of remote ledger transactions applied to the local data tree as one modification.
+     */
+    @Value.Default
+    public int getMaxCoalescedEvents() {
+        return DEFAULT_MAX_COALESCED_EVENTS;
+    }
+
+    /**
+     * Returns the minimum interval in milliseconds between two forced writes of the ledger change stream checkpoint.
+     * The checkpoint is kept next to the snapshots, see {@link #getSnapshotDirectory()}.
+     */
+    @Value.Default
+    public long getCheckpointSyncInterval() {
+        return DEFAULT_CHECKPOINT_SYNC_INTERVAL;
+    }
+
+    /**
+     * Returns the directory of the local write-behind journal. If set, commits are acknowledged once they are on
+     * local disk and shipped to the ledger in the background, taking precedence over {@link #getAsyncSubmit()}. An
+     * empty string disables the journal.
+     */
+    @Value.Default
+    public String getJournalDirectory() {
+        return "";
+    }
+
+    /**
+     * Returns the size in bytes of a journal segment file.
+     */
+    @Value.Default
+    public int getJournalSegmentSize() {
+        return DEFAULT_JOURNAL_SEGMENT_SIZE;
+    }
+
+    /**
+     * Returns the maximum number of journal records shipped to the ledger as one transaction.
+     */
+    @Value.Default
+    public int getShipBatchSize() {
+        return DEFAULT_SHIP_BATCH_SIZE;
+    }
+
+    /**
+     * Returns the maximum number of asynchronously submitted commits merged into one ledger transaction. Only used
+     * when {@link #getAsyncSubmit()} is true.
+     */
+    @Value.Default
+    public int getGroupCommitMaxSize() {
+        return DEFAULT_GROUP_COMMIT_MAX_SIZE;
+    }
+
+    /**
+     * Returns how long in microseconds the first commit of a group waits for more commits to merge with. With the
+     * default of 0, only commits which queued up while the previous group was being submitted are merged.
+     */
+    @Value.Default
+    public long getGroupCommitWindow() {
+        return 0;
+    }
+
+    /**
+     * Returns true if the CONFIGURATION and OPERATIONAL datastores should coordinate their commits on separate threads
+     * rather than on one shared thread, so that slow ledger commits of one datastore do not delay the other.
+     */
+    @Value.Default
+    public boolean getParallelCommitCoordinators() {
+        return false;
+    }
+
+    /**
+     * Returns true if changes queued for a slow data tree change listener should be merged per subtree until it is
+     * notified, rather than delivered one commit at a time. The listener then only sees the net effect of a burst.
+     */
+    @Value.Default
+    public boolean getCoalesceListenerNotifications() {
+        return false;
+    }
+
+    /**
+     * Returns how many candidates may be queued for a data tree change listener before
+     * {@link #getListenerOverflowPolicy()} applies.
+     */
+    @Value.Default
+    public int getListenerQueueSize() {
+        return InMemoryDOMDataStoreConfigProperties.DEFAULT_MAX_DATA_CHANGE_LISTENER_QUEUE_SIZE;
+    }
+
+    /**
+     * Returns what happens to a commit when the queue of a data tree change listener is full: it waits for the
+     * listener, the queued changes are merged per subtree, or they are dropped and the listener is later sent the net
+     * change of each subtree instead.
+     */
+    @Value.Default
+    public TreeChangeOverflowPolicy getListenerOverflowPolicy() {
+        return TreeChangeOverflowPolicy.BLOCK;
+    }
+
+    /**
+     * Returns how many threads notify the data tree change listeners. 0 starts threads as needed.
+     */
+    @Value.Default
+    public int getListenerThreads() {
+        return 0;
+    }
+
+    /**
+     * Returns true if data tree change listeners should be notified on virtual threads, one per notification, which
+     * lets listeners blocking on I/O wait without holding a platform thread. Ignored with a warning on runtimes
+     * without virtual threads.
+     */
+    @Value.Default
+    public boolean getVirtualThreadListeners() {
+        return false;
+    }
+
+    /**
+     * Returns how the CONFIGURATION datastore is persisted outside of the subtrees matched by
+     * {@link #getConfigurationPersistenceRules()}.
+     */
+    @Value.Default
+    public HyperledgerPersistence getConfigurationPersistence() {
+        return HyperledgerPersistence.LEDGER;
+    }
+
+    /**
+     * Returns how the OPERATIONAL datastore is persisted outside of the subtrees matched by
+     * {@link #getOperationalPersistenceRules()}.
+     */
+    @Value.Default
+    public HyperledgerPersistence getOperationalPersistence() {
+        return HyperledgerPersistence.LEDGER;
+    }
+
+    /**
+     * Returns the fraction of commits traced, from 0 for none to 1 for all. Traces are logged at INFO by
+     * {@code HyperledgerTracer}, with the time spent in each phase of the commit and the size of what was sent.
+     */
+    @Value.Default
+    public double getTraceSampleRate() {
+        return DEFAULT_TRACE_SAMPLE_RATE;
+    }
+
+    /**
+     * Returns true if traced commits should also log each ledger entry they put or delete, with its data.
+     */
+    @Value.Default
+    public boolean getTraceLogPayloads() {
+        return false;
+    }
+
+    /**
+     * Returns true if the metrics of each datastore should be registered as an MBean on the platform MBean server.
+     * They are recorded either way, and can also be read through {@code HyperledgerDataStore.getMetrics()}.
+     */
+    @Value.Default
+    public boolean getMetricsJmx() {
+        return true;
+    }
+
+    /**
+     * Returns true if digests of the data tree should be maintained on each commit, so that consistency checks against
+     * the ledger only compute the digests of the ledger side.
+     */
+    @Value.Default
+    public boolean getHashIndex() {
+        return false;
+    }
+
+    /**
+     * Returns how finely the datastores are cut into ledger entries. Every controller of a channel must use the same
+     * granularity, and the granularity of a channel which already holds data should not be changed.
+     */
+    @Value.Default
+    public HyperledgerStorageGranularity getStorageGranularity() {
+        return HyperledgerStorageGranularity.SUBTREE;
+    }
+
+    /**
+     * Returns the granularity of subtrees of both datastores, by path prefix. The longest matching prefix wins, and
+     * the node at the prefix is always an entry of its own.
+     */
+    public abstract Map<YangInstanceIdentifier, HyperledgerStorageGranularity> getStorageGranularityRules();
+
+    /**
+     * Returns how subtrees of the CONFIGURATION datastore are persisted, by path prefix. The longest matching prefix
+     * wins. {@link HyperledgerPersistence#JOURNAL} needs a journal or a snapshot directory.
+     */
+    public abstract Map<YangInstanceIdentifier, HyperledgerPersistence> getConfigurationPersistenceRules();
+
+    /**
+     * Returns how subtrees of the OPERATIONAL datastore are persisted, by path prefix. The longest matching prefix
+     * wins. {@link HyperledgerPersistence#JOURNAL} needs a journal or a snapshot directory.
+     */
+    public abstract Map<YangInstanceIdentifier, HyperledgerPersistence> getOperationalPersistenceRules();
+}
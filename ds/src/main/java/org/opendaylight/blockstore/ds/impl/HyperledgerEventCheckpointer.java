@@ -0,0 +1,144 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the position of the ledger change stream up to which changes have been processed, as the number of the
+ * next block to read and the last transaction already processed within it.
+ *
+ * <p>The position is kept in a small file which is rewritten in place on every checkpoint. Writes always reach the
+ * operating system, but the file is forced to disk at most once per sync interval (or on {@link #flush()}), so a
+ * burst of changes costs a single {@code fsync}. Losing the last unforced positions only means replaying a few
+ * already applied transactions. Without a file the position is only kept in memory.
+ */
+@SuppressWarnings("all")
+final class HyperledgerEventCheckpointer implements LedgerBackend.Checkpoint, AutoCloseable {
+
+    private static final int MAGIC = 0x484C4350; // "HLCP"
+
+    private final FileChannel channel;
+    private final long syncIntervalNanos;
+    private final ByteBuffer buffer = ByteBuffer.allocate(512);
+
+    private long blockNumber = -1;
+    private String transactionId = "";
+    private boolean dirty;
+    private long lastSync = System.nanoTime();
+
+    HyperledgerEventCheckpointer(Path file, long syncIntervalMillis) throws IOException {
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis);
+        if (file == null) {
+            this.channel = null;
+            return;
+        }
+
+        Files.createDirectories(file.getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() > 0) {
+            read();
+        }
+    }
+
+    /**
+     * Records that all changes of a block have been processed.
+     */
+    public synchronized void checkpointBlock(long block) throws IOException {
+        update(block + 1, "");
+    }
+
+    /**
+     * Records that a change, and all changes before it, have been processed.
+     */
+    public synchronized void checkpointChange(LedgerBackend.Change change) throws IOException {
+        update(change.getBlockNumber(), change.getTransactionId());
+    }
+
+    @Override
+    public synchronized OptionalLong getBlockNumber() {
+        return blockNumber < 0 ? OptionalLong.empty() : OptionalLong.of(blockNumber);
+    }
+
+    @Override
+    public synchronized Optional<String> getTransactionId() {
+        return transactionId.isEmpty() ? Optional.empty() : Optional.of(transactionId);
+    }
+
+    /**
+     * Returns the number of the last block all of whose changes have been processed.
+     */
+    synchronized long processedBlock() {
+        return blockNumber - 1;
+    }
+
+    /**
+     * Forces the current position to disk, if it has not been yet.
+     */
+    synchronized void flush() throws IOException {
+        if (channel != null && dirty) {
+            channel.force(false);
+            dirty = false;
+            lastSync = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private void update(long newBlockNumber, String newTransactionId) throws IOException {
+        blockNumber = newBlockNumber;
+        transactionId = newTransactionId == null ? "" : newTransactionId;
+        if (channel == null) {
+            return;
+        }
+
+        byte[] txId = transactionId.getBytes(StandardCharsets.UTF_8);
+        buffer.clear();
+        buffer.putInt(MAGIC).putLong(blockNumber).putShort((short) txId.length).put(txId).flip();
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, length - buffer.remaining());
+        }
+        channel.truncate(length);
+        dirty = true;
+
+        if (System.nanoTime() - lastSync >= syncIntervalNanos) {
+            flush();
+        }
+    }
+
+    private void read() throws IOException {
+        ByteBuffer in = ByteBuffer.allocate((int) Math.min(channel.size(), buffer.capacity()));
+        while (in.hasRemaining() && channel.read(in, in.position()) >= 0) {
+            // keep reading
+        }
+        in.flip();
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file");
+            }
+            long block = in.getLong();
+            byte[] txId = new byte[in.getShort()];
+            in.get(txId);
+            blockNumber = block;
+            transactionId = new String(txId, StandardCharsets.UTF_8);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated checkpoint file", e);
+        }
+    }
+}
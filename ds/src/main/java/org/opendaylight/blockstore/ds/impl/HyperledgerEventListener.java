@@ -0,0 +1,191 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows the change stream of the ledger and hands {@code PutBatch} transactions committed
+ * by other controllers to an {@link EventSink}. Changes are read on one thread and applied on another, so that a burst
+ * which arrives while a previous one is being applied is delivered as a single list.
+ *
+ * <p>Processed changes are recorded in a {@link HyperledgerEventCheckpointer}, from which the stream resumes after a
+ * disconnection without delivering anything twice. If the sink fails to apply some changes, the listener stops
+ * without checkpointing them, so that they are delivered again from the checkpoint after a restart.
+ */
+@SuppressWarnings("all")
+final class HyperledgerEventListener implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerEventListener.class);
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+    @FunctionalInterface
+    interface EventSink {
+        /**
+         * Applies a non-empty list of changes, in ledger order.
+         *
+         * @throws HyperledgerException if the changes could not be applied, which stops the listener
+         */
+        void apply(List<LedgerBackend.Change> changes) throws HyperledgerException;
+    }
+
+    /**
+     * Tells whether a transaction was submitted by this controller. Called once per change, so implementations may
+     * forget the transaction afterwards.
+     */
+    @FunctionalInterface
+    interface LocalTransactions {
+        boolean remove(String transactionId);
+    }
+
+    private final String name;
+    private final LedgerBackend ledger;
+    private final LocalTransactions localTransactions;
+    private final EventSink sink;
+    private final HyperledgerEventCheckpointer checkpointer;
+    private final int maxCoalescedEvents;
+    private final BlockingQueue<LedgerBackend.Change> queue;
+    private final ExecutorService readExecutor;
+    private final ExecutorService applyExecutor;
+
+    // Changes queued or being applied, the reader may only checkpoint by itself when there are none
+    private final AtomicInteger pendingEvents = new AtomicInteger();
+
+    private volatile boolean closed;
+    private volatile LedgerBackend.ChangeStream changes;
+
+    HyperledgerEventListener(String name, LedgerBackend ledger, LocalTransactions localTransactions, EventSink sink,
+            HyperledgerEventCheckpointer checkpointer, int maxCoalescedEvents) {
+        this.name = name;
+        this.ledger = ledger;
+        this.localTransactions = localTransactions;
+        this.sink = sink;
+        this.checkpointer = checkpointer;
+        this.maxCoalescedEvents = maxCoalescedEvents;
+        this.queue = new LinkedBlockingQueue<>(maxCoalescedEvents * 4);
+        this.readExecutor = Executors.newListeningSingleThreadExecutor("HyperledgerDB-events-" + name, LOG);
+        this.applyExecutor = Executors.newListeningSingleThreadExecutor("HyperledgerDB-remoteApply-" + name, LOG);
+    }
+
+    /**
+     * Starts following the change stream from its checkpoint, or from {@code startBlock} if the checkpoint is older.
+     *
+     * @param startBlock the first block whose changes are not reflected yet by the local data tree
+     */
+    void start(long startBlock) throws IOException {
+        if (checkpointer.getBlockNumber().orElse(-1) < startBlock) {
+            checkpointer.checkpointBlock(startBlock - 1);
+        }
+        readExecutor.execute(this::readEvents);
+        applyExecutor.execute(this::applyEvents);
+    }
+
+    private void readEvents() {
+        while (!closed) {
+            try (LedgerBackend.ChangeStream stream = ledger.changes(checkpointer)) {
+                changes = stream;
+                while (stream.hasNext()) {
+                    LedgerBackend.Change change = stream.next();
+                    if (localTransactions.remove(change.getTransactionId())) {
+                        if (pendingEvents.get() == 0 && !closed) {
+                            // Everything before this change has been applied
+                            checkpoint(change);
+                        }
+                        continue;
+                    }
+                    pendingEvents.incrementAndGet();
+                    queue.put(change);
+                }
+            } catch (RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                LOG.warn("{} ledger change stream failed, reconnecting from block {}", name,
+                    checkpointer.getBlockNumber().orElse(0), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                // Let queued changes be applied and checkpointed, so that the new stream does not deliver them again
+                do {
+                    TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+                } while (pendingEvents.get() > 0 && !closed);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void applyEvents() {
+        List<LedgerBackend.Change> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, maxCoalescedEvents - 1);
+
+            try {
+                sink.apply(batch);
+            } catch (HyperledgerException | RuntimeException e) {
+                LOG.error("{} failed to apply {} remote ledger changes from block {}, no longer following the ledger",
+                    name, batch.size(), batch.get(0).getBlockNumber(), e);
+                stop();
+                return;
+            }
+            checkpoint(batch.get(batch.size() - 1));
+            pendingEvents.addAndGet(-batch.size());
+            batch.clear();
+        }
+    }
+
+    private void checkpoint(LedgerBackend.Change change) {
+        try {
+            checkpointer.checkpointChange(change);
+        } catch (IOException e) {
+            LOG.warn("{} failed to checkpoint ledger change stream at block {}", name, change.getBlockNumber(), e);
+        }
+    }
+
+    // Stops reading and applying changes, leaving the checkpoint where it is
+    private void stop() {
+        closed = true;
+        LedgerBackend.ChangeStream stream = changes;
+        if (stream != null) {
+            stream.close();
+        }
+        // The reader may be waiting for room in the queue
+        readExecutor.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        stop();
+        applyExecutor.shutdownNow();
+        try {
+            readExecutor.awaitTermination(RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            applyExecutor.awaitTermination(RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            checkpointer.close();
+        } catch (IOException e) {
+            LOG.warn("{} failed to close ledger change checkpoint", name, e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.DistinctNodeContainer;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodes;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodeContainer;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidate;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.tree.api.ModificationType;
+
+/**
+ * Content digests of the nodes of a data tree, kept up to date commit by commit.
+ *
+ * <p>The digest of a node is the SHA-256 of its name, its kind and either its value or the sum modulo 2^256 of the
+ * digests of its children. The sum does not depend on the order of the children, so that data restored from the ledger
+ * in key order has the same digests as the original, and it can be updated by subtracting the digests of the children
+ * a commit replaced and adding those of their replacements, without looking at the children it did not touch.
+ *
+ * <p>Digests are cached by node identity. The nodes of a data tree are immutable and the versions of a tree share the
+ * subtrees a commit did not modify, so each commit only computes the digests along its modified paths. Entries of
+ * nodes which are no longer referenced are dropped by the garbage collector.
+ */
+@SuppressWarnings("all")
+final class HyperledgerHashIndex {
+
+    private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(256);
+
+    private static final class Digest {
+        final HashCode hash;
+        // Sum of the digests of the children, null for nodes without children
+        final BigInteger childSum;
+
+        Digest(HashCode hash, BigInteger childSum) {
+            this.hash = hash;
+            this.childSum = childSum;
+        }
+    }
+
+    /**
+     * A subtree which differs between two trees, with its content in both.
+     */
+    static final class Difference {
+        final YangInstanceIdentifier path;
+        final NormalizedNode actual;
+        final NormalizedNode expected;
+
+        Difference(YangInstanceIdentifier path, NormalizedNode actual, NormalizedNode expected) {
+            this.path = path;
+            this.actual = actual;
+            this.expected = expected;
+        }
+    }
+
+    // Weak keys are compared by identity
+    private final Cache<NormalizedNode, Digest> digests = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * Returns the digest of a node, computing it for the parts not seen before.
+     */
+    HashCode digest(NormalizedNode node) {
+        return lookup(node).hash;
+    }
+
+    /**
+     * Computes the digests of the nodes a candidate modified from the digests of the nodes they replace.
+     */
+    void update(DataTreeCandidate candidate) {
+        update(candidate.getRootNode());
+    }
+
+    /**
+     * Collects the top-most subtrees in which {@code actual} differs from {@code expected}, descending only into the
+     * children whose digests differ.
+     */
+    void differences(YangInstanceIdentifier path, NormalizedNode actual, HyperledgerHashIndex expectedIndex,
+            NormalizedNode expected, List<Difference> differences) {
+        if (actual == null && expected == null
+                || actual != null && expected != null && digest(actual).equals(expectedIndex.digest(expected))) {
+            return;
+        }
+        if (!(actual instanceof DistinctNodeContainer) || !(expected instanceof DistinctNodeContainer)
+                || !actual.contract().equals(expected.contract())) {
+            differences.add(new Difference(path, actual, expected));
+            return;
+        }
+        for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) expected).body()) {
+            differences(path.node(child.name()), NormalizedNodes.getDirectChild(actual, child.name()).orElse(null),
+                    expectedIndex, child, differences);
+        }
+        for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) actual).body()) {
+            if (NormalizedNodes.getDirectChild(expected, child.name()).isEmpty()) {
+                differences.add(new Difference(path.node(child.name()), child, null));
+            }
+        }
+    }
+
+    private void update(DataTreeCandidateNode node) {
+        NormalizedNode after = node.dataAfter();
+        if (after == null || node.modificationType() == ModificationType.UNMODIFIED) {
+            return;
+        }
+        Digest before = node.modificationType() == ModificationType.SUBTREE_MODIFIED && node.dataBefore() != null
+                ? digests.getIfPresent(node.dataBefore()) : null;
+        if (before == null || before.childSum == null) {
+            // Written as a whole, subtrees it shares with the previous version are still cached
+            lookup(after);
+            return;
+        }
+        BigInteger sum = before.childSum;
+        for (DataTreeCandidateNode child : node.childNodes()) {
+            if (child.dataBefore() != null) {
+                sum = sum.subtract(toInteger(lookup(child.dataBefore()).hash));
+            }
+            update(child);
+            if (child.dataAfter() != null) {
+                sum = sum.add(toInteger(lookup(child.dataAfter()).hash));
+            }
+        }
+        sum = sum.mod(MODULUS);
+        digests.put(after, new Digest(hash(after, sum), sum));
+    }
+
+    private Digest lookup(NormalizedNode node) {
+        Digest digest = digests.getIfPresent(node);
+        if (digest == null) {
+            digest = compute(node);
+            digests.put(node, digest);
+        }
+        return digest;
+    }
+
+    private Digest compute(NormalizedNode node) {
+        if (node instanceof NormalizedNodeContainer) {
+            BigInteger sum = BigInteger.ZERO;
+            for (Object child : ((NormalizedNodeContainer<?>) node).body()) {
+                sum = sum.add(toInteger(lookup((NormalizedNode) child).hash));
+            }
+            sum = sum.mod(MODULUS);
+            return new Digest(hash(node, sum), sum);
+        }
+        Hasher hasher = header(node);
+        Object value = node.body();
+        if (value instanceof byte[]) {
+            hasher.putBytes((byte[]) value);
+        } else {
+            hasher.putString(value.getClass().getName(), StandardCharsets.UTF_8)
+                .putString(value.toString(), StandardCharsets.UTF_8);
+        }
+        return new Digest(hasher.hash(), null);
+    }
+
+    private static HashCode hash(NormalizedNode node, BigInteger childSum) {
+        return header(node).putBytes(childSum.toByteArray()).hash();
+    }
+
+    @SuppressWarnings("UnstableApiUsage")
+    private static Hasher header(NormalizedNode node) {
+        return Hashing.sha256().newHasher()
+            .putString(node.contract().getName(), StandardCharsets.UTF_8)
+            .putString(node.name().toString(), StandardCharsets.UTF_8);
+    }
+
+    private static BigInteger toInteger(HashCode hash) {
+        return new BigInteger(1, hash.asBytes());
+    }
+}
@@ -0,0 +1,376 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only local journal of {@code PutBatch} payloads which have been committed to the local data tree but may
+ * not have reached the ledger yet.
+ *
+ * <p>The journal is a sequence of memory-mapped segment files named after the sequence number of their first record.
+ * Each record is a payload length, a CRC32C of the payload, the record sequence number and the payload itself. A zero
+ * length or a checksum mismatch marks the end of the journal, so a torn write is simply cut off on the next start.
+ *
+ * <p>{@link #sync(long)} implements group commit: the thread which forces the mapping to disk covers every record
+ * appended until then, so concurrent writers waiting for durability share a single {@code fsync}.
+ *
+ * <p>Records up to the sequence passed to {@link #markShipped(long)} are known to be on the ledger. That sequence is
+ * kept in a small side file, and segments which only hold shipped records are deleted.
+ */
+@SuppressWarnings("all")
+final class HyperledgerJournal implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerJournal.class);
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+    private static final String SUFFIX = ".journal";
+
+    static final class Record {
+        private final long sequence;
+        private final byte[] payload;
+
+        Record(long sequence, byte[] payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+
+        long sequence() {
+            return sequence;
+        }
+
+        byte[] payload() {
+            return payload;
+        }
+    }
+
+    private static final class Segment {
+        final Path file;
+        final long firstSequence;
+        final MappedByteBuffer buffer;
+        int writePosition;
+
+        Segment(Path file, long firstSequence, MappedByteBuffer buffer) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * Reads records in sequence order, starting after the last shipped one.
+     */
+    final class Reader {
+        private Segment segment;
+        private int position;
+        private long nextSequence;
+
+        private Reader() {
+            nextSequence = shippedSequence + 1;
+            segment = segments.peekFirst();
+            position = 0;
+            // Skip records shipped before the segment could be deleted
+            while (segment != null && nextRecord(Integer.MAX_VALUE) != null
+                    && readSequence() < nextSequence) {
+                position += HEADER_SIZE + segment.buffer.getInt(position);
+            }
+        }
+
+        /**
+         * Returns up to {@code maxRecords} records totalling at most about {@code maxBytes} payload bytes, or an
+         * empty list if there are no further records yet.
+         */
+        List<Record> next(int maxRecords, int maxBytes) {
+            synchronized (HyperledgerJournal.this) {
+                List<Record> records = new ArrayList<>();
+                int bytes = 0;
+                while (records.size() < maxRecords && bytes < maxBytes && nextSequence <= lastSequence) {
+                    Integer length = nextRecord(nextSequence);
+                    if (length == null) {
+                        break;
+                    }
+                    byte[] payload = new byte[length];
+                    segment.buffer.get(position + HEADER_SIZE, payload);
+                    long sequence = readSequence();
+                    records.add(new Record(sequence, payload));
+                    position += HEADER_SIZE + length;
+                    nextSequence = sequence + 1;
+                    bytes += length;
+                }
+                return records;
+            }
+        }
+
+        // Positions the reader on the next record, moving to the following segment if needed
+        private Integer nextRecord(long sequence) {
+            while (segment != null) {
+                if (position + HEADER_SIZE <= segment.buffer.capacity()) {
+                    int length = segment.buffer.getInt(position);
+                    if (length > 0) {
+                        return length;
+                    }
+                }
+                Segment next = following(segment);
+                if (next == null || next.firstSequence > sequence) {
+                    return null;
+                }
+                segment = next;
+                position = 0;
+            }
+            return null;
+        }
+
+        private long readSequence() {
+            return segment.buffer.getLong(position + Integer.BYTES + Integer.BYTES);
+        }
+    }
+
+    private final Path directory;
+    private final String name;
+    private final int segmentSize;
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Object syncLock = new Object();
+    private final FileChannel shippedChannel;
+    private final ByteBuffer shippedBuffer = ByteBuffer.allocate(Long.BYTES);
+
+    private Segment writeSegment;
+    private volatile long lastSequence;
+    private volatile long durableSequence;
+    private volatile long shippedSequence;
+
+    HyperledgerJournal(Path directory, String name, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        shippedChannel = FileChannel.open(directory.resolve(name + SUFFIX + ".shipped"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (shippedChannel.size() >= Long.BYTES) {
+            shippedChannel.read(shippedBuffer, 0);
+            shippedSequence = shippedBuffer.flip().getLong();
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, name + "-*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        long sequence = shippedSequence;
+        for (Path file : files) {
+            Segment segment = map(file, firstSequence(file), Files.size(file));
+            sequence = recover(segment, sequence);
+            segments.addLast(segment);
+        }
+        lastSequence = sequence;
+        durableSequence = sequence;
+
+        if (segments.isEmpty()) {
+            roll(0);
+        } else {
+            writeSegment = segments.peekLast();
+        }
+        deleteShippedSegments();
+        LOG.info("{} journal opened with {} unshipped records", name, lastSequence - shippedSequence);
+    }
+
+    /**
+     * Returns a reader positioned after the last shipped record.
+     */
+    synchronized Reader newReader() {
+        return new Reader();
+    }
+
+    /**
+     * Returns the number of segment files, including the one being written.
+     */
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    long shippedSequence() {
+        return shippedSequence;
+    }
+
+    /**
+     * Appends a record. It is not durable before {@link #sync(long)} returns for its sequence number.
+     *
+     * @return the sequence number of the record
+     */
+    synchronized long append(byte[] payload) throws IOException {
+        int size = HEADER_SIZE + payload.length;
+        // Keep room for the zero length which ends the segment
+        if (writeSegment.writePosition + size + Integer.BYTES > writeSegment.buffer.capacity()) {
+            roll(size + Integer.BYTES);
+        }
+
+        long sequence = lastSequence + 1;
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        MappedByteBuffer buffer = writeSegment.buffer;
+        int position = writeSegment.writePosition;
+        buffer.putInt(position + Integer.BYTES, (int) crc.getValue());
+        buffer.putLong(position + Integer.BYTES + Integer.BYTES, sequence);
+        buffer.put(position + HEADER_SIZE, payload);
+        // The length goes last, it makes the record visible to recovery
+        buffer.putInt(position, payload.length);
+        writeSegment.writePosition = position + size;
+
+        lastSequence = sequence;
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * Makes sure that every record up to {@code sequence} is on disk.
+     */
+    void sync(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableSequence >= sequence) {
+                return;
+            }
+            final long target;
+            final Segment segment;
+            synchronized (this) {
+                target = lastSequence;
+                segment = writeSegment;
+            }
+            // Earlier segments were forced when they were rolled
+            segment.buffer.force();
+            durableSequence = target;
+        }
+    }
+
+    /**
+     * Waits until records after {@code sequence} have been appended, or until the timeout elapses.
+     */
+    synchronized void awaitAppend(long sequence, long timeoutMillis) throws InterruptedException {
+        if (lastSequence <= sequence) {
+            wait(timeoutMillis);
+        }
+    }
+
+    /**
+     * Records that every record up to {@code sequence} has been committed to the ledger.
+     */
+    void markShipped(long sequence) throws IOException {
+        synchronized (shippedBuffer) {
+            shippedBuffer.clear();
+            shippedBuffer.putLong(sequence).flip();
+            while (shippedBuffer.hasRemaining()) {
+                shippedChannel.write(shippedBuffer, shippedBuffer.position());
+            }
+            shippedChannel.force(false);
+            shippedSequence = sequence;
+        }
+        synchronized (this) {
+            deleteShippedSegments();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writeSegment != null) {
+            writeSegment.buffer.force();
+        }
+        shippedChannel.close();
+    }
+
+    private void roll(int minimumSize) throws IOException {
+        if (writeSegment != null) {
+            writeSegment.buffer.force();
+        }
+        long firstSequence = lastSequence + 1;
+        Path file = directory.resolve(String.format("%s-%020d%s", name, firstSequence, SUFFIX));
+        writeSegment = map(file, firstSequence, Math.max(segmentSize, minimumSize));
+        segments.addLast(writeSegment);
+    }
+
+    private Segment following(Segment segment) {
+        boolean found = false;
+        for (Segment candidate : segments) {
+            if (found) {
+                return candidate;
+            }
+            found = candidate == segment;
+        }
+        return null;
+    }
+
+    private void deleteShippedSegments() {
+        while (segments.size() > 1) {
+            Segment first = segments.peekFirst();
+            Segment second = following(first);
+            // The first segment only holds shipped records if the next one starts at or before the next to ship
+            if (second.firstSequence > shippedSequence + 1) {
+                return;
+            }
+            segments.removeFirst();
+            try {
+                Files.deleteIfExists(first.file);
+            } catch (IOException e) {
+                LOG.warn("{} failed to delete shipped journal segment {}", name, first.file, e);
+            }
+        }
+    }
+
+    // Finds the end of a segment, returning the sequence number of its last valid record
+    private long recover(Segment segment, long sequence) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_SIZE, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                LOG.warn("{} journal segment {} has a torn record at offset {}, truncating", name, segment.file,
+                        position);
+                buffer.putInt(position, 0);
+                break;
+            }
+            sequence = buffer.getLong(position + Integer.BYTES + Integer.BYTES);
+            position += HEADER_SIZE + length;
+        }
+        segment.writePosition = position;
+        return sequence;
+    }
+
+    private static MappedByteBuffer mapFile(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private static Segment map(Path file, long firstSequence, long size) throws IOException {
+        return new Segment(file, firstSequence, mapFile(file, size));
+    }
+
+    private long firstSequence(Path file) {
+        String fileName = file.getFileName().toString();
+        return Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,192 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drains a {@link HyperledgerJournal} to the ledger in the background. Consecutive records are merged into a single
+ * {@code PutBatch} transaction, which is retried with exponential backoff until the ledger accepts it. Records are
+ * shipped at least once: a crash between a ledger commit and {@link HyperledgerJournal#markShipped(long)} sends the
+ * last batch again, which rewrites the same values.
+ *
+ * <p>A batch the ledger keeps rejecting holds back every later record. Its failed attempts are counted in the metrics
+ * and, past the first few, logged as errors.
+ */
+@SuppressWarnings("all")
+final class HyperledgerJournalShipper implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerJournalShipper.class);
+    private static final long IDLE_WAIT_MILLIS = 1000;
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    // About three seconds of retries
+    private static final int ERROR_ATTEMPTS = 5;
+    // Well below the default 100 MiB gRPC message limit of Fabric peers
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    @FunctionalInterface
+    interface Ledger {
+        /**
+         * Commits a {@code PutBatch} payload to the ledger.
+         *
+         * @return the number of the block which committed it
+         */
+        long commit(byte[] payload) throws HyperledgerException;
+    }
+
+    private final String name;
+    private final HyperledgerJournal journal;
+    private final Ledger ledger;
+    private final LongConsumer onCommitted;
+    private final int maxBatchRecords;
+    private final HyperledgerMetrics metrics;
+    private final ExecutorService executor;
+    // Futures returned by sync(), keyed by the sequence number they wait for
+    private final ConcurrentSkipListMap<Long, SettableFuture<Void>> waiters = new ConcurrentSkipListMap<>();
+
+    // The last record committed to the ledger, even if the journal failed to record it
+    private volatile long shipped;
+    // Failed attempts to commit the current batch
+    private volatile int failedAttempts;
+    private volatile boolean closed;
+
+    HyperledgerJournalShipper(String name, HyperledgerJournal journal, Ledger ledger, LongConsumer onCommitted,
+            int maxBatchRecords, HyperledgerMetrics metrics) {
+        this.name = name;
+        this.journal = journal;
+        this.ledger = ledger;
+        this.onCommitted = onCommitted;
+        this.maxBatchRecords = maxBatchRecords;
+        this.metrics = metrics;
+        this.executor = Executors.newListeningSingleThreadExecutor("HyperledgerDB-ship-" + name, LOG);
+        this.shipped = journal.shippedSequence();
+        metrics.gauge("journalShipFailedAttempts", () -> failedAttempts);
+    }
+
+    void start() {
+        executor.execute(this::ship);
+    }
+
+    /**
+     * Returns a future which completes once every record appended to the journal so far is on the ledger.
+     */
+    ListenableFuture<?> sync() {
+        long target = journal.lastSequence();
+        if (shipped >= target) {
+            return Futures.immediateFuture(null);
+        }
+        SettableFuture<Void> future = waiters.computeIfAbsent(target, ignored -> SettableFuture.create());
+        // The shipper may have got there in the meantime
+        long current = shipped;
+        if (current >= target) {
+            completeWaiters(current);
+        }
+        return future;
+    }
+
+    private void ship() {
+        HyperledgerJournal.Reader reader = journal.newReader();
+        while (!closed) {
+            List<HyperledgerJournal.Record> records = reader.next(maxBatchRecords, MAX_BATCH_BYTES);
+            if (records.isEmpty()) {
+                try {
+                    // Not the position of the journal, which stays behind if recording it failed
+                    journal.awaitAppend(shipped, IDLE_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            final byte[] payload;
+            try {
+                payload = merge(records);
+            } catch (HyperledgerException e) {
+                // Cannot happen for records we wrote ourselves, unless the disk corrupted them after the checksum
+                LOG.error("{} skipping {} unreadable journal records", name, records.size(), e);
+                markShipped(records.get(records.size() - 1).sequence());
+                continue;
+            }
+
+            long blockNumber = commit(payload, records.size());
+            if (blockNumber < 0) {
+                return;
+            }
+            markShipped(records.get(records.size() - 1).sequence());
+            onCommitted.accept(blockNumber);
+        }
+    }
+
+    private long commit(byte[] payload, int recordCount) {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (!closed) {
+            try {
+                long blockNumber = ledger.commit(payload);
+                failedAttempts = 0;
+                return blockNumber;
+            } catch (HyperledgerException e) {
+                metrics.retried();
+                int attempts = ++failedAttempts;
+                if (attempts < ERROR_ATTEMPTS) {
+                    LOG.warn("{} failed to ship {} journal records to the ledger, retrying in {} ms", name,
+                            recordCount, backoff, e);
+                } else {
+                    LOG.error("{} failed to ship {} journal records to the ledger {} times, later records wait for "
+                            + "them, retrying in {} ms", name, recordCount, attempts, backoff, e);
+                }
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+        return -1;
+    }
+
+    private void markShipped(long sequence) {
+        shipped = sequence;
+        try {
+            journal.markShipped(sequence);
+        } catch (IOException e) {
+            // The records will be shipped again after a restart
+            LOG.warn("{} failed to record journal position {}", name, sequence, e);
+        }
+        completeWaiters(sequence);
+    }
+
+    private void completeWaiters(long sequence) {
+        Map<Long, SettableFuture<Void>> done = waiters.headMap(sequence, true);
+        done.values().forEach(future -> future.set(null));
+        done.clear();
+    }
+
+    private static byte[] merge(List<HyperledgerJournal.Record> records) throws HyperledgerException {
+        List<byte[]> payloads = new ArrayList<>(records.size());
+        for (HyperledgerJournal.Record record : records) {
+            payloads.add(record.payload());
+        }
+        return HyperledgerBatch.merge(payloads);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Executors.shutdownAndAwaitTermination(executor);
+    }
+}
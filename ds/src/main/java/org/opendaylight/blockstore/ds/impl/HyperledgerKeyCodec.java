@@ -0,0 +1,378 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.opendaylight.yangtools.yang.common.Decimal64;
+import org.opendaylight.yangtools.yang.common.Empty;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.common.QNameModule;
+import org.opendaylight.yangtools.yang.common.Uint16;
+import org.opendaylight.yangtools.yang.common.Uint32;
+import org.opendaylight.yangtools.yang.common.Uint64;
+import org.opendaylight.yangtools.yang.common.Uint8;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeWithValue;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.model.api.EffectiveModelContext;
+
+/**
+ * Maps {@link YangInstanceIdentifier}s to compact ledger keys and back.
+ *
+ * <p>A key is the datastore prefix character followed by the encoded path arguments. Each {@link QNameModule} is
+ * replaced by an 8-byte dictionary id, the first bytes of the SHA-256 digest of its namespace and revision, so ids are
+ * stable across nodes and restarts without any coordination. Two modules of a model context sharing an id would make
+ * their keys ambiguous, the codec refuses such a context instead: with a thousand modules the odds are below one in
+ * ten trillion, and the only way out would be a new key format.
+ *
+ * <p>Strings are null-escaped and null-terminated and numbers are written big-endian with the sign bit flipped, hence
+ * byte order of keys follows the natural order of their components and the key of a node is a prefix of the keys of
+ * all its descendants.
+ *
+ * <p>Fabric keys have to be valid UTF-8 strings, so each key byte is carried as one character in the range
+ * U+0000 - U+00FF. This keeps both ordering and the prefix property.
+ */
+@SuppressWarnings("all")
+final class HyperledgerKeyCodec {
+
+    private static final byte NODE_IDENTIFIER = 0x10;
+    private static final byte NODE_IDENTIFIER_WITH_PREDICATES = 0x20;
+    private static final byte NODE_WITH_VALUE = 0x30;
+
+    private static final byte STRING  = 0x01;
+    private static final byte BOOLEAN = 0x02;
+    private static final byte INT8    = 0x03;
+    private static final byte INT16   = 0x04;
+    private static final byte INT32   = 0x05;
+    private static final byte INT64   = 0x06;
+    private static final byte UINT8   = 0x07;
+    private static final byte UINT16  = 0x08;
+    private static final byte UINT32  = 0x09;
+    private static final byte UINT64  = 0x0A;
+    private static final byte IDENTITY = 0x0B;
+    private static final byte EMPTY   = 0x0C;
+    private static final byte DECIMAL64 = 0x0D;
+    private static final byte BINARY  = 0x0E;
+
+    private static final Map<QNameModule, Long> MODULE_IDS = new ConcurrentHashMap<>();
+
+    private final char prefix;
+    private volatile Map<Long, QNameModule> modules = ImmutableMap.of();
+
+    HyperledgerKeyCodec(String prefix) {
+        this.prefix = prefix.charAt(0);
+    }
+
+    /**
+     * Rebuilds the id to module dictionary used for decoding.
+     *
+     * @throws IllegalStateException if two modules of the context map to the same id, the datastore cannot use the
+     *                               context then
+     */
+    void setModelContext(EffectiveModelContext context) {
+        setModules(context.getModuleStatements().keySet());
+    }
+
+    // Split out of setModelContext() for tests, which have no model context at hand
+    void setModules(Collection<QNameModule> moduleSet) {
+        Map<Long, QNameModule> newModules = new HashMap<>();
+        for (QNameModule module : moduleSet) {
+            QNameModule previous = newModules.put(moduleId(module), module);
+            if (previous != null && !previous.equals(module)) {
+                throw new IllegalStateException("Modules " + previous + " and " + module + " share a key id");
+            }
+        }
+        modules = ImmutableMap.copyOf(newModules);
+    }
+
+    String encode(YangInstanceIdentifier path) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(prefix);
+        for (PathArgument arg : path.getPathArguments()) {
+            writePathArgument(out, arg);
+        }
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns an exclusive range end for the keys of the node with the given key and of its descendants. A descendant
+     * key continues with a path argument type, while a key which merely starts with the given one continues with the
+     * 0xFF of an escaped nul, so those are left out.
+     */
+    static String prefixEnd(String key) {
+        return key + '\u00FF';
+    }
+
+    YangInstanceIdentifier decode(String key) throws HyperledgerException {
+        byte[] bytes = key.getBytes(StandardCharsets.ISO_8859_1);
+        if (bytes.length == 0 || bytes[0] != prefix) {
+            throw new HyperledgerException("Key does not belong to datastore " + prefix);
+        }
+
+        Reader in = new Reader(bytes);
+        List<PathArgument> args = new ArrayList<>();
+        try {
+            while (in.hasMore()) {
+                args.add(readPathArgument(in));
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new HyperledgerException("Malformed ledger key", e);
+        }
+        return YangInstanceIdentifier.of(args);
+    }
+
+    private static void writePathArgument(ByteArrayOutputStream out, PathArgument arg) {
+        if (arg instanceof NodeIdentifierWithPredicates nip) {
+            out.write(NODE_IDENTIFIER_WITH_PREDICATES);
+            writeQName(out, nip.getNodeType());
+            out.write(nip.size());
+            for (Map.Entry<QName, Object> entry : nip.entrySet()) {
+                // Key leaves always live in the namespace of their list
+                writeString(out, entry.getKey().getLocalName());
+                writeValue(out, entry.getValue());
+            }
+        } else if (arg instanceof NodeWithValue<?> nwv) {
+            out.write(NODE_WITH_VALUE);
+            writeQName(out, nwv.getNodeType());
+            writeValue(out, nwv.getValue());
+        } else if (arg instanceof NodeIdentifier) {
+            out.write(NODE_IDENTIFIER);
+            writeQName(out, arg.getNodeType());
+        } else {
+            throw new IllegalArgumentException("Unsupported path argument " + arg);
+        }
+    }
+
+    private PathArgument readPathArgument(Reader in) {
+        byte type = in.readByte();
+        QName qname = readQName(in);
+        switch (type) {
+            case NODE_IDENTIFIER:
+                return NodeIdentifier.create(qname);
+            case NODE_IDENTIFIER_WITH_PREDICATES:
+                int size = in.readByte() & 0xFF;
+                Map<QName, Object> keys = new LinkedHashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    keys.put(QName.create(qname.getModule(), in.readString()), readValue(in));
+                }
+                return NodeIdentifierWithPredicates.of(qname, keys);
+            case NODE_WITH_VALUE:
+                return new NodeWithValue<>(qname, readValue(in));
+            default:
+                throw new IllegalArgumentException("Unknown path argument type " + type);
+        }
+    }
+
+    private static void writeQName(ByteArrayOutputStream out, QName qname) {
+        writeLong(out, moduleId(qname.getModule()));
+        writeString(out, qname.getLocalName());
+    }
+
+    private QName readQName(Reader in) {
+        long id = in.readLong();
+        QNameModule module = modules.get(id);
+        if (module == null) {
+            throw new IllegalArgumentException("Unknown module id " + Long.toHexString(id));
+        }
+        return QName.create(module, in.readString());
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value instanceof String str) {
+            out.write(STRING);
+            writeString(out, str);
+        } else if (value instanceof Boolean bool) {
+            out.write(BOOLEAN);
+            out.write(bool ? 1 : 0);
+        } else if (value instanceof Byte num) {
+            out.write(INT8);
+            out.write(num ^ 0x80);
+        } else if (value instanceof Short num) {
+            out.write(INT16);
+            writeShort(out, num ^ 0x8000);
+        } else if (value instanceof Integer num) {
+            out.write(INT32);
+            writeInt(out, num ^ Integer.MIN_VALUE);
+        } else if (value instanceof Long num) {
+            out.write(INT64);
+            writeLong(out, num ^ Long.MIN_VALUE);
+        } else if (value instanceof Uint8 num) {
+            out.write(UINT8);
+            out.write(num.intValue());
+        } else if (value instanceof Uint16 num) {
+            out.write(UINT16);
+            writeShort(out, num.intValue());
+        } else if (value instanceof Uint32 num) {
+            out.write(UINT32);
+            writeInt(out, num.intValue());
+        } else if (value instanceof Uint64 num) {
+            out.write(UINT64);
+            writeLong(out, num.longValue());
+        } else if (value instanceof QName qname) {
+            out.write(IDENTITY);
+            writeQName(out, qname);
+        } else if (value instanceof Empty) {
+            out.write(EMPTY);
+        } else if (value instanceof Decimal64 dec) {
+            // Values of a decimal64 type all have its fraction-digits as scale, so the unscaled values order them
+            out.write(DECIMAL64);
+            writeLong(out, dec.unscaledValue() ^ Long.MIN_VALUE);
+            out.write(dec.scale());
+        } else if (value instanceof byte[] bytes) {
+            out.write(BINARY);
+            writeEscaped(out, bytes);
+        } else {
+            throw new IllegalArgumentException("Unsupported key value " + value.getClass());
+        }
+    }
+
+    private Object readValue(Reader in) {
+        byte type = in.readByte();
+        switch (type) {
+            case STRING:
+                return in.readString();
+            case BOOLEAN:
+                return in.readByte() != 0;
+            case INT8:
+                return (byte) (in.readByte() ^ 0x80);
+            case INT16:
+                return (short) (in.readShort() ^ 0x8000);
+            case INT32:
+                return in.readInt() ^ Integer.MIN_VALUE;
+            case INT64:
+                return in.readLong() ^ Long.MIN_VALUE;
+            case UINT8:
+                return Uint8.valueOf(in.readByte() & 0xFF);
+            case UINT16:
+                return Uint16.valueOf(in.readShort() & 0xFFFF);
+            case UINT32:
+                return Uint32.valueOf(in.readInt() & 0xFFFFFFFFL);
+            case UINT64:
+                return Uint64.fromLongBits(in.readLong());
+            case IDENTITY:
+                return readQName(in);
+            case EMPTY:
+                return Empty.value();
+            case DECIMAL64:
+                long unscaled = in.readLong() ^ Long.MIN_VALUE;
+                return Decimal64.of(in.readByte(), unscaled);
+            case BINARY:
+                return in.readEscaped();
+            default:
+                throw new IllegalArgumentException("Unknown key value type " + type);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String str) {
+        writeEscaped(out, str.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeEscaped(ByteArrayOutputStream out, byte[] bytes) {
+        for (byte b : bytes) {
+            out.write(b);
+            if (b == 0) {
+                out.write(0xFF);
+            }
+        }
+        out.write(0);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value >>> 16);
+        writeShort(out, value);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long value) {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+
+    private static long moduleId(QNameModule module) {
+        return MODULE_IDS.computeIfAbsent(module, HyperledgerKeyCodec::computeModuleId);
+    }
+
+    private static long computeModuleId(QNameModule module) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        digest.update(module.namespace().toString().getBytes(StandardCharsets.UTF_8));
+        if (module.revision() != null) {
+            digest.update((byte) '@');
+            digest.update(module.revision().toString().getBytes(StandardCharsets.US_ASCII));
+        }
+        byte[] hash = digest.digest();
+        long id = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            id = id << 8 | hash[i] & 0xFF;
+        }
+        return id;
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        // Skip the datastore prefix
+        private int offset = 1;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean hasMore() {
+            return offset < bytes.length;
+        }
+
+        byte readByte() {
+            return bytes[offset++];
+        }
+
+        int readShort() {
+            return (readByte() & 0xFF) << 8 | readByte() & 0xFF;
+        }
+
+        int readInt() {
+            return readShort() << 16 | readShort();
+        }
+
+        long readLong() {
+            return (long) readInt() << 32 | readInt() & 0xFFFFFFFFL;
+        }
+
+        String readString() {
+            return new String(readEscaped(), StandardCharsets.UTF_8);
+        }
+
+        byte[] readEscaped() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            while (true) {
+                byte b = readByte();
+                if (b == 0) {
+                    if (offset < bytes.length && bytes[offset] == (byte) 0xFF) {
+                        offset++;
+                    } else {
+                        return out.toByteArray();
+                    }
+                }
+                out.write(b);
+            }
+        }
+    }
+}
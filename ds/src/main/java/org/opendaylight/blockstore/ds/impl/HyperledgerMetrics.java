@@ -0,0 +1,214 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import org.opendaylight.yangtools.util.concurrent.ListenerNotificationQueueStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metrics of a datastore: latency histograms of each {@link HyperledgerTracer.Phase} of its commits, counters of the
+ * ledger transactions it sent, their entries, payload sizes, failures and retries, and gauges such as the number of
+ * submissions in flight and the depth of each listener's notification queue.
+ *
+ * <p>Recording takes a few atomic updates and allocates nothing, so that every commit is measured, not just the
+ * traced ones. Gauges are only evaluated when the metrics are read. {@link #snapshot()} returns all of them by name,
+ * for any exporter, and {@link #register()} exposes them as the read-only attributes of an MBean named
+ * {@code org.opendaylight.blockstore:type=HyperledgerMetrics,name=<datastore>} on the platform MBean server.
+ */
+@SuppressWarnings("all")
+final class HyperledgerMetrics implements DynamicMBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerMetrics.class);
+    private static final HyperledgerTracer.Phase[] PHASES = HyperledgerTracer.Phase.values();
+
+    private final String name;
+    private final HyperledgerHistogram[] phases = new HyperledgerHistogram[PHASES.length];
+    private final HyperledgerHistogram payloadBytes = new HyperledgerHistogram();
+    private final AtomicLong transactions = new AtomicLong();
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private volatile Supplier<List<ListenerNotificationQueueStats>> listenerQueues = List::of;
+    private volatile ObjectName objectName;
+
+    HyperledgerMetrics(String name) {
+        this.name = name;
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new HyperledgerHistogram();
+        }
+    }
+
+    void record(HyperledgerTracer.Phase phase, long elapsedNanos) {
+        phases[phase.ordinal()].record(elapsedNanos);
+    }
+
+    /**
+     * Records the time since {@code start} as a phase of both these metrics and a trace.
+     */
+    void record(HyperledgerTracer.Phase phase, long start, HyperledgerTracer.Trace trace) {
+        long elapsed = System.nanoTime() - start;
+        phases[phase.ordinal()].record(elapsed);
+        trace.add(phase, elapsed);
+    }
+
+    /**
+     * Counts a ledger transaction which was sent, or appended to a journal to be sent later.
+     */
+    void transaction(int entryCount, int payloadSize) {
+        transactions.incrementAndGet();
+        entries.addAndGet(entryCount);
+        payloadBytes.record(payloadSize);
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+    }
+
+    void retried() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Adds a value to be read along with the metrics.
+     */
+    void gauge(String gaugeName, LongSupplier value) {
+        gauges.put(gaugeName, value);
+    }
+
+    void listenerQueues(Supplier<List<ListenerNotificationQueueStats>> stats) {
+        this.listenerQueues = stats;
+    }
+
+    /**
+     * Returns the current value of every metric, by name. Latencies are in microseconds.
+     */
+    Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (HyperledgerTracer.Phase phase : PHASES) {
+            HyperledgerHistogram histogram = phases[phase.ordinal()];
+            String prefix = phase.name().toLowerCase(Locale.ROOT);
+            values.put(prefix + ".count", histogram.count());
+            values.put(prefix + ".meanMicros", histogram.mean() / 1000);
+            values.put(prefix + ".p50Micros", micros(histogram.percentile(0.5)));
+            values.put(prefix + ".p90Micros", micros(histogram.percentile(0.9)));
+            values.put(prefix + ".p99Micros", micros(histogram.percentile(0.99)));
+            values.put(prefix + ".p999Micros", micros(histogram.percentile(0.999)));
+            values.put(prefix + ".maxMicros", micros(histogram.max()));
+        }
+        values.put("ledgerTransactions", transactions.get());
+        values.put("ledgerEntries", entries.get());
+        values.put("ledgerFailures", failures.get());
+        values.put("ledgerRetries", retries.get());
+        values.put("payloadBytes.mean", payloadBytes.mean());
+        values.put("payloadBytes.p50", payloadBytes.percentile(0.5));
+        values.put("payloadBytes.p99", payloadBytes.percentile(0.99));
+        values.put("payloadBytes.max", payloadBytes.max());
+        gauges.forEach((gaugeName, value) -> values.put(gaugeName, value.getAsLong()));
+
+        Map<String, Long> depths = new LinkedHashMap<>();
+        for (ListenerNotificationQueueStats stats : listenerQueues.get()) {
+            depths.merge("listenerQueueDepth." + stats.getListenerClassName(), (long) stats.getCurrentQueueSize(),
+                    Long::sum);
+        }
+        values.put("listenerQueueDepth.max", depths.values().stream().mapToLong(Long::longValue).max().orElse(0));
+        values.putAll(depths);
+        return values;
+    }
+
+    /**
+     * Registers these metrics on the platform MBean server, logging rather than failing if that is not possible.
+     */
+    void register() {
+        try {
+            ObjectName candidate = ObjectName.getInstance("org.opendaylight.blockstore:type=HyperledgerMetrics,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+            objectName = candidate;
+        } catch (JMException e) {
+            LOG.warn("{} failed to register metrics MBean", name, e);
+        }
+    }
+
+    void unregister() {
+        ObjectName registered = objectName;
+        if (registered == null) {
+            return;
+        }
+        objectName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        } catch (JMException e) {
+            LOG.debug("{} failed to unregister metrics MBean", name, e);
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Number value = snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Number> values = snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Number value = values.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException(actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        // Listeners come and go, so the attributes are those of the current snapshot
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        snapshot().forEach((attribute, value) -> attributes.add(new MBeanAttributeInfo(attribute,
+                value.getClass().getName(), attribute, true, false, false)));
+        return new MBeanInfo(getClass().getName(), "Commit pipeline and ledger metrics of " + name,
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,214 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
+import org.opendaylight.mdsal.common.api.CommitInfo;
+import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.mdsal.common.api.TransactionCommitFailedException;
+import org.opendaylight.mdsal.dom.api.DOMDataTreeReadTransaction;
+import org.opendaylight.mdsal.dom.api.DOMDataTreeReadWriteTransaction;
+import org.opendaylight.mdsal.dom.api.DOMDataTreeWriteTransaction;
+import org.opendaylight.mdsal.dom.api.DOMTransactionChain;
+import org.opendaylight.mdsal.dom.spi.AbstractDOMDataBroker;
+import org.opendaylight.mdsal.dom.spi.TransactionCommitFailedExceptionMapper;
+import org.opendaylight.mdsal.dom.spi.store.DOMStore;
+import org.opendaylight.mdsal.dom.spi.store.DOMStoreThreePhaseCommitCohort;
+import org.opendaylight.yangtools.util.concurrent.FluentFutures;
+import org.opendaylight.yangtools.yang.common.Empty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Data broker which coordinates the commits of each datastore on its own thread, so that a CONFIGURATION commit
+ * waiting for the ledger does not hold up OPERATIONAL commits, and the other way round.
+ *
+ * <p>A transaction only ever touches a single datastore, so commits of one datastore are still run one after the
+ * other, in submission order, exactly like {@link org.opendaylight.mdsal.dom.broker.SerializedDOMDataBroker} does.
+ * Transactions of a transaction chain may alternate between datastores; a chained commit waits for the previous
+ * commit of its chain if that one went to the other datastore, so that chains keep their order across datastores. A
+ * chained commit fails without being attempted if the previous commit of its chain failed.
+ */
+@SuppressWarnings("all")
+final class HyperledgerParallelDOMDataBroker extends AbstractDOMDataBroker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerParallelDOMDataBroker.class);
+
+    private static final class Lane {
+        final HyperledgerDataStore store;
+        final ListeningExecutorService executor;
+
+        Lane(HyperledgerDataStore store, ListeningExecutorService executor) {
+            this.store = store;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Transaction chain handing out the transactions of the chain created by {@link AbstractDOMDataBroker}, which
+     * records the chain of its write transactions for {@link #commit}.
+     */
+    private final class Chain implements DOMTransactionChain {
+        final DOMTransactionChain delegate;
+        // Last commit of the chain, kept once done so that a failure fails the following commits
+        volatile ListenableFuture<CommitInfo> tail;
+
+        Chain(DOMTransactionChain delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public DOMDataTreeReadTransaction newReadOnlyTransaction() {
+            return delegate.newReadOnlyTransaction();
+        }
+
+        @Override
+        public DOMDataTreeWriteTransaction newWriteOnlyTransaction() {
+            return chained(delegate.newWriteOnlyTransaction());
+        }
+
+        @Override
+        public DOMDataTreeReadWriteTransaction newReadWriteTransaction() {
+            return chained(delegate.newReadWriteTransaction());
+        }
+
+        @Override
+        public ListenableFuture<Empty> future() {
+            return delegate.future();
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+        private <T extends DOMDataTreeWriteTransaction> T chained(T transaction) {
+            chains.put(transaction, this);
+            return transaction;
+        }
+    }
+
+    private final Map<LogicalDatastoreType, Lane> lanes;
+    // Chain of each write transaction allocated from a chain and not committed yet, cancelled ones are let go
+    private final Map<DOMDataTreeWriteTransaction, Chain> chains = Collections.synchronizedMap(new WeakHashMap<>());
+
+    HyperledgerParallelDOMDataBroker(Map<LogicalDatastoreType, HyperledgerDataStore> datastores) {
+        super(ImmutableMap.<LogicalDatastoreType, DOMStore>copyOf(datastores));
+        ImmutableMap.Builder<LogicalDatastoreType, Lane> builder = ImmutableMap.builder();
+        datastores.forEach((type, store) -> builder.put(type, new Lane(store,
+                Executors.newListeningSingleThreadExecutor(
+                        "HyperledgerDB-commitCoordinator-" + type.name().toLowerCase(), LOG))));
+        lanes = builder.build();
+    }
+
+    @Override
+    protected FluentFuture<? extends CommitInfo> commit(DOMDataTreeWriteTransaction transaction,
+            DOMStoreThreePhaseCommitCohort cohort) {
+        Lane lane = laneOf(cohort);
+        if (lane == null) {
+            return FluentFutures.immediateFailedFluentFuture(new TransactionCommitFailedException(
+                    "Transaction " + transaction.getIdentifier() + " does not belong to any datastore"));
+        }
+        LOG.debug("Tx: {} is submitted for execution.", transaction.getIdentifier());
+
+        Chain chain = chains.remove(transaction);
+        if (chain == null) {
+            return FluentFuture.from(lane.executor.submit(() -> coordinate(transaction, cohort)));
+        }
+
+        // Chained commits are submitted one at a time, the tail cannot change under us
+        ListenableFuture<?> predecessor = chain.tail;
+        ListenableFuture<CommitInfo> future = lane.executor.submit(() -> {
+            if (predecessor != null) {
+                awaitPredecessor(transaction, cohort, predecessor);
+            }
+            return coordinate(transaction, cohort);
+        });
+        chain.tail = future;
+        return FluentFuture.from(future);
+    }
+
+    @Override
+    public DOMTransactionChain createTransactionChain() {
+        return new Chain(super.createTransactionChain());
+    }
+
+    private Lane laneOf(DOMStoreThreePhaseCommitCohort cohort) {
+        for (Lane lane : lanes.values()) {
+            if (lane.store.ownsCohort(cohort)) {
+                return lane;
+            }
+        }
+        return null;
+    }
+
+    // Commits of the same datastore run in order anyway, the predecessor is then already done
+    private static void awaitPredecessor(DOMDataTreeWriteTransaction transaction,
+            DOMStoreThreePhaseCommitCohort cohort, ListenableFuture<?> predecessor)
+            throws TransactionCommitFailedException {
+        try {
+            predecessor.get();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.debug("Tx: {} interrupted while waiting for the previous transaction of its chain",
+                    transaction.getIdentifier());
+        } catch (ExecutionException e) {
+            LOG.debug("Tx: {} not committed, the previous transaction of its chain failed",
+                    transaction.getIdentifier(), e.getCause());
+        }
+        try {
+            cohort.abort().get();
+        } catch (InterruptedException | ExecutionException abortFailure) {
+            LOG.error("Tx: {} Error during abort", transaction.getIdentifier(), abortFailure);
+        }
+        throw new TransactionCommitFailedException("Previous transaction of the chain of "
+                + transaction.getIdentifier() + " did not commit");
+    }
+
+    // Same three phases as SerializedDOMDataBroker, whose task is not accessible from here
+    private static CommitInfo coordinate(DOMDataTreeWriteTransaction transaction,
+            DOMStoreThreePhaseCommitCohort cohort) throws TransactionCommitFailedException {
+        try {
+            Boolean canCommit = phase(cohort.canCommit(),
+                    TransactionCommitFailedExceptionMapper.CAN_COMMIT_ERROR_MAPPER);
+            if (!Boolean.TRUE.equals(canCommit)) {
+                throw new TransactionCommitFailedException("Can Commit failed, no detailed cause available.");
+            }
+            phase(cohort.preCommit(), TransactionCommitFailedExceptionMapper.PRE_COMMIT_MAPPER);
+            phase(cohort.commit(), TransactionCommitFailedExceptionMapper.COMMIT_ERROR_MAPPER);
+            LOG.debug("Transaction {}: doCommit completed", transaction.getIdentifier());
+            return CommitInfo.empty();
+        } catch (TransactionCommitFailedException e) {
+            LOG.warn("Tx: {} Error during commit, starting abort", transaction.getIdentifier(), e);
+            try {
+                cohort.abort().get();
+            } catch (InterruptedException | ExecutionException abortFailure) {
+                LOG.error("Tx: {} Error during abort", transaction.getIdentifier(), abortFailure);
+                e.addSuppressed(abortFailure);
+            }
+            throw e;
+        }
+    }
+
+    private static <T> T phase(ListenableFuture<T> future, TransactionCommitFailedExceptionMapper mapper)
+            throws TransactionCommitFailedException {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw mapper.apply(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        lanes.values().forEach(lane -> Executors.shutdownAndAwaitTermination(lane.executor));
+    }
+}
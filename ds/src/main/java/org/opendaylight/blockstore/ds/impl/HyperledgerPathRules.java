@@ -0,0 +1,89 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+
+/**
+ * Subtree rules assigning a value to the paths at and below their prefix, as parsed by
+ * {@link HyperledgerPersistence#parseRules(String)}. A node name in a prefix in place of a list entry matches every
+ * entry of that list. Rules iterate longest prefix first, so that the first match is the most specific one.
+ */
+@SuppressWarnings("all")
+final class HyperledgerPathRules<V> implements Iterable<HyperledgerPathRules.Rule<V>> {
+
+    static final class Rule<V> {
+        final List<PathArgument> prefix;
+        final V value;
+
+        Rule(YangInstanceIdentifier prefix, V value) {
+            this.prefix = prefix.getPathArguments();
+            this.value = value;
+        }
+
+        boolean matches(List<PathArgument> path) {
+            return prefix.size() <= path.size() && matchesPrefixOf(path);
+        }
+
+        // True if the rule prefix starts with the given path
+        boolean isBelow(List<PathArgument> path) {
+            return prefix.size() > path.size() && prefixMatches(path);
+        }
+
+        boolean matchesPrefixOf(List<PathArgument> path) {
+            for (int i = 0; i < prefix.size(); i++) {
+                if (!matchArgument(prefix.get(i), path.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean prefixMatches(List<PathArgument> path) {
+            for (int i = 0; i < path.size(); i++) {
+                if (!matchArgument(prefix.get(i), path.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final List<Rule<V>> rules = new ArrayList<>();
+
+    HyperledgerPathRules(Map<YangInstanceIdentifier, V> rules) {
+        rules.forEach((prefix, value) -> this.rules.add(new Rule<>(prefix, value)));
+        this.rules.sort(Comparator.comparingInt((Rule<V> rule) -> rule.prefix.size()).reversed());
+    }
+
+    boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    /**
+     * Returns the most specific rule matching {@code path}, or null if none does.
+     */
+    Rule<V> match(List<PathArgument> path) {
+        for (Rule<V> rule : rules) {
+            if (rule.matches(path)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterator<Rule<V>> iterator() {
+        return rules.iterator();
+    }
+
+    static boolean matchArgument(PathArgument ruleArgument, PathArgument argument) {
+        return ruleArgument.equals(argument) || ruleArgument instanceof NodeIdentifier
+                && !(argument instanceof NodeIdentifier) && ruleArgument.getNodeType().equals(argument.getNodeType());
+    }
+}
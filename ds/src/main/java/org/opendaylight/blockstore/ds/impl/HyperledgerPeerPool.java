@@ -0,0 +1,184 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hyperledger.fabric.client.CommitStatusException;
+import org.hyperledger.fabric.client.Contract;
+import org.hyperledger.fabric.client.Gateway;
+import org.hyperledger.fabric.client.GatewayException;
+import org.hyperledger.fabric.client.Network;
+import org.hyperledger.fabric.client.SubmitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spreads ledger calls over gateway connections to several peers of the organization.
+ *
+ * <p>Every call goes to the healthy connection with the fewest outstanding calls. A connection is unhealthy while
+ * its gRPC channel is in {@code TRANSIENT_FAILURE}, and for a while after a call through it failed with
+ * {@code UNAVAILABLE} or {@code DEADLINE_EXCEEDED}. Calls failing that way are retried on the next connection, unless
+ * the transaction may already have reached the orderer.
+ */
+@SuppressWarnings("all")
+public final class HyperledgerPeerPool implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerPeerPool.class);
+    private static final long UNHEALTHY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    @FunctionalInterface
+    interface Call<T, E extends GatewayException> {
+        T call(Network network, Contract contract) throws E;
+    }
+
+    private static final class Peer {
+        final String label;
+        final ManagedChannel channel;
+        final Gateway gateway;
+        final Network network;
+        final Contract contract;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile long unhealthyUntil = System.nanoTime();
+
+        Peer(String label, ManagedChannel channel, Gateway gateway, Network network, Contract contract) {
+            this.label = label;
+            this.channel = channel;
+            this.gateway = gateway;
+            this.network = network;
+            this.contract = contract;
+        }
+
+        boolean isHealthy(long now) {
+            if (now - unhealthyUntil < 0) {
+                return false;
+            }
+            ConnectivityState state = channel.getState(false);
+            return state != ConnectivityState.TRANSIENT_FAILURE && state != ConnectivityState.SHUTDOWN;
+        }
+    }
+
+    private final String channelName;
+    private final String chaincodeName;
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextStart = new AtomicInteger();
+    private final AtomicLong failovers = new AtomicLong();
+
+    public HyperledgerPeerPool(String channelName, String chaincodeName) {
+        this.channelName = channelName;
+        this.chaincodeName = chaincodeName;
+    }
+
+    /**
+     * Adds a gateway connection. The pool takes ownership of the gateway and of its channel.
+     */
+    public void addPeer(String label, ManagedChannel channel, Gateway gateway) {
+        Network network = gateway.getNetwork(channelName);
+        peers.add(new Peer(label, channel, gateway, network, network.getContract(chaincodeName)));
+    }
+
+    String chaincodeName() {
+        return chaincodeName;
+    }
+
+    String channelName() {
+        return channelName;
+    }
+
+    /**
+     * Returns how many calls were retried on another connection so far.
+     */
+    long failovers() {
+        return failovers.get();
+    }
+
+    /**
+     * Returns the network of a healthy connection, for event streams which do their own reconnecting.
+     */
+    Network network() {
+        return select(List.of()).network;
+    }
+
+    /**
+     * Runs a call on the least loaded healthy connection, failing over to the others.
+     */
+    <T, E extends GatewayException> T call(Call<T, E> call) throws E {
+        List<Peer> tried = new ArrayList<>(1);
+        while (true) {
+            Peer peer = select(tried);
+            peer.outstanding.incrementAndGet();
+            try {
+                return call.call(peer.network, peer.contract);
+            } catch (GatewayException e) {
+                Status.Code code = e.getStatus().getCode();
+                boolean unreachable = code == Status.Code.UNAVAILABLE || code == Status.Code.DEADLINE_EXCEEDED;
+                if (unreachable) {
+                    peer.unhealthyUntil = System.nanoTime() + UNHEALTHY_NANOS;
+                }
+                tried.add(peer);
+                // A submitted transaction may still get committed, sending it again would apply it twice
+                if (!unreachable || e instanceof SubmitException || e instanceof CommitStatusException
+                        || tried.size() >= peers.size()) {
+                    throw e;
+                }
+                failovers.incrementAndGet();
+                LOG.warn("Peer {} is {}, failing over", peer.label, code);
+            } finally {
+                peer.outstanding.decrementAndGet();
+            }
+        }
+    }
+
+    private Peer select(List<Peer> excluded) {
+        List<Peer> snapshot = peers;
+        int size = snapshot.size();
+        if (size == 0) {
+            throw new IllegalStateException("No peers configured");
+        }
+
+        // Start at a rotating position so that ties are spread evenly
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        long now = System.nanoTime();
+        Peer best = null;
+        Peer fallback = null;
+        for (int i = 0; i < size; i++) {
+            Peer peer = snapshot.get((start + i) % size);
+            if (excluded.contains(peer)) {
+                continue;
+            }
+            if (peer.isHealthy(now)) {
+                if (best == null || peer.outstanding.get() < best.outstanding.get()) {
+                    best = peer;
+                }
+            } else if (fallback == null || peer.outstanding.get() < fallback.outstanding.get()) {
+                fallback = peer;
+            }
+        }
+        if (best != null) {
+            return best;
+        }
+        // Nothing looks healthy, try anyway
+        return fallback != null ? fallback : snapshot.get(start);
+    }
+
+    @Override
+    public void close() {
+        for (Peer peer : peers) {
+            peer.gateway.close();
+            peer.channel.shutdownNow();
+        }
+        for (Peer peer : peers) {
+            try {
+                peer.channel.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
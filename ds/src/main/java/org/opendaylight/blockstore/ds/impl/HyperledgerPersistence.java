@@ -0,0 +1,95 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+
+/**
+ * Where the data of a {@link HyperledgerDataStore}, or of a subtree of it, is persisted.
+ */
+@SuppressWarnings("all")
+public enum HyperledgerPersistence {
+    /**
+     * Committed to the ledger, shared with the other controllers of the channel.
+     */
+    LEDGER,
+    /**
+     * Appended to a journal on local disk only, restored after a restart of this controller.
+     */
+    JOURNAL,
+    /**
+     * Kept in the local data tree only, lost on restart.
+     */
+    MEMORY;
+
+    /**
+     * Returns true if this is more durable than {@code other}.
+     */
+    boolean isMoreDurableThan(HyperledgerPersistence other) {
+        return ordinal() < other.ordinal();
+    }
+
+    /**
+     * Parses a persistence name, ignoring case.
+     */
+    public static HyperledgerPersistence parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Parses subtree rules of the form {@code path=persistence;path=persistence}. A path is a {@code /}-separated list
+     * of node names in {@code (namespace?revision=date)name} form, such as
+     * {@code (urn:opendaylight:inventory?revision=2013-08-19)nodes/(urn:opendaylight:inventory?revision=2013-08-19)node}.
+     * As in any {@link YangInstanceIdentifier}, a list appears twice, once for the list and once for its entries;
+     * a name in place of an entry matches every entry of the list.
+     *
+     * @throws IllegalArgumentException if a rule cannot be parsed
+     */
+    public static Map<YangInstanceIdentifier, HyperledgerPersistence> parseRules(String rules) {
+        return parseRules(rules, "persistence", HyperledgerPersistence::parse);
+    }
+
+    // Shared with the other settings which are given per path prefix
+    static <V> Map<YangInstanceIdentifier, V> parseRules(String rules, String what, Function<String, V> parser) {
+        Map<YangInstanceIdentifier, V> parsed = new LinkedHashMap<>();
+        for (String rule : rules.split(";")) {
+            if (rule.isBlank()) {
+                continue;
+            }
+            int separator = rule.lastIndexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Rule " + rule + " is not of the form path=" + what);
+            }
+            parsed.put(parsePath(rule.substring(0, separator).trim()), parser.apply(rule.substring(separator + 1)));
+        }
+        return parsed;
+    }
+
+    private static YangInstanceIdentifier parsePath(String path) {
+        List<PathArgument> arguments = new ArrayList<>();
+        int depth = 0;
+        int start = path.startsWith("/") ? 1 : 0;
+        for (int i = start; i <= path.length(); i++) {
+            char c = i < path.length() ? path.charAt(i) : '/';
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '/' && depth == 0) {
+                // Namespaces may contain slashes, only split outside of the parentheses
+                if (i > start) {
+                    arguments.add(NodeIdentifier.create(QName.create(path.substring(start, i))));
+                }
+                start = i + 1;
+            }
+        }
+        return YangInstanceIdentifier.of(arguments);
+    }
+}
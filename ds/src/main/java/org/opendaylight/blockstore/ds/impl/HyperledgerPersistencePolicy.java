@@ -0,0 +1,229 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.opendaylight.blockstore.ds.impl.HyperledgerPathRules.Rule;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.ChoiceNode;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.DistinctNodeContainer;
+import org.opendaylight.yangtools.yang.data.api.schema.LeafSetNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodes;
+import org.opendaylight.yangtools.yang.data.api.schema.SystemMapNode;
+import org.opendaylight.yangtools.yang.data.api.schema.UserMapNode;
+import org.opendaylight.yangtools.yang.data.api.schema.builder.NormalizedNodeContainerBuilder;
+import org.opendaylight.yangtools.yang.data.spi.node.ImmutableNodes;
+
+/**
+ * Decides how each path of a {@link HyperledgerDataStore} is persisted: by the rule with the longest matching prefix,
+ * or by the datastore default if no rule matches. A node name in a rule in place of a list entry matches every entry
+ * of that list.
+ *
+ * <p>A rule nested in another rule may not be more durable than the enclosing one: data is restored in the order
+ * ledger, journal, and could otherwise not find its parent on restart.
+ */
+@SuppressWarnings("all")
+final class HyperledgerPersistencePolicy {
+
+    private final HyperledgerPersistence defaultPersistence;
+    private final HyperledgerPathRules<HyperledgerPersistence> rules;
+
+    HyperledgerPersistencePolicy(HyperledgerPersistence defaultPersistence,
+            Map<YangInstanceIdentifier, HyperledgerPersistence> rules) {
+        this.defaultPersistence = defaultPersistence;
+        this.rules = new HyperledgerPathRules<>(rules);
+
+        for (Rule<HyperledgerPersistence> rule : this.rules) {
+            for (Rule<HyperledgerPersistence> enclosing : this.rules) {
+                if (enclosing != rule && enclosing.prefix.size() < rule.prefix.size()
+                        && enclosing.matchesPrefixOf(rule.prefix)
+                        && rule.value.isMoreDurableThan(enclosing.value)) {
+                    throw new IllegalArgumentException("Persistence rule " + YangInstanceIdentifier.of(rule.prefix)
+                            + "=" + rule.value + " is more durable than the enclosing rule "
+                            + YangInstanceIdentifier.of(enclosing.prefix) + "=" + enclosing.value);
+                }
+            }
+        }
+    }
+
+    HyperledgerPersistence defaultPersistence() {
+        return defaultPersistence;
+    }
+
+    /**
+     * Returns true if some part of the datastore may be persisted this way.
+     */
+    boolean uses(HyperledgerPersistence persistence) {
+        if (defaultPersistence == persistence) {
+            return true;
+        }
+        for (Rule<HyperledgerPersistence> rule : rules) {
+            if (rule.value == persistence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    HyperledgerPersistence persistenceOf(YangInstanceIdentifier path) {
+        Rule<HyperledgerPersistence> rule = rules.match(path.getPathArguments());
+        return rule != null ? rule.value : defaultPersistence;
+    }
+
+    /**
+     * Returns the data written at {@code path} without the subtrees which are persisted differently than the path
+     * itself. Those are persisted on their own when the candidate walk reaches them.
+     */
+    NormalizedNode retain(YangInstanceIdentifier path, NormalizedNode data) {
+        List<PathArgument> arguments = path.getPathArguments();
+        HyperledgerPersistence persistence = persistenceOf(path);
+        NormalizedNode retained = data;
+        for (Rule<HyperledgerPersistence> rule : rules) {
+            if (rule.value == persistence || !rule.isBelow(arguments)) {
+                continue;
+            }
+            List<List<PathArgument>> instances = new ArrayList<>();
+            collect(data, rule.prefix.subList(arguments.size(), rule.prefix.size()), new ArrayList<>(), instances);
+            for (List<PathArgument> instance : instances) {
+                retained = without(retained, instance);
+            }
+        }
+        return retained;
+    }
+
+    /**
+     * Returns the top-most paths in {@code root} which are persisted as {@code persistence}, together with their data
+     * as returned by {@link #retain(YangInstanceIdentifier, NormalizedNode)}, parents first.
+     */
+    List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> regions(NormalizedNode root,
+            HyperledgerPersistence persistence) {
+        Set<YangInstanceIdentifier> paths = new LinkedHashSet<>();
+        if (root instanceof DistinctNodeContainer) {
+            for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) root).body()) {
+                YangInstanceIdentifier path = YangInstanceIdentifier.of(child.name());
+                if (persistenceOf(path) == persistence) {
+                    paths.add(path);
+                }
+            }
+        }
+        for (Rule<HyperledgerPersistence> rule : rules) {
+            if (rule.value != persistence) {
+                continue;
+            }
+            List<List<PathArgument>> instances = new ArrayList<>();
+            collect(root, rule.prefix, new ArrayList<>(), instances);
+            for (List<PathArgument> instance : instances) {
+                YangInstanceIdentifier path = YangInstanceIdentifier.of(instance);
+                // Skip the root, and instances already covered by an enclosing region
+                if (!instance.isEmpty() && persistenceOf(path.getParent()) != persistence) {
+                    paths.add(path);
+                }
+            }
+        }
+        List<YangInstanceIdentifier> sorted = new ArrayList<>(paths);
+        sorted.sort(Comparator.comparingInt(path -> path.getPathArguments().size()));
+
+        List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> regions = new ArrayList<>(sorted.size());
+        for (YangInstanceIdentifier path : sorted) {
+            NormalizedNode data = find(root, path.getPathArguments());
+            if (data != null) {
+                regions.add(Map.entry(path, retain(path, data)));
+            }
+        }
+        return regions;
+    }
+
+    // Finds the descendants of data at the given relative rule path, expanding list entry wildcards
+    private static void collect(NormalizedNode data, List<PathArgument> rest, List<PathArgument> path,
+            List<List<PathArgument>> instances) {
+        if (rest.isEmpty()) {
+            instances.add(List.copyOf(path));
+            return;
+        }
+        if (!(data instanceof DistinctNodeContainer)) {
+            return;
+        }
+        PathArgument argument = rest.get(0);
+        List<PathArgument> remaining = rest.subList(1, rest.size());
+        if (argument instanceof NodeIdentifier && (data instanceof MapNode || data instanceof LeafSetNode)) {
+            for (NormalizedNode node : ((DistinctNodeContainer<?, ?>) data).body()) {
+                if (HyperledgerPathRules.matchArgument(argument, node.name())) {
+                    path.add(node.name());
+                    collect(node, remaining, path, instances);
+                    path.remove(path.size() - 1);
+                }
+            }
+            return;
+        }
+        NormalizedNode child = NormalizedNodes.getDirectChild(data, argument).orElse(null);
+        if (child != null) {
+            path.add(argument);
+            collect(child, remaining, path, instances);
+            path.remove(path.size() - 1);
+        }
+    }
+
+    private static NormalizedNode find(NormalizedNode data, List<PathArgument> path) {
+        NormalizedNode current = data;
+        for (PathArgument argument : path) {
+            current = NormalizedNodes.getDirectChild(current, argument).orElse(null);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    // Rebuilds data without the descendant at the given relative path
+    private static NormalizedNode without(NormalizedNode data, List<PathArgument> path) {
+        NormalizedNodeContainerBuilder<?, PathArgument, NormalizedNode, ? extends NormalizedNode> builder =
+            copyBuilder(data);
+        if (builder == null) {
+            return data;
+        }
+        PathArgument argument = path.get(0);
+        if (path.size() == 1) {
+            return builder.removeChild(argument).build();
+        }
+        NormalizedNode child = NormalizedNodes.getDirectChild(data, argument).orElse(null);
+        if (child == null) {
+            return data;
+        }
+        return builder.addChild(without(child, path.subList(1, path.size()))).build();
+    }
+
+    /**
+     * Returns a builder initialized with the children of a node which rules can address below, or null. Children of
+     * all of these are added and removed by their path argument, which the builders check at run time.
+     */
+    @SuppressWarnings("unchecked")
+    static NormalizedNodeContainerBuilder<?, PathArgument, NormalizedNode, ? extends NormalizedNode> copyBuilder(
+            NormalizedNode data) {
+        NormalizedNode.BuilderFactory factory = ImmutableNodes.builderFactory();
+        final NormalizedNodeContainerBuilder<?, ?, ?, ?> builder;
+        if (data instanceof ContainerNode) {
+            builder = factory.newContainerBuilder((ContainerNode) data);
+        } else if (data instanceof MapEntryNode) {
+            builder = factory.newMapEntryBuilder((MapEntryNode) data);
+        } else if (data instanceof ChoiceNode) {
+            builder = factory.newChoiceBuilder((ChoiceNode) data);
+        } else if (data instanceof SystemMapNode) {
+            builder = factory.newSystemMapBuilder((SystemMapNode) data);
+        } else if (data instanceof UserMapNode) {
+            builder = factory.newUserMapBuilder((UserMapNode) data);
+        } else {
+            // Rules cannot address anything below other nodes
+            return null;
+        }
+        return (NormalizedNodeContainerBuilder<?, PathArgument, NormalizedNode, ? extends NormalizedNode>) builder;
+    }
+}
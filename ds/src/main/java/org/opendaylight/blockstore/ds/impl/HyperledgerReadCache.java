@@ -0,0 +1,111 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * Bounded read-through cache of ledger values, keyed by encoded ledger key.
+ *
+ * <p>Since a ledger value holds a whole subtree, a write to some key invalidates the cached entries of that key, of
+ * its ancestors and of its descendants. Encoded keys are prefix-preserving (see {@link HyperledgerKeyCodec}), so this
+ * boils down to prefix checks. The cached keys are also kept sorted, so that the descendants of a written key are a
+ * range of them and its ancestors are found by looking up its prefixes, whatever the size of the cache.
+ *
+ * <p>A load which an invalidation overtakes may have read the ledger before the write, so its value is returned but
+ * not cached. Invalidations are counted for that purpose, whatever keys they concern.
+ */
+@SuppressWarnings("all")
+final class HyperledgerReadCache {
+
+    @FunctionalInterface
+    interface Loader {
+        Optional<NormalizedNode> load(String key) throws HyperledgerException;
+    }
+
+    // Holds every cached key, and possibly some more which are no longer cached
+    private final NavigableSet<String> keys = new ConcurrentSkipListSet<>();
+    private final Cache<String, Optional<NormalizedNode>> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    HyperledgerReadCache(long maximumSize) {
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats()
+            .<String, Optional<NormalizedNode>>removalListener(notification -> {
+                if (notification.wasEvicted()) {
+                    evicted(notification.getKey());
+                }
+            })
+            .build();
+    }
+
+    Optional<NormalizedNode> get(String key, Loader loader) throws HyperledgerException {
+        Optional<NormalizedNode> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long loadedAfter = invalidations.get();
+        Optional<NormalizedNode> value = loader.load(key);
+        synchronized (keys) {
+            // Checked and cached atomically with regard to evictions, invalidations look up the key after counting
+            if (invalidations.get() == loadedAfter) {
+                cache.put(key, value);
+                keys.add(key);
+            }
+        }
+        return value;
+    }
+
+    void invalidate(Collection<String> written) {
+        if (written.isEmpty()) {
+            return;
+        }
+        // Counted first, so that loads in progress do not cache what they read
+        invalidations.incrementAndGet();
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        List<String> stale = new ArrayList<>();
+        for (String key : written) {
+            // The key itself and its descendants
+            stale.addAll(keys.subSet(key, true, HyperledgerKeyCodec.prefixEnd(key), false));
+            // Its ancestors
+            for (int len = key.length() - 1; len > 0; len--) {
+                String ancestor = key.substring(0, len);
+                if (keys.contains(ancestor)) {
+                    stale.add(ancestor);
+                }
+            }
+        }
+        // Values cached before the count are in the index, values cached after it were loaded after it
+        keys.removeAll(stale);
+        cache.invalidateAll(stale);
+    }
+
+    // Runs after a concurrent load of the same key may have added it back to the index
+    private void evicted(String key) {
+        synchronized (keys) {
+            if (!cache.asMap().containsKey(key)) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    void invalidateAll() {
+        invalidations.incrementAndGet();
+        keys.clear();
+        cache.invalidateAll();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+}
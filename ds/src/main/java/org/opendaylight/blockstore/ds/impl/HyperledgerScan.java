@@ -0,0 +1,138 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+
+/**
+ * Iterates over the decoded entries of a ledger key range in key order, one {@code ScanEntries} page after the other.
+ * Up to {@code prefetch} pages are fetched and decoded in the background ahead of the one being consumed.
+ *
+ * <p>A failed page fetch surfaces from {@link #hasNext()} as an {@link IllegalStateException} caused by the
+ * {@link HyperledgerException}. Closing the scan cancels the pages fetched ahead.
+ */
+@SuppressWarnings("all")
+final class HyperledgerScan implements Iterator<Map.Entry<YangInstanceIdentifier, NormalizedNode>>, AutoCloseable {
+
+    /**
+     * Fetches and decodes the page following a bookmark, the first page for an empty bookmark.
+     */
+    @FunctionalInterface
+    interface PageFetcher {
+        Page fetch(String bookmark) throws HyperledgerException;
+    }
+
+    static final class Page {
+        final List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> entries;
+        final String bookmark;
+
+        Page(List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> entries, String bookmark) {
+            this.entries = entries;
+            this.bookmark = bookmark;
+        }
+
+        boolean isLast() {
+            return bookmark.isEmpty();
+        }
+    }
+
+    private final PageFetcher fetcher;
+    private final int prefetch;
+    private final ListeningExecutorService executor;
+    private final Deque<ListenableFuture<Page>> pages = new ArrayDeque<>();
+    // The most recently requested page, whose bookmark the next request needs
+    private ListenableFuture<Page> tail;
+    private Iterator<Map.Entry<YangInstanceIdentifier, NormalizedNode>> current = Collections.emptyIterator();
+    private boolean ended;
+
+    HyperledgerScan(PageFetcher fetcher, int prefetch, ListeningExecutorService executor) {
+        checkArgument(prefetch > 0, "At least one page has to be fetched ahead");
+        this.fetcher = fetcher;
+        this.prefetch = prefetch;
+        this.executor = executor;
+        requestPages();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (ended) {
+                return false;
+            }
+            Page page = await(pages.poll());
+            if (page == null || page.isLast()) {
+                ended = true;
+                cancelPages();
+            } else {
+                requestPages();
+            }
+            if (page != null) {
+                current = page.entries.iterator();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map.Entry<YangInstanceIdentifier, NormalizedNode> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void close() {
+        ended = true;
+        current = Collections.emptyIterator();
+        cancelPages();
+    }
+
+    private void requestPages() {
+        while (pages.size() < prefetch) {
+            if (tail == null) {
+                tail = Futures.submit(() -> fetcher.fetch(""), executor);
+            } else {
+                // A null page follows the last one
+                tail = Futures.transformAsync(tail, previous -> previous == null || previous.isLast()
+                        ? Futures.immediateFuture(null)
+                        : Futures.submit(() -> fetcher.fetch(previous.bookmark), executor),
+                        MoreExecutors.directExecutor());
+            }
+            pages.add(tail);
+        }
+    }
+
+    private void cancelPages() {
+        ListenableFuture<Page> page;
+        while ((page = pages.poll()) != null) {
+            page.cancel(true);
+        }
+    }
+
+    private Page await(ListenableFuture<Page> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("Interrupted while waiting for a ledger scan page", e);
+        } catch (ExecutionException e) {
+            close();
+            throw new IllegalStateException("Ledger scan failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.opendaylight.blockstore.ds.impl.HyperledgerBatch.readBytes;
+import static org.opendaylight.blockstore.ds.impl.HyperledgerBatch.readVarInt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a {@code ScanEntries} key range query.
+ *
+ * <p>Wire format: {@code varint count}, followed by {@code count} entries each being a varint-length-prefixed key and
+ * a varint-length-prefixed value, followed by a varint-length-prefixed bookmark. An empty bookmark marks the last
+ * page.
+ */
+@SuppressWarnings("all")
+final class HyperledgerScanPage {
+
+    private final List<Map.Entry<String, byte[]>> entries;
+    private final String bookmark;
+
+    HyperledgerScanPage(List<Map.Entry<String, byte[]>> entries, String bookmark) {
+        this.entries = entries;
+        this.bookmark = bookmark;
+    }
+
+    static HyperledgerScanPage parse(byte[] payload) throws HyperledgerException {
+        int[] offset = {0};
+        try {
+            int count = readVarInt(payload, offset);
+            List<Map.Entry<String, byte[]>> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String key = new String(readBytes(payload, offset), StandardCharsets.UTF_8);
+                entries.add(Map.entry(key, readBytes(payload, offset)));
+            }
+            return new HyperledgerScanPage(entries, new String(readBytes(payload, offset), StandardCharsets.UTF_8));
+        } catch (IndexOutOfBoundsException e) {
+            throw new HyperledgerException("Truncated ScanEntries page", e);
+        }
+    }
+
+    List<Map.Entry<String, byte[]>> entries() {
+        return entries;
+    }
+
+    String bookmark() {
+        return bookmark;
+    }
+
+    boolean isLast() {
+        return bookmark.isEmpty();
+    }
+}
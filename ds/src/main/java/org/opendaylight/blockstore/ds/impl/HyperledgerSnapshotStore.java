@@ -0,0 +1,155 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeDataInput;
+import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeDataOutput;
+import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeStreamVersion;
+
+/**
+ * Persists the root of a committed data tree together with the number of the last ledger block it fully reflects and
+ * the last transaction it reflects in the following block, if any.
+ *
+ * <p>The file starts with a magic number, a format version, the block number and the transaction id, followed by the
+ * root node written with {@link NormalizedNodeDataOutput}. Snapshots are written to a temporary file which atomically replaces the
+ * previous one once it is synced to disk, and are read back through a read-only memory mapping.
+ */
+@SuppressWarnings("all")
+final class HyperledgerSnapshotStore {
+
+    private static final int MAGIC = 0x484C5353; // "HLSS"
+    private static final byte VERSION_BLOCK = 1;
+    private static final byte VERSION = 2;
+
+    static final class Snapshot {
+        private final NormalizedNode root;
+        private final long blockNumber;
+        private final String transactionId;
+
+        Snapshot(NormalizedNode root, long blockNumber, String transactionId) {
+            this.root = root;
+            this.blockNumber = blockNumber;
+            this.transactionId = transactionId;
+        }
+
+        NormalizedNode root() {
+            return root;
+        }
+
+        long blockNumber() {
+            return blockNumber;
+        }
+
+        /**
+         * Returns the last transaction of block {@code blockNumber() + 1} reflected by the snapshot, or an empty
+         * string if there is none.
+         */
+        String transactionId() {
+            return transactionId;
+        }
+    }
+
+    private final Path directory;
+    private final Path file;
+    private final Path tmpFile;
+
+    HyperledgerSnapshotStore(Path directory, String name) {
+        this.directory = directory;
+        this.file = directory.resolve(name + ".snapshot");
+        this.tmpFile = directory.resolve(name + ".snapshot.tmp");
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    synchronized void save(NormalizedNode root, long blockNumber, String transactionId) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(blockNumber);
+            out.writeUTF(transactionId);
+            try (NormalizedNodeDataOutput nnOut = NormalizedNodeStreamVersion.current().newDataOutput(out)) {
+                nnOut.writeNormalizedNode(root);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the snapshot, so that the next start loads the datastore from the ledger.
+     */
+    synchronized void delete() throws IOException {
+        Files.deleteIfExists(tmpFile);
+        Files.deleteIfExists(file);
+    }
+
+    Optional<Snapshot> load() throws IOException {
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 13 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            byte version = buffer.get();
+            if (version != VERSION && version != VERSION_BLOCK) {
+                throw new IOException("Unsupported snapshot version " + version + " in " + file);
+            }
+            long blockNumber = buffer.getLong();
+            DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer));
+            String transactionId = version == VERSION ? in.readUTF() : "";
+            NormalizedNode root = NormalizedNodeDataInput.newDataInput(in).readNormalizedNode();
+            return Optional.of(new Snapshot(root, blockNumber, transactionId));
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.Locale;
+import java.util.Map;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+
+/**
+ * How finely a datastore is cut into ledger entries.
+ *
+ * <p>With {@link #SUBTREE} and no subtree rules every written node is stored whole under its own path, as the
+ * candidate presents it. Otherwise the layout only depends on the data: each entry holds a node without the
+ * descendants which are entries of their own, and commits only send the entries whose content actually changed.
+ */
+@SuppressWarnings("all")
+public enum HyperledgerStorageGranularity {
+    /**
+     * One entry per written subtree. As the granularity of a subtree rule, one entry for the whole subtree.
+     */
+    SUBTREE,
+    /**
+     * One entry per top-level node and per list entry.
+     */
+    LIST_ENTRY,
+    /**
+     * One entry per top-level node, list entry and container.
+     */
+    CONTAINER,
+    /**
+     * One entry per node, down to leaves and leaf-lists. List entries keep their key leaves.
+     */
+    LEAF;
+
+    /**
+     * Parses a granularity name, ignoring case.
+     */
+    public static HyperledgerStorageGranularity parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Parses subtree rules of the form {@code path=granularity;path=granularity}, with paths as described in
+     * {@link HyperledgerPersistence#parseRules(String)}.
+     *
+     * @throws IllegalArgumentException if a rule cannot be parsed
+     */
+    public static Map<YangInstanceIdentifier, HyperledgerStorageGranularity> parseRules(String rules) {
+        return HyperledgerPersistence.parseRules(rules, "granularity", HyperledgerStorageGranularity::parse);
+    }
+}
@@ -0,0 +1,241 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.ChoiceNode;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.DistinctNodeContainer;
+import org.opendaylight.yangtools.yang.data.api.schema.LeafSetNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNodes;
+import org.opendaylight.yangtools.yang.data.api.schema.builder.NormalizedNodeContainerBuilder;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.tree.api.ModificationType;
+
+/**
+ * Decides which paths of a {@link HyperledgerDataStore} are stored as ledger entries of their own, and what goes into
+ * each entry, unless the datastore keeps the {@link HyperledgerStorageGranularity#SUBTREE} layout of the candidates.
+ *
+ * <p>An entry holds its node without the descendants which are entries themselves. Top-level nodes, the nodes
+ * matched by a granularity rule and the roots of subtrees persisted differently than their parent are always entries.
+ * Below them, the granularity of the longest matching rule decides by the kind of schema node: lists and choices never
+ * are entries, their entries and cases belong to the enclosing entry unless the granularity cuts them out.
+ */
+@SuppressWarnings("all")
+final class HyperledgerStorageLayout {
+
+    /**
+     * A put of an entry, or a delete if {@link #data} is null.
+     */
+    static final class Change {
+        final YangInstanceIdentifier path;
+        final NormalizedNode data;
+
+        Change(YangInstanceIdentifier path, NormalizedNode data) {
+            this.path = path;
+            this.data = data;
+        }
+    }
+
+    private final HyperledgerStorageGranularity granularity;
+    private final HyperledgerPathRules<HyperledgerStorageGranularity> rules;
+    private final HyperledgerPersistencePolicy persistence;
+
+    HyperledgerStorageLayout(HyperledgerStorageGranularity granularity,
+            Map<YangInstanceIdentifier, HyperledgerStorageGranularity> rules,
+            HyperledgerPersistencePolicy persistence) {
+        this.granularity = granularity;
+        this.rules = new HyperledgerPathRules<>(rules);
+        this.persistence = persistence;
+    }
+
+    /**
+     * Returns true if entries only hold the parts of the tree which are not entries themselves.
+     */
+    boolean isIncremental() {
+        return granularity != HyperledgerStorageGranularity.SUBTREE || !rules.isEmpty();
+    }
+
+    /**
+     * Returns true if {@code node}, a child of {@code parent} at {@code path}, is stored as an entry of its own.
+     */
+    boolean isEntry(YangInstanceIdentifier path, NormalizedNode node, NormalizedNode parent) {
+        if (path.isEmpty() || parent instanceof LeafSetNode) {
+            return false;
+        }
+        List<PathArgument> arguments = path.getPathArguments();
+        if (arguments.size() == 1
+                || persistence.persistenceOf(path) != persistence.persistenceOf(path.getParent())) {
+            return true;
+        }
+        HyperledgerStorageGranularity granularity = this.granularity;
+        HyperledgerPathRules.Rule<HyperledgerStorageGranularity> rule = rules.match(arguments);
+        if (rule != null) {
+            if (rule.prefix.size() == arguments.size()) {
+                return true;
+            }
+            granularity = rule.value;
+        }
+        switch (granularity) {
+            case LIST_ENTRY:
+                return node instanceof MapEntryNode;
+            case CONTAINER:
+                return node instanceof MapEntryNode || node instanceof ContainerNode;
+            case LEAF:
+                // List entries are addressed by their keys, so key leaves stay with the entry
+                return !(node instanceof MapNode || node instanceof ChoiceNode)
+                        && !(parent instanceof MapEntryNode
+                            && ((MapEntryNode) parent).name().containsKey(node.name().getNodeType()));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the puts and deletes of the entries changed by a candidate, each put ahead of the changes below it and
+     * each delete after them. Entries whose content did not change are not sent, even if they were written.
+     */
+    List<Change> changes(DataTreeCandidateNode root) {
+        List<Change> changes = new ArrayList<>();
+        for (DataTreeCandidateNode child : root.childNodes()) {
+            changes(changes, YangInstanceIdentifier.of(child.name()), child, root.dataAfter());
+        }
+        return changes;
+    }
+
+    /**
+     * Returns {@code data}, the content of the entry at {@code path}, without the descendants which are entries of
+     * their own.
+     */
+    NormalizedNode strip(YangInstanceIdentifier path, NormalizedNode data) {
+        if (!(data instanceof DistinctNodeContainer)) {
+            return data;
+        }
+        NormalizedNodeContainerBuilder<?, PathArgument, NormalizedNode, ? extends NormalizedNode> builder = null;
+        for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) data).body()) {
+            YangInstanceIdentifier childPath = path.node(child.name());
+            NormalizedNode stripped = isEntry(childPath, child, data) ? null : strip(childPath, child);
+            if (stripped != child) {
+                if (builder == null) {
+                    builder = HyperledgerPersistencePolicy.copyBuilder(data);
+                    if (builder == null) {
+                        return data;
+                    }
+                }
+                if (stripped == null) {
+                    builder.removeChild(child.name());
+                } else {
+                    builder.addChild(stripped);
+                }
+            }
+        }
+        return builder != null ? builder.build() : data;
+    }
+
+    /**
+     * Returns {@code data}, the content of the entry at {@code path}, together with the descendant entries which
+     * {@code existing} holds at that path. Applying a put of an entry must not drop the entries below it.
+     */
+    NormalizedNode restore(YangInstanceIdentifier path, NormalizedNode data, NormalizedNode existing) {
+        if (!(data instanceof DistinctNodeContainer) || !(existing instanceof DistinctNodeContainer)) {
+            return data;
+        }
+        NormalizedNodeContainerBuilder<?, PathArgument, NormalizedNode, ? extends NormalizedNode> builder = null;
+        for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) existing).body()) {
+            YangInstanceIdentifier childPath = path.node(child.name());
+            NormalizedNode written = NormalizedNodes.getDirectChild(data, child.name()).orElse(null);
+            NormalizedNode restored;
+            if (written == null) {
+                // A missing child which is not an entry was removed along with the content of this entry
+                restored = isEntry(childPath, child, existing) ? child : null;
+            } else {
+                restored = restore(childPath, written, child);
+            }
+            if (restored != null && restored != written) {
+                if (builder == null) {
+                    builder = HyperledgerPersistencePolicy.copyBuilder(data);
+                    if (builder == null) {
+                        return data;
+                    }
+                }
+                builder.addChild(restored);
+            }
+        }
+        return builder != null ? builder.build() : data;
+    }
+
+    // Returns true if the content of the entry owning the node changed
+    private boolean changes(List<Change> changes, YangInstanceIdentifier path, DataTreeCandidateNode node,
+            NormalizedNode parent) {
+        ModificationType type = node.modificationType();
+        if (type == ModificationType.UNMODIFIED) {
+            return false;
+        }
+        NormalizedNode before = node.dataBefore();
+        NormalizedNode after = node.dataAfter();
+        if (type != ModificationType.SUBTREE_MODIFIED) {
+            return diff(changes, path, before, after, parent);
+        }
+
+        int mark = changes.size();
+        boolean changed = false;
+        for (DataTreeCandidateNode child : node.childNodes()) {
+            changed |= changes(changes, path.node(child.name()), child, after);
+        }
+        return record(changes, mark, path, isEntry(path, after, parent), after, changed);
+    }
+
+    // Same as above, between two versions of the data
+    private boolean diff(List<Change> changes, YangInstanceIdentifier path, NormalizedNode before,
+            NormalizedNode after, NormalizedNode parent) {
+        if (before == after) {
+            return false;
+        }
+        boolean entry = isEntry(path, after != null ? after : before, parent);
+        int mark = changes.size();
+        boolean changed;
+        boolean beforeContainer = before instanceof DistinctNodeContainer;
+        boolean afterContainer = after instanceof DistinctNodeContainer;
+        if (beforeContainer || afterContainer) {
+            changed = !beforeContainer || !afterContainer;
+            if (afterContainer) {
+                for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) after).body()) {
+                    NormalizedNode previous = beforeContainer
+                            ? NormalizedNodes.getDirectChild(before, child.name()).orElse(null) : null;
+                    changed |= diff(changes, path.node(child.name()), previous, child, after);
+                }
+            }
+            if (beforeContainer) {
+                for (NormalizedNode child : ((DistinctNodeContainer<?, ?>) before).body()) {
+                    if (!afterContainer || NormalizedNodes.getDirectChild(after, child.name()).isEmpty()) {
+                        changed |= diff(changes, path.node(child.name()), child, null, before);
+                    }
+                }
+            }
+        } else {
+            changed = !Objects.equals(before, after);
+        }
+        return record(changes, mark, path, entry, after, changed);
+    }
+
+    private boolean record(List<Change> changes, int mark, YangInstanceIdentifier path, boolean entry,
+            NormalizedNode after, boolean changed) {
+        if (!entry) {
+            return changed;
+        }
+        if (after == null) {
+            // Descendant entries are deleted first
+            changes.add(new Change(path, null));
+        } else if (changed) {
+            // Parents are put first, so that their descendants find them
+            changes.add(mark, new Change(path, strip(path, after)));
+        }
+        return false;
+    }
+}
@@ -0,0 +1,282 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipelines {@code PutBatch} ledger transactions. Proposals are endorsed and sent to the orderer one after the other,
+ * in submission order, without waiting for the previous one to be committed. At most {@code maxInFlight} transactions
+ * may be waiting for their commit status at any time; their status is collected on a separate pool.
+ *
+ * <p>Submissions queued while the submit thread is busy, or arriving within {@code groupCommitWindow} of the first
+ * one, are merged in order into a single ledger transaction of at most {@code groupCommitMaxSize} submissions. Their
+ * futures complete together, with the same block number or the same failure.
+ *
+ * <p>A failed transaction leaves the local data tree ahead of the ledger for good. The first failure is therefore kept,
+ * and {@link #sync()} keeps failing with it until the datastore is reloaded from the ledger. Closing fails whatever
+ * did not complete in time, as well as every later submission.
+ */
+@SuppressWarnings("all")
+final class HyperledgerSubmitter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerSubmitter.class);
+    // Well below the default 100 MiB gRPC message limit of Fabric peers
+    private static final int MAX_GROUP_BYTES = 4 * 1024 * 1024;
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private static final class Submission {
+        final byte[] payload;
+        final int entries;
+        final SettableFuture<Long> durability;
+        final HyperledgerTracer.Trace trace;
+
+        Submission(byte[] payload, int entries, SettableFuture<Long> durability, HyperledgerTracer.Trace trace) {
+            this.payload = payload;
+            this.entries = entries;
+            this.durability = durability;
+            this.trace = trace;
+        }
+    }
+
+    private final String name;
+    private final LedgerBackend ledger;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final int groupCommitMaxSize;
+    private final long groupCommitWindowNanos;
+    private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+    private final ListeningExecutorService submitExecutor;
+    private final ListeningExecutorService commitStatusExecutor;
+    private final Set<SettableFuture<Long>> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<HyperledgerException> failure = new AtomicReference<>();
+    private final Set<String> localTransactions;
+    private final HyperledgerMetrics metrics;
+
+    private volatile boolean closed;
+
+    HyperledgerSubmitter(String name, LedgerBackend ledger, int maxInFlight, int groupCommitMaxSize,
+            long groupCommitWindowMicros, Set<String> localTransactions, HyperledgerMetrics metrics) {
+        this.name = name;
+        this.ledger = ledger;
+        this.localTransactions = localTransactions;
+        this.metrics = metrics;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxInFlight = maxInFlight;
+        this.groupCommitMaxSize = Math.max(1, groupCommitMaxSize);
+        this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(groupCommitWindowMicros);
+        this.submitExecutor = Executors.newListeningSingleThreadExecutor("HyperledgerDB-submit-" + name, LOG);
+        this.commitStatusExecutor = Executors.newFixedThreadPool(maxInFlight, "HyperledgerDB-commitStatus-" + name,
+                LOG);
+        submitExecutor.execute(this::submitLoop);
+    }
+
+    /**
+     * Queues a {@code PutBatch} transaction. The phases it goes through are recorded in {@code trace}, which must not
+     * be touched again before the returned future completes.
+     *
+     * @return a future completing with the number of the block which committed the transaction, or failing right
+     *         away once the submitter is closed
+     */
+    ListenableFuture<Long> submit(byte[] payload, int entries, HyperledgerTracer.Trace trace) {
+        SettableFuture<Long> durability = SettableFuture.create();
+        Futures.addCallback(durability, new LoggingCallback(), MoreExecutors.directExecutor());
+        Submission submission = new Submission(payload, entries, durability, trace);
+        synchronized (this) {
+            // The submit loop drains the queue once closed, and then exits
+            if (!closed) {
+                pending.add(durability);
+                durability.addListener(() -> pending.remove(durability), MoreExecutors.directExecutor());
+                queue.add(submission);
+                return durability;
+            }
+        }
+        fail(List.of(submission), new HyperledgerException(name + " submitter is closed"));
+        return durability;
+    }
+
+    private void submitLoop() {
+        List<Submission> group = new ArrayList<>();
+        // Drain what was queued before close()
+        while (!closed || !queue.isEmpty()) {
+            try {
+                collect(group);
+                if (group.isEmpty()) {
+                    continue;
+                }
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(group, new HyperledgerException("Interrupted while waiting to submit"));
+                fail(List.copyOf(queue), new HyperledgerException("Submitter closed"));
+                return;
+            }
+            submitGroup(List.copyOf(group));
+            group.clear();
+        }
+    }
+
+    // Waits for a first submission, then adds what arrives within the window up to the size and byte caps
+    private void collect(List<Submission> group) throws InterruptedException {
+        Submission first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        group.add(first);
+        int bytes = first.payload.length;
+        long deadline = System.nanoTime() + groupCommitWindowNanos;
+        while (group.size() < groupCommitMaxSize && bytes < MAX_GROUP_BYTES) {
+            long remaining = deadline - System.nanoTime();
+            Submission next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+            bytes += next.payload.length;
+        }
+    }
+
+    private void submitGroup(List<Submission> group) {
+        final LedgerBackend.Submitted submitted;
+        final int payloadSize;
+        try {
+            List<byte[]> payloads = new ArrayList<>(group.size());
+            group.forEach(submission -> payloads.add(submission.payload));
+            byte[] payload = HyperledgerBatch.merge(payloads);
+            payloadSize = payload.length;
+            submitted = ledger.submit(payload, new LedgerBackend.SubmitListener() {
+                @Override
+                public void proposed(String transactionId) {
+                    localTransactions.add(transactionId);
+                }
+
+                @Override
+                public void abandoned(String transactionId) {
+                    localTransactions.remove(transactionId);
+                }
+
+                @Override
+                public void phase(HyperledgerTracer.Phase phase, long elapsedNanos) {
+                    record(group, phase, elapsedNanos);
+                }
+            });
+        } catch (HyperledgerException e) {
+            inFlight.release();
+            metrics.failed();
+            fail(group, new HyperledgerException("PutBatch submission failed", e));
+            return;
+        }
+        if (group.size() > 1) {
+            LOG.debug("{} submitted {} transactions as {}", name, group.size(), submitted.transactionId());
+        }
+
+        group.forEach(submission -> submission.trace.transaction(submitted.transactionId()));
+
+        commitStatusExecutor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                LedgerBackend.CommitStatus status = submitted.commitStatus();
+                record(group, HyperledgerTracer.Phase.COMMIT_STATUS, System.nanoTime() - start);
+                if (status.isSuccessful()) {
+                    metrics.transaction(group.stream().mapToInt(submission -> submission.entries).sum(),
+                            payloadSize);
+                    group.forEach(submission -> {
+                        submission.trace.block(status.getBlockNumber());
+                        submission.durability.set(status.getBlockNumber());
+                    });
+                } else {
+                    localTransactions.remove(status.getTransactionId());
+                    metrics.failed();
+                    fail(group, new HyperledgerException("Transaction " + status.getTransactionId()
+                            + " failed to commit with code " + status.getCode()));
+                }
+            } catch (HyperledgerException e) {
+                metrics.failed();
+                fail(group, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    // Phases of a merged transaction count once in the metrics, and fully for each of its submissions
+    private void record(List<Submission> group, HyperledgerTracer.Phase phase, long elapsed) {
+        metrics.record(phase, elapsed);
+        group.forEach(submission -> submission.trace.add(phase, elapsed));
+    }
+
+    private void fail(List<Submission> group, HyperledgerException cause) {
+        // Recorded before the futures complete, so that sync() cannot miss it once they left the pending set
+        failure.compareAndSet(null, cause);
+        group.forEach(submission -> submission.durability.setException(cause));
+    }
+
+    /**
+     * Returns the number of transactions waiting for their commit status.
+     */
+    long inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Returns the number of submissions waiting to be merged and sent.
+     */
+    long queued() {
+        return queue.size();
+    }
+
+    /**
+     * Returns a future which completes once every transaction queued so far has been committed to the ledger. It fails
+     * if any of them failed, or if any transaction failed before.
+     */
+    ListenableFuture<?> sync() {
+        HyperledgerException failed = failure.get();
+        return failed != null ? Futures.immediateFailedFuture(failed) : Futures.allAsList(new ArrayList<>(pending));
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        Executors.shutdownAndAwaitTermination(submitExecutor);
+        Executors.shutdownAndAwaitTermination(commitStatusExecutor);
+
+        // Left over if the executors did not terminate in time, nothing completes them anymore
+        List<SettableFuture<Long>> abandoned = List.copyOf(pending);
+        if (!abandoned.isEmpty()) {
+            HyperledgerException cause = new HyperledgerException(name + " submitter closed before "
+                    + abandoned.size() + " transactions completed");
+            failure.compareAndSet(null, cause);
+            abandoned.forEach(durability -> durability.setException(cause));
+        }
+    }
+
+    private final class LoggingCallback implements FutureCallback<Long> {
+        @Override
+        public void onSuccess(Long blockNumber) {
+            LOG.debug("{} PutBatch committed in block {}", name, blockNumber);
+        }
+
+        @Override
+        public void onFailure(Throwable cause) {
+            LOG.error("{} PutBatch was not committed to the ledger, the local data tree is ahead of the ledger until "
+                    + "it is reloaded", name, cause);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples commits of a datastore and traces them as one structured log line each, at INFO on this class's logger:
+ * the time spent in each {@link Phase}, the number of candidate nodes and ledger entries, and the payload size.
+ * Commits which are not sampled get {@link Trace#NOOP}, which records nothing. Phase timings are measured for every
+ * commit anyway, for {@link HyperledgerMetrics}.
+ *
+ * <p>The sample rate and whether the puts and deletes of sampled commits are logged with their data can be changed
+ * at runtime.
+ */
+@SuppressWarnings("all")
+final class HyperledgerTracer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HyperledgerTracer.class);
+
+    enum Phase {
+        /**
+         * Validating a modification against the local data tree.
+         */
+        VALIDATE,
+        /**
+         * Computing the candidate of a modification.
+         */
+        CANDIDATE,
+        /**
+         * Walking the candidate and laying it out as ledger entries, encoding included.
+         */
+        PREPARE,
+        /**
+         * Encoding keys and values.
+         */
+        ENCODE,
+        /**
+         * Endorsing the {@code PutBatch} proposal.
+         */
+        ENDORSE,
+        /**
+         * Sending the endorsed transaction to the orderer, or appending it to the journal.
+         */
+        SUBMIT,
+        /**
+         * Waiting for the transaction to be committed in a block.
+         */
+        COMMIT_STATUS
+    }
+
+    /**
+     * The measurements of one sampled commit, which may be recorded from several threads.
+     */
+    static final class Trace {
+        static final Trace NOOP = new Trace(null, null, false);
+
+        private final HyperledgerTracer tracer;
+        private final String operation;
+        private final boolean logPayloads;
+        private final long start;
+        private final Map<Phase, Long> nanos = new EnumMap<>(Phase.class);
+        private long nodes;
+        private long entries;
+        private long bytes;
+        private String transactionId;
+        private long blockNumber = -1;
+        private boolean finished;
+
+        private Trace(HyperledgerTracer tracer, String operation, boolean logPayloads) {
+            this.tracer = tracer;
+            this.operation = operation;
+            this.logPayloads = logPayloads;
+            this.start = tracer != null ? System.nanoTime() : 0;
+        }
+
+        boolean isSampled() {
+            return tracer != null;
+        }
+
+        void add(Phase phase, long elapsedNanos) {
+            if (tracer != null) {
+                synchronized (this) {
+                    nanos.merge(phase, elapsedNanos, Long::sum);
+                }
+            }
+        }
+
+        void nodes(long count) {
+            if (tracer != null) {
+                synchronized (this) {
+                    nodes += count;
+                }
+            }
+        }
+
+        void entries(int count, int size) {
+            if (tracer != null) {
+                synchronized (this) {
+                    entries += count;
+                    bytes += size;
+                }
+            }
+        }
+
+        void transaction(String id) {
+            if (tracer != null) {
+                synchronized (this) {
+                    transactionId = id;
+                }
+            }
+        }
+
+        void block(long number) {
+            if (tracer != null) {
+                synchronized (this) {
+                    blockNumber = number;
+                }
+            }
+        }
+
+        void put(YangInstanceIdentifier path, NormalizedNode data) {
+            if (logPayloads) {
+                LOG.info("{} {} put {} = {}", tracer.name, operation, path, data);
+            }
+        }
+
+        void delete(YangInstanceIdentifier path) {
+            if (logPayloads) {
+                LOG.info("{} {} delete {}", tracer.name, operation, path);
+            }
+        }
+
+        /**
+         * Logs the trace, once.
+         */
+        void finish(String outcome) {
+            if (tracer == null) {
+                return;
+            }
+            String line = format(outcome);
+            if (line != null) {
+                LOG.info(line);
+            }
+        }
+
+        private synchronized String format(String outcome) {
+            if (finished) {
+                return null;
+            }
+            finished = true;
+            StringBuilder line = new StringBuilder(256)
+                .append("trace store=").append(tracer.name)
+                .append(" op=").append(operation)
+                .append(" outcome=").append(outcome)
+                .append(" nodes=").append(nodes)
+                .append(" entries=").append(entries)
+                .append(" bytes=").append(bytes);
+            for (Phase phase : Phase.values()) {
+                Long phaseNanos = nanos.get(phase);
+                if (phaseNanos != null) {
+                    line.append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append("_us=")
+                        .append(TimeUnit.NANOSECONDS.toMicros(phaseNanos));
+                }
+            }
+            line.append(" total_us=").append(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            if (transactionId != null) {
+                line.append(" tx=").append(transactionId);
+            }
+            if (blockNumber >= 0) {
+                line.append(" block=").append(blockNumber);
+            }
+            return line.toString();
+        }
+    }
+
+    private final String name;
+    private volatile double sampleRate;
+    private volatile boolean logPayloads;
+
+    HyperledgerTracer(String name, double sampleRate, boolean logPayloads) {
+        this.name = name;
+        setSampleRate(sampleRate);
+        this.logPayloads = logPayloads;
+    }
+
+    /**
+     * Starts tracing an operation if it is sampled.
+     */
+    Trace start(String operation) {
+        double rate = sampleRate;
+        if (rate <= 0 || !LOG.isInfoEnabled() || rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            return Trace.NOOP;
+        }
+        return new Trace(this, operation, logPayloads);
+    }
+
+    double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the fraction of operations traced, from 0 for none to 1 for all.
+     */
+    void setSampleRate(double sampleRate) {
+        checkArgument(sampleRate >= 0 && sampleRate <= 1, "Sample rate %s is not between 0 and 1", sampleRate);
+        this.sampleRate = sampleRate;
+    }
+
+    boolean isLogPayloads() {
+        return logPayloads;
+    }
+
+    void setLogPayloads(boolean logPayloads) {
+        this.logPayloads = logPayloads;
+    }
+}
@@ -0,0 +1,86 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeDataInput;
+import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeDataOutput;
+import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeStreamVersion;
+
+/**
+ * Encodes ledger values as {@link NormalizedNodeDataOutput} streams, Deflate-compressed once they reach a configurable
+ * size. Every value starts with one header byte telling which of the two forms follows.
+ */
+@SuppressWarnings("all")
+final class HyperledgerValueCodec {
+
+    private static final byte PLAIN    = 0;
+    private static final byte DEFLATED = 1;
+
+    private final int compressionThreshold;
+
+    /**
+     * Creates a new codec.
+     *
+     * @param compressionThreshold minimum encoded size in bytes for a value to be compressed, non-positive values
+     *                             disable compression
+     */
+    HyperledgerValueCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    byte[] encode(NormalizedNode data) throws HyperledgerException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        plain.write(PLAIN);
+        try (NormalizedNodeDataOutput out = NormalizedNodeStreamVersion.current()
+                .newDataOutput(new DataOutputStream(plain))) {
+            out.writeNormalizedNode(data);
+        } catch (IOException e) {
+            throw new HyperledgerException("Failed to encode " + data.name(), e);
+        }
+
+        if (compressionThreshold <= 0 || plain.size() < compressionThreshold) {
+            return plain.toByteArray();
+        }
+
+        byte[] bytes = plain.toByteArray();
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream(bytes.length / 2);
+        deflated.write(DEFLATED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(deflated, new Deflater(Deflater.BEST_SPEED))) {
+            out.write(bytes, 1, bytes.length - 1);
+        } catch (IOException e) {
+            throw new HyperledgerException("Failed to compress " + data.name(), e);
+        }
+        return deflated.size() < bytes.length ? deflated.toByteArray() : bytes;
+    }
+
+    NormalizedNode decode(byte[] value) throws HyperledgerException {
+        if (value.length == 0) {
+            throw new HyperledgerException("Empty ledger value");
+        }
+
+        InputStream in = new ByteArrayInputStream(value, 1, value.length - 1);
+        switch (value[0]) {
+            case PLAIN:
+                break;
+            case DEFLATED:
+                in = new InflaterInputStream(in);
+                break;
+            default:
+                throw new HyperledgerException("Unknown ledger value encoding " + value[0]);
+        }
+
+        try {
+            return NormalizedNodeDataInput.newDataInput(new DataInputStream(in)).readNormalizedNode();
+        } catch (IOException | IllegalArgumentException e) {
+            throw new HyperledgerException("Failed to decode ledger value", e);
+        }
+    }
+}
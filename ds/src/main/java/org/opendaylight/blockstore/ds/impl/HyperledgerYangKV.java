@@ -1,21 +1,35 @@
 package org.opendaylight.blockstore.ds.impl;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import javax.annotation.PreDestroy;
-import org.hyperledger.fabric.client.CommitException;
-import org.hyperledger.fabric.client.CommitStatusException;
-import org.hyperledger.fabric.client.Contract;
-import org.hyperledger.fabric.client.EndorseException;
-import org.hyperledger.fabric.client.SubmitException;
-import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
-import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
 import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
-import org.opendaylight.yangtools.yang.data.codec.binfmt.NormalizedNodeDataInput;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTree;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeConfiguration;
 import org.opendaylight.yangtools.yang.data.tree.api.DataTreeModification;
+import org.opendaylight.yangtools.yang.data.tree.api.DataValidationFailedException;
+import org.opendaylight.yangtools.yang.data.tree.impl.di.InMemoryDataTreeFactory;
+import org.opendaylight.yangtools.yang.model.api.EffectiveModelContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,83 +39,497 @@ class HyperledgerYangKV implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(HyperledgerYangKV.class);
 
-    private final Contract contract;
-    //private final byte[] prefixByteArray;
-    //private final String prefixByteSequence;
+    private final LedgerBackend ledger;
+    private final HyperledgerSubmitter submitter;
+    private final HyperledgerValueCodec valueCodec;
+    private final HyperledgerKeyCodec keyCodec;
+    private final HyperledgerReadCache readCache;
+    private final HyperledgerStorageLayout layout;
+    private final HyperledgerTracer tracer;
+    private final HyperledgerMetrics metrics;
+    // Fetches the pages of scans ahead of their consumers
+    private final ListeningExecutorService scanExecutor;
+    // Transactions submitted by this controller whose change has not been seen yet
+    private final Set<String> localTransactions = ConcurrentHashMap.newKeySet();
     private final String name;
+    private volatile EffectiveModelContext modelContext;
 
-    HyperledgerYangKV(String name, String prefix, Contract smartContract) {
+    HyperledgerYangKV(String name, String prefix, LedgerBackend ledger,
+            HyperledgerDataStoreConfigProperties properties, HyperledgerPersistencePolicy persistence) {
         this.name = name;
-        this.contract = smartContract;
-        //this.prefixByteArray = prefix.getBytes();
-        //this.prefixByteSequence = "DS";
+        this.layout = new HyperledgerStorageLayout(properties.getStorageGranularity(),
+                properties.getStorageGranularityRules(), persistence);
+        this.ledger = ledger;
+        this.metrics = new HyperledgerMetrics(name);
+        this.submitter = properties.getAsyncSubmit()
+                ? new HyperledgerSubmitter(name, ledger, properties.getMaxInFlightSubmissions(),
+                    properties.getGroupCommitMaxSize(), properties.getGroupCommitWindow(), localTransactions,
+                    metrics) : null;
+        this.valueCodec = new HyperledgerValueCodec(properties.getCompressionThreshold());
+        this.keyCodec = new HyperledgerKeyCodec(prefix);
+        this.readCache = properties.getReadCacheSize() > 0
+                ? new HyperledgerReadCache(properties.getReadCacheSize()) : null;
+        this.scanExecutor = Executors.newListeningCachedThreadPool("HyperledgerDB-scan-" + name, LOG);
+        this.tracer = new HyperledgerTracer(name, properties.getTraceSampleRate(), properties.getTraceLogPayloads());
+        metrics.gauge("peerFailovers", ledger::failovers);
+        if (submitter != null) {
+            metrics.gauge("inFlightSubmissions", submitter::inFlight);
+            metrics.gauge("queuedSubmissions", submitter::queued);
+        }
+        if (properties.getMetricsJmx()) {
+            metrics.register();
+        }
+    }
+
+    public void setModelContext(EffectiveModelContext modelContext) {
+        keyCodec.setModelContext(modelContext);
+        this.modelContext = modelContext;
     }
 
     @Override
     @PreDestroy
     public void close() {
+        if (submitter != null) {
+            submitter.close();
+        }
+        Executors.shutdownAndAwaitTermination(scanExecutor);
+        metrics.unregister();
+    }
+
+    /**
+     * Returns how the datastore is cut into ledger entries. Transactions take entries as laid out by it, and puts
+     * applied from the ledger are merged with the entries below them accordingly.
+     */
+    HyperledgerStorageLayout layout() {
+        return layout;
+    }
+
+    HyperledgerTracer tracer() {
+        return tracer;
+    }
+
+    HyperledgerMetrics metrics() {
+        return metrics;
     }
 
     public HyperledgerTxn newTransaction() {
-        return new HyperledgerTxn();
+        return new HyperledgerTxn(HyperledgerTracer.Trace.NOOP);
+    }
+
+    /**
+     * Returns a transaction recording what it encodes and sends in a trace.
+     */
+    HyperledgerTxn newTransaction(HyperledgerTracer.Trace trace) {
+        return new HyperledgerTxn(trace);
+    }
+
+    /**
+     * Returns a future which completes once everything submitted asynchronously so far is committed to the ledger.
+     */
+    public ListenableFuture<?> sync() {
+        return submitter != null ? submitter.sync() : Futures.immediateVoidFuture();
     }
 
     public void applyDelete(DataTreeModification dataTree, YangInstanceIdentifier key) throws HyperledgerException {
         dataTree.delete(key);
     }
 
-    public void applyPut(DataTreeModification dataTree, String key, String value) throws HyperledgerException {
+    /**
+     * Applies the entries of a {@code PutBatch} payload which belong to this datastore.
+     */
+    public void applyBatch(DataTreeModification dataTree, byte[] payload) throws HyperledgerException {
+        String prefix = keyCodec.encode(YangInstanceIdentifier.of());
+        List<String> keys = new ArrayList<>();
+        HyperledgerBatch.replay(payload, new HyperledgerBatch.Handler() {
+            @Override
+            public void put(String key, byte[] value) throws HyperledgerException {
+                if (key.startsWith(prefix)) {
+                    applyPut(dataTree, key, value);
+                    keys.add(key);
+                }
+            }
+
+            @Override
+            public void delete(String key) throws HyperledgerException {
+                if (key.startsWith(prefix)) {
+                    applyDelete(dataTree, keyCodec.decode(key));
+                    keys.add(key);
+                }
+            }
+        });
+        invalidateCached(keys);
+    }
+
+    /**
+     * Creates a listener applying {@code PutBatch} transactions committed by other controllers. The listener needs
+     * to be started.
+     */
+    public HyperledgerEventListener newEventListener(HyperledgerEventListener.EventSink sink,
+            HyperledgerEventCheckpointer checkpointer, int maxCoalescedEvents) {
+        return new HyperledgerEventListener(name, ledger, localTransactions::remove, sink, checkpointer,
+            maxCoalescedEvents);
+    }
+
+    /**
+     * Returns the current height of the channel, i.e. the number of the next block to be cut.
+     */
+    public long ledgerHeight() throws HyperledgerException {
+        return ledger.height();
+    }
+
+    /**
+     * Applies the {@code PutBatch} transactions committed in blocks {@code fromBlock} (inclusive) to {@code toBlock}
+     * (exclusive). If {@code afterTransactionId} is not empty, transactions of {@code fromBlock} up to and including
+     * that one are skipped.
+     *
+     * @return the number of transactions applied
+     */
+    public long replay(DataTreeModification dataTree, long fromBlock, String afterTransactionId, long toBlock)
+            throws HyperledgerException {
+        if (fromBlock >= toBlock) {
+            return 0;
+        }
+
+        long[] count = {0};
+        boolean[] skipping = {!afterTransactionId.isEmpty()};
+        ledger.readChanges(fromBlock, toBlock, change -> {
+            if (skipping[0]) {
+                if (change.getBlockNumber() == fromBlock) {
+                    skipping[0] = !afterTransactionId.equals(change.getTransactionId());
+                    return;
+                }
+                skipping[0] = false;
+            }
+            applyBatch(dataTree, change.getPayload());
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    public void applyPut(DataTreeModification dataTree, String key, byte[] value) throws HyperledgerException {
+        write(dataTree, keyCodec.decode(key), valueCodec.decode(value));
+    }
+
+    private void write(DataTreeModification dataTree, YangInstanceIdentifier path, NormalizedNode value) {
+        if (layout.isIncremental()) {
+            // The entry does not hold the entries below it, keep those already in the tree
+            Optional<NormalizedNode> existing = dataTree.readNode(path);
+            if (existing.isPresent()) {
+                value = layout.restore(path, value, existing.orElseThrow());
+            }
+        }
+        dataTree.write(path, value);
+    }
+
+    /**
+     * Streams every entry of this datastore from the ledger into a modification. Pages are fetched one after the
+     * other in key order, so that parents are written before their children, while the values of already fetched
+     * pages are decoded in parallel on {@code decodeExecutor}.
+     *
+     * @return the number of entries applied
+     */
+    public long load(DataTreeModification dataTree, int pageSize, Executor decodeExecutor)
+            throws HyperledgerException {
+        String start = keyCodec.encode(YangInstanceIdentifier.of());
+        String end = HyperledgerKeyCodec.prefixEnd(start);
+        Deque<ListenableFuture<List<Map.Entry<YangInstanceIdentifier, NormalizedNode>>>> pending = new ArrayDeque<>();
+        long count = 0;
+
+        HyperledgerScanPage page;
+        String bookmark = "";
+        do {
+            page = scanPage(start, end, pageSize, bookmark);
+            HyperledgerScanPage toDecode = page;
+            pending.add(Futures.submit(() -> decodePage(toDecode), decodeExecutor));
+            while (!pending.isEmpty() && pending.peek().isDone()) {
+                count += applyPage(dataTree, pending.poll());
+            }
+            bookmark = page.bookmark();
+        } while (!page.isLast());
+
+        while (!pending.isEmpty()) {
+            count += applyPage(dataTree, pending.poll());
+        }
+        return count;
+    }
+
+    HyperledgerScanPage scanPage(String startKey, String endKey, int pageSize, String bookmark)
+            throws HyperledgerException {
+        return ledger.scan(startKey, endKey, pageSize, bookmark);
+    }
+
+    private List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> decodePage(HyperledgerScanPage page)
+            throws HyperledgerException {
+        List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> decoded = new ArrayList<>(page.entries().size());
+        for (Map.Entry<String, byte[]> entry : page.entries()) {
+            decoded.add(Map.entry(keyCodec.decode(entry.getKey()), valueCodec.decode(entry.getValue())));
+        }
+        return decoded;
+    }
+
+    private int applyPage(DataTreeModification dataTree,
+            ListenableFuture<List<Map.Entry<YangInstanceIdentifier, NormalizedNode>>> future)
+            throws HyperledgerException {
+        final List<Map.Entry<YangInstanceIdentifier, NormalizedNode>> entries;
         try {
-            var path = YangInstanceIdentifier.of(NodeIdentifier.create(QName.create(key)));
-            dataTree.write(path, NormalizedNodeDataInput.newDataInput(
-                new DataInputStream(new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8)))).
-                readNormalizedNode());
-        } catch (IllegalArgumentException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            entries = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HyperledgerException("Interrupted while decoding ledger entries", e);
+        } catch (ExecutionException e) {
+            throw new HyperledgerException("Failed to decode ledger entries", e.getCause());
+        }
+        for (Map.Entry<YangInstanceIdentifier, NormalizedNode> entry : entries) {
+            write(dataTree, entry.getKey(), entry.getValue());
         }
+        return entries.size();
     }
 
-    public String read(String key) {
-        byte[] result = {0};
+    /**
+     * Iterates over the ledger entries of a path and all its descendants in key order, {@code pageSize} entries per
+     * {@code ScanEntries} call with up to {@code prefetch} pages fetched ahead. The scan has to be closed if it is not
+     * consumed to the end.
+     */
+    public HyperledgerScan scan(YangInstanceIdentifier prefix, int pageSize, int prefetch) {
+        String start = keyCodec.encode(prefix);
+        String end = HyperledgerKeyCodec.prefixEnd(start);
+        return new HyperledgerScan(bookmark -> {
+            HyperledgerScanPage page = scanPage(start, end, pageSize, bookmark);
+            return new HyperledgerScan.Page(decodePage(page), page.bookmark());
+        }, prefetch, scanExecutor);
+    }
+
+    /**
+     * Reads the subtree at a path from the ledger and assembles it as {@link #load} would: the entries above the path,
+     * which may hold it, followed by a scan of the path and its descendants.
+     */
+    public Optional<NormalizedNode> readSubtree(YangInstanceIdentifier path, int pageSize, int prefetch)
+            throws HyperledgerException {
+        EffectiveModelContext context = modelContext;
+        checkState(context != null, "No model context to assemble %s with", path);
+        DataTree tree = new InMemoryDataTreeFactory().create(DataTreeConfiguration.DEFAULT_OPERATIONAL, context);
+        DataTreeModification modification = tree.takeSnapshot().newModification();
+
+        List<PathArgument> arguments = path.getPathArguments();
+        for (int i = 1; i < arguments.size(); i++) {
+            YangInstanceIdentifier ancestor = YangInstanceIdentifier.of(arguments.subList(0, i));
+            Optional<NormalizedNode> value = read(ancestor);
+            if (value.isPresent()) {
+                write(modification, ancestor, value.orElseThrow());
+            }
+        }
+        try (HyperledgerScan scan = scan(path, pageSize, prefetch)) {
+            while (scan.hasNext()) {
+                Map.Entry<YangInstanceIdentifier, NormalizedNode> entry = scan.next();
+                write(modification, entry.getKey(), entry.getValue());
+            }
+        } catch (IllegalStateException e) {
+            if (e.getCause() instanceof HyperledgerException) {
+                throw (HyperledgerException) e.getCause();
+            }
+            throw new HyperledgerException("Scan of " + path + " failed", e);
+        }
+
+        modification.ready();
         try {
-            result = contract.submitTransaction("ReadEntry", key);
-        } catch (EndorseException e) {
-            e.printStackTrace();
-        } catch (SubmitException e) {
-            e.printStackTrace();
-        } catch (CommitStatusException e) {
-            e.printStackTrace();
-        } catch (CommitException e) {
-            e.printStackTrace();
+            tree.validate(modification);
+            tree.commit(tree.prepare(modification));
+        } catch (DataValidationFailedException e) {
+            throw new HyperledgerException("Ledger entries of " + path + " do not form a valid subtree", e);
         }
-        JsonObject jsonObject = JsonParser.parseString(new String(result, StandardCharsets.UTF_8)).getAsJsonObject();
-        return jsonObject.get(key).getAsString();
+        return tree.takeSnapshot().readNode(path);
     }
 
-    public class HyperledgerTxn {
+    /**
+     * Reads the ledger value stored for a path, using a query-only peer call and the read cache.
+     */
+    public Optional<NormalizedNode> read(YangInstanceIdentifier path) throws HyperledgerException {
+        String key = keyCodec.encode(path);
+        return readCache != null ? readCache.get(key, this::readEntry) : readEntry(key);
+    }
+
+    /**
+     * Returns hit and miss counts of the read cache, if it is enabled.
+     */
+    public Optional<CacheStats> readCacheStats() {
+        return readCache != null ? Optional.of(readCache.stats()) : Optional.empty();
+    }
+
+    private Optional<NormalizedNode> readEntry(String key) throws HyperledgerException {
+        byte[] value = ledger.read(key);
+        return value.length == 0 ? Optional.empty() : Optional.of(valueCodec.decode(value));
+    }
 
-        HyperledgerTxn() {
+    /**
+     * Commits a {@code PutBatch} payload read back from a local journal.
+     *
+     * @return the number of the block which committed the transaction
+     */
+    long ship(byte[] payload) throws HyperledgerException {
+        List<String> keys = new ArrayList<>();
+        HyperledgerBatch.replay(payload, new HyperledgerBatch.Handler() {
+            @Override
+            public void put(String key, byte[] value) {
+                keys.add(key);
+            }
 
+            @Override
+            public void delete(String key) {
+                keys.add(key);
+            }
+        });
+        HyperledgerTracer.Trace trace = tracer.start("ship");
+        trace.entries(keys.size(), payload.length);
+        try {
+            long blockNumber = commitPayload(payload, keys.size(), keys, trace);
+            trace.finish("committed");
+            return blockNumber;
+        } catch (HyperledgerException e) {
+            trace.finish("failed");
+            throw e;
         }
+    }
 
-        public void put(YangInstanceIdentifier path, NormalizedNode data) throws HyperledgerException {
+    private long commitPayload(byte[] payload, int size, List<String> keys, HyperledgerTracer.Trace trace)
+            throws HyperledgerException {
+        final LedgerBackend.CommitStatus status;
+        try {
+            LedgerBackend.Submitted submitted = ledger.submit(payload, new LedgerBackend.SubmitListener() {
+                @Override
+                public void proposed(String transactionId) {
+                    localTransactions.add(transactionId);
+                    trace.transaction(transactionId);
+                }
+
+                @Override
+                public void abandoned(String transactionId) {
+                    localTransactions.remove(transactionId);
+                }
+
+                @Override
+                public void phase(HyperledgerTracer.Phase phase, long elapsedNanos) {
+                    metrics.record(phase, elapsedNanos);
+                    trace.add(phase, elapsedNanos);
+                }
+            });
+            long start = System.nanoTime();
             try {
-                contract.submitTransaction("PutEntry", path.toString(), data.toString());
-            } catch (EndorseException | SubmitException | CommitStatusException | CommitException e) {
-                e.printStackTrace();
+                status = submitted.commitStatus();
+            } catch (HyperledgerException e) {
+                localTransactions.remove(submitted.transactionId());
+                throw e;
             }
-            LOG.info("{} TXN put: {} ➠ {}", name, path.toString(), data.toString());
+            metrics.record(HyperledgerTracer.Phase.COMMIT_STATUS, start, trace);
+        } catch (HyperledgerException e) {
+            metrics.failed();
+            throw new HyperledgerException("PutBatch of " + size + " entries failed", e);
+        }
+        if (!status.isSuccessful()) {
+            localTransactions.remove(status.getTransactionId());
+            metrics.failed();
+            throw new HyperledgerException("PutBatch transaction " + status.getTransactionId()
+                    + " failed to commit with code " + status.getCode());
+        }
+        invalidateCached(keys);
+        metrics.transaction(size, payload.length);
+        trace.block(status.getBlockNumber());
+        return status.getBlockNumber();
+    }
+
+    private void invalidateCached(List<String> keys) {
+        if (readCache != null) {
+            readCache.invalidate(keys);
+        }
+    }
+
+    public class HyperledgerTxn {
+
+        private final HyperledgerBatch batch = new HyperledgerBatch();
+        private final List<String> keys = new ArrayList<>();
+        private final HyperledgerTracer.Trace trace;
+        // Time spent encoding and size of what was encoded, recorded once the transaction is sent
+        private long encodeNanos;
+        private int encodedBytes;
+
+        HyperledgerTxn(HyperledgerTracer.Trace trace) {
+            this.trace = trace;
+        }
+
+        public void put(YangInstanceIdentifier path, NormalizedNode data) throws HyperledgerException {
+            long start = System.nanoTime();
+            String key = keyCodec.encode(path);
+            byte[] value = valueCodec.encode(data);
+            encodeNanos += System.nanoTime() - start;
+            encodedBytes += key.length() + value.length;
+            trace.put(path, data);
+            batch.put(key, value);
+            keys.add(key);
         }
 
         public void delete(YangInstanceIdentifier path) throws HyperledgerException {
-            try {
-                contract.submitTransaction("DeleteEntry", path.toString());
-            } catch (EndorseException | SubmitException | CommitStatusException | CommitException e) {
-                e.printStackTrace();
+            long start = System.nanoTime();
+            String key = keyCodec.encode(path);
+            encodeNanos += System.nanoTime() - start;
+            encodedBytes += key.length();
+            trace.delete(path);
+            batch.delete(key);
+            keys.add(key);
+        }
+
+        /**
+         * Sends all puts and deletes collected so far to the ledger as a single {@code PutBatch} invocation.
+         *
+         * @return the number of the block which committed the transaction, or -1 if there was nothing to send
+         */
+        public long commit() throws HyperledgerException {
+            if (batch.isEmpty()) {
+                return -1;
+            }
+            encoded();
+            return commitPayload(batch.toByteArray(), batch.size(), keys, trace);
+        }
+
+        /**
+         * Appends all puts and deletes collected so far to a local journal, to be shipped to the ledger later.
+         *
+         * @return the sequence number of the journal record, or -1 if there was nothing to append
+         */
+        public long append(HyperledgerJournal journal) throws IOException {
+            if (batch.isEmpty()) {
+                return -1;
             }
-            LOG.info("{} TXN delete: {}", name, path.toString());
+            encoded();
+            long start = System.nanoTime();
+            long sequence = journal.append(batch.toByteArray());
+            metrics.record(HyperledgerTracer.Phase.SUBMIT, start, trace);
+            invalidateCached(keys);
+            return sequence;
+        }
+
+        /**
+         * Queues all puts and deletes collected so far as a single pipelined {@code PutBatch} invocation, without
+         * waiting for it to be endorsed or committed.
+         *
+         * @return a future completing with the ledger block number once the transaction is committed
+         */
+        public ListenableFuture<Long> submit() {
+            checkState(submitter != null, "Asynchronous submission is not enabled");
+            if (batch.isEmpty()) {
+                return Futures.immediateFuture(null);
+            }
+            // Invalidate now for the local commit, and again once the ledger has caught up in case a read
+            // re-populated the cache in the meantime
+            invalidateCached(keys);
+            encoded();
+            ListenableFuture<Long> future = submitter.submit(batch.toByteArray(), batch.size(), trace);
+            future.addListener(() -> invalidateCached(keys), MoreExecutors.directExecutor());
+            return future;
+        }
+
+        private void encoded() {
+            metrics.record(HyperledgerTracer.Phase.ENCODE, encodeNanos);
+            trace.add(HyperledgerTracer.Phase.ENCODE, encodeNanos);
+            trace.entries(batch.size(), encodedBytes);
         }
     }
 }
@@ -0,0 +1,196 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+/**
+ * The ledger a {@link HyperledgerDataStore} persists to: a key-value world state which is only updated by
+ * {@code PutBatch} transactions, each carrying a {@link HyperledgerBatch} of puts and deletes. Transactions are
+ * ordered into numbered blocks, and every valid one becomes a {@link Change} of the change stream, from which other
+ * datastores sharing the ledger follow it.
+ *
+ * <p>{@link FabricLedgerBackend} runs this on a Fabric channel, {@link LogLedgerBackend} on an append-only log on
+ * local disk for single-controller deployments, and {@link SimulatedLedgerBackend} emulates a channel in memory for
+ * offline load and latency testing.
+ */
+@SuppressWarnings("all")
+public interface LedgerBackend extends AutoCloseable {
+
+    /**
+     * Follows a {@code PutBatch} transaction on its way to the orderer.
+     */
+    interface SubmitListener {
+        /**
+         * Called with the id of a transaction before it is endorsed.
+         */
+        void proposed(String transactionId);
+
+        /**
+         * Called if a proposed transaction did not reach the orderer. It may be proposed again under another id.
+         */
+        void abandoned(String transactionId);
+
+        /**
+         * Called with the time taken by the {@code ENDORSE} and {@code SUBMIT} phases.
+         */
+        void phase(HyperledgerTracer.Phase phase, long elapsedNanos);
+    }
+
+    /**
+     * A transaction which has been sent to the orderer.
+     */
+    interface Submitted {
+        String transactionId();
+
+        /**
+         * Waits until the transaction is validated in a block.
+         *
+         * @throws HyperledgerException if the status could not be obtained, in which case the transaction may still
+         *         get committed
+         */
+        CommitStatus commitStatus() throws HyperledgerException;
+    }
+
+    /**
+     * The outcome of validating a transaction.
+     */
+    final class CommitStatus {
+        private final String transactionId;
+        private final long blockNumber;
+        private final boolean successful;
+        private final String code;
+
+        public CommitStatus(String transactionId, long blockNumber, boolean successful, String code) {
+            this.transactionId = transactionId;
+            this.blockNumber = blockNumber;
+            this.successful = successful;
+            this.code = code;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public long getBlockNumber() {
+            return blockNumber;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        /**
+         * Returns the validation code, such as {@code VALID} or {@code MVCC_READ_CONFLICT}.
+         */
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * A valid {@code PutBatch} transaction, as found in a block.
+     */
+    final class Change {
+        private final long blockNumber;
+        private final String transactionId;
+        private final byte[] payload;
+
+        public Change(long blockNumber, String transactionId, byte[] payload) {
+            this.blockNumber = blockNumber;
+            this.transactionId = transactionId;
+            this.payload = payload;
+        }
+
+        public long getBlockNumber() {
+            return blockNumber;
+        }
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        /**
+         * Returns the {@link HyperledgerBatch} the transaction was submitted with.
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * A position in the change stream: the changes of blocks before {@link #getBlockNumber()}, and those of that block
+     * up to and including {@link #getTransactionId()}, have been processed. Without a block number the stream starts
+     * at the current height.
+     */
+    interface Checkpoint {
+        OptionalLong getBlockNumber();
+
+        Optional<String> getTransactionId();
+    }
+
+    /**
+     * An endless iterator over the changes following a checkpoint. {@link #hasNext()} waits for new blocks, and
+     * returns false once the stream or the ledger is closed.
+     */
+    interface ChangeStream extends Iterator<Change>, AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @FunctionalInterface
+    interface ChangeHandler {
+        void onChange(Change change) throws HyperledgerException;
+    }
+
+    /**
+     * Returns what the ledger is, for messages.
+     */
+    String name();
+
+    /**
+     * Returns the current height of the ledger, i.e. the number of the next block to be cut.
+     */
+    long height() throws HyperledgerException;
+
+    /**
+     * Returns the value stored for a key, or an empty array if there is none.
+     */
+    byte[] read(String key) throws HyperledgerException;
+
+    /**
+     * Returns up to {@code pageSize} entries with keys from {@code startKey} (inclusive) to {@code endKey}
+     * (exclusive), continuing from the bookmark of the previous page if {@code bookmark} is not empty.
+     */
+    HyperledgerScanPage scan(String startKey, String endKey, int pageSize, String bookmark)
+            throws HyperledgerException;
+
+    /**
+     * Endorses a {@code PutBatch} transaction and sends it to the orderer, without waiting for it to be committed.
+     *
+     * @param payload an encoded {@link HyperledgerBatch}
+     */
+    Submitted submit(byte[] payload, SubmitListener listener) throws HyperledgerException;
+
+    /**
+     * Hands the changes of blocks {@code fromBlock} (inclusive) to {@code toBlock} (exclusive) to {@code handler}, in
+     * ledger order.
+     */
+    void readChanges(long fromBlock, long toBlock, ChangeHandler handler) throws HyperledgerException;
+
+    /**
+     * Returns the stream of changes following {@code checkpoint}. The stream may fail with a runtime exception if the
+     * ledger becomes unreachable, after which it is opened again from the last processed change.
+     */
+    ChangeStream changes(Checkpoint checkpoint);
+
+    /**
+     * Returns how many calls were retried on another peer so far.
+     */
+    default long failovers() {
+        return 0;
+    }
+
+    @Override
+    void close();
+}
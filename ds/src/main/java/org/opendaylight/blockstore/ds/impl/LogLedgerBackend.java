@@ -0,0 +1,545 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A ledger kept in an append-only log on local disk, for a single controller which does not need consensus, such as
+ * an edge deployment. There is no endorsement and writes are blind, so every well-formed transaction is valid.
+ *
+ * <p>Submitted transactions are queued to a writer thread which appends everything queued so far as one block to a
+ * {@link HyperledgerJournal}, forces it to disk and only then applies it to the in-memory world state, releases the
+ * commit statuses and wakes the change streams. A burst of transactions therefore costs a single {@code fsync}. The
+ * block number is the sequence number of its journal record, block 0 being an empty genesis block as on a channel.
+ *
+ * <p>The world state is checkpointed to a file every {@link LogLedgerProperties#getCheckpointInterval()} blocks and
+ * on close. On start it is loaded from the checkpoint and the blocks appended after it are replayed from the log.
+ */
+@SuppressWarnings("all")
+public final class LogLedgerBackend implements LedgerBackend {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogLedgerBackend.class);
+    private static final int STATE_MAGIC = 0x484C5753; // "HLWS"
+    private static final long POLL_MILLIS = 100;
+    private static final int READ_BATCH_RECORDS = 64;
+    private static final int READ_BATCH_BYTES = 4 * 1024 * 1024;
+
+    private static final class Tx {
+        final String id;
+        final byte[] payload;
+        // Keys written by the transaction, with null values for deletes
+        final Map<String, byte[]> writes;
+        final SettableFuture<CommitStatus> status = SettableFuture.create();
+
+        Tx(String id, byte[] payload, Map<String, byte[]> writes) {
+            this.id = id;
+            this.payload = payload;
+            this.writes = writes;
+        }
+    }
+
+    private final String name;
+    private final LogLedgerProperties properties;
+    private final Path stateFile;
+    private final Path tmpStateFile;
+    private final HyperledgerJournal log;
+    private final BlockingQueue<Tx> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService writer;
+
+    // Guarded by this
+    private final NavigableMap<String, byte[]> state = new TreeMap<>();
+    private long committedBlock;
+    private volatile boolean closed;
+
+    // Confined to the writer thread, or to the constructor and close
+    private long checkpointBlock;
+
+    public LogLedgerBackend(String name, LogLedgerProperties properties) throws IOException {
+        this.name = name;
+        this.properties = properties;
+        Path directory = Paths.get(properties.getDirectory());
+        this.stateFile = directory.resolve(name + ".state");
+        this.tmpStateFile = directory.resolve(name + ".state.tmp");
+        this.log = new HyperledgerJournal(directory, name, properties.getSegmentSize());
+
+        try {
+            recover();
+        } catch (IOException | HyperledgerException | RuntimeException e) {
+            log.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Failed to recover " + name(), e);
+        }
+        this.writer = Executors.newListeningSingleThreadExecutor("HyperledgerDB-logWriter-" + name, LOG);
+        writer.execute(this::writeBlocks);
+    }
+
+    @Override
+    public String name() {
+        return "log ledger " + name;
+    }
+
+    @Override
+    public synchronized long height() {
+        return committedBlock + 1;
+    }
+
+    @Override
+    public synchronized byte[] read(String key) {
+        byte[] value = state.get(key);
+        return value == null ? new byte[0] : value;
+    }
+
+    @Override
+    public synchronized HyperledgerScanPage scan(String startKey, String endKey, int pageSize, String bookmark) {
+        Iterator<Map.Entry<String, byte[]>> entries = state.subMap(bookmark.isEmpty() ? startKey : bookmark, true,
+                endKey, false).entrySet().iterator();
+        List<Map.Entry<String, byte[]>> page = new ArrayList<>();
+        while (page.size() < pageSize && entries.hasNext()) {
+            Map.Entry<String, byte[]> entry = entries.next();
+            page.add(Map.entry(entry.getKey(), entry.getValue()));
+        }
+        return new HyperledgerScanPage(page, entries.hasNext() ? entries.next().getKey() : "");
+    }
+
+    @Override
+    public Submitted submit(byte[] payload, SubmitListener listener) throws HyperledgerException {
+        String transactionId = UUID.randomUUID().toString();
+        listener.proposed(transactionId);
+        long start = System.nanoTime();
+        final Tx tx;
+        try {
+            // Checking the batch is all there is to endorse
+            tx = new Tx(transactionId, payload, writes(payload));
+        } catch (HyperledgerException e) {
+            listener.abandoned(transactionId);
+            throw e;
+        }
+        listener.phase(HyperledgerTracer.Phase.ENDORSE, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        if (closed) {
+            listener.abandoned(transactionId);
+            throw new HyperledgerException(name() + " is closed");
+        }
+        queue.add(tx);
+        if (closed && queue.remove(tx)) {
+            // Missed by both the writer and close
+            listener.abandoned(transactionId);
+            throw new HyperledgerException(name() + " is closed");
+        }
+        listener.phase(HyperledgerTracer.Phase.SUBMIT, System.nanoTime() - start);
+
+        return new Submitted() {
+            @Override
+            public String transactionId() {
+                return transactionId;
+            }
+
+            @Override
+            public CommitStatus commitStatus() throws HyperledgerException {
+                try {
+                    return tx.status.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HyperledgerException("Interrupted while waiting for transaction " + transactionId, e);
+                } catch (ExecutionException e) {
+                    throw new HyperledgerException("Commit status of transaction " + transactionId
+                            + " not available", e.getCause());
+                }
+            }
+        };
+    }
+
+    @Override
+    public void readChanges(long fromBlock, long toBlock, ChangeHandler handler) throws HyperledgerException {
+        if (fromBlock >= toBlock) {
+            return;
+        }
+        checkRetained(fromBlock);
+        HyperledgerJournal.Reader reader = log.newReader();
+        long lastBlock = Math.min(toBlock - 1, committedBlock());
+        long nextBlock = log.shippedSequence() + 1;
+        while (nextBlock <= lastBlock) {
+            List<HyperledgerJournal.Record> records = reader.next(
+                    (int) Math.min(READ_BATCH_RECORDS, lastBlock - nextBlock + 1), READ_BATCH_BYTES);
+            if (records.isEmpty()) {
+                break;
+            }
+            for (HyperledgerJournal.Record record : records) {
+                if (record.sequence() >= fromBlock) {
+                    for (Change change : decode(record)) {
+                        handler.onChange(change);
+                    }
+                }
+                nextBlock = record.sequence() + 1;
+            }
+        }
+    }
+
+    @Override
+    public ChangeStream changes(Checkpoint checkpoint) {
+        long fromBlock = checkpoint.getBlockNumber().orElse(height());
+        try {
+            checkRetained(fromBlock);
+        } catch (HyperledgerException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        return new LogChangeStream(fromBlock, checkpoint.getTransactionId().orElse(""));
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        // The writer commits whatever was queued before closed was set
+        Executors.shutdownAndAwaitTermination(writer);
+        HyperledgerException cause = new HyperledgerException(name() + " closed before commit");
+        for (Tx tx = queue.poll(); tx != null; tx = queue.poll()) {
+            tx.status.setException(cause);
+        }
+        if (committedBlock() > checkpointBlock) {
+            checkpoint();
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            LOG.warn("{} failed to close its log", name(), e);
+        }
+    }
+
+    private void writeBlocks() {
+        List<Tx> block = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Tx first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                block.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            int bytes = block.get(0).payload.length;
+            Tx next;
+            while (bytes < properties.getMaxBlockBytes() && (next = queue.poll()) != null) {
+                block.add(next);
+                bytes += next.payload.length;
+            }
+            commit(block);
+            block.clear();
+        }
+    }
+
+    private void commit(List<Tx> block) {
+        final long blockNumber;
+        try {
+            blockNumber = log.append(encode(block));
+            log.sync(blockNumber);
+        } catch (IOException e) {
+            LOG.error("{} failed to append a block of {} transactions", name(), block.size(), e);
+            HyperledgerException cause = new HyperledgerException("Failed to append to " + name(), e);
+            block.forEach(tx -> tx.status.setException(cause));
+            return;
+        }
+
+        synchronized (this) {
+            for (Tx tx : block) {
+                apply(tx.writes);
+            }
+            committedBlock = blockNumber;
+            notifyAll();
+        }
+        for (Tx tx : block) {
+            tx.status.set(new CommitStatus(tx.id, blockNumber, true, "VALID"));
+        }
+
+        if (blockNumber - checkpointBlock >= properties.getCheckpointInterval()) {
+            checkpoint();
+        }
+    }
+
+    private synchronized long committedBlock() {
+        return committedBlock;
+    }
+
+    private void checkRetained(long fromBlock) throws HyperledgerException {
+        long firstRetained = log.shippedSequence() + 1;
+        // Block 0 is the empty genesis block
+        if (Math.max(fromBlock, 1) < firstRetained) {
+            throw new HyperledgerException(name() + " no longer retains block " + fromBlock + ", its log starts at "
+                    + firstRetained);
+        }
+    }
+
+    // Applies the writes of a transaction to the world state, with the lock held
+    private void apply(Map<String, byte[]> writes) {
+        writes.forEach((key, value) -> {
+            if (value != null) {
+                state.put(key, value);
+            } else {
+                state.remove(key);
+            }
+        });
+    }
+
+    private static Map<String, byte[]> writes(byte[] payload) throws HyperledgerException {
+        Map<String, byte[]> writes = new LinkedHashMap<>();
+        HyperledgerBatch.replay(payload, new HyperledgerBatch.Handler() {
+            @Override
+            public void put(String key, byte[] value) {
+                writes.put(key, value);
+            }
+
+            @Override
+            public void delete(String key) {
+                writes.put(key, null);
+            }
+        });
+        return writes;
+    }
+
+    // A block record is the number of transactions followed by the id and payload of each
+    private static byte[] encode(List<Tx> block) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HyperledgerBatch.writeVarInt(out, block.size());
+        for (Tx tx : block) {
+            HyperledgerBatch.writeBytes(out, tx.id.getBytes(StandardCharsets.UTF_8));
+            HyperledgerBatch.writeBytes(out, tx.payload);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Change> decode(HyperledgerJournal.Record record) throws HyperledgerException {
+        byte[] bytes = record.payload();
+        int[] offset = {0};
+        try {
+            int count = HyperledgerBatch.readVarInt(bytes, offset);
+            List<Change> changes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String transactionId = new String(HyperledgerBatch.readBytes(bytes, offset), StandardCharsets.UTF_8);
+                changes.add(new Change(record.sequence(), transactionId, HyperledgerBatch.readBytes(bytes, offset)));
+            }
+            return changes;
+        } catch (IndexOutOfBoundsException e) {
+            throw new HyperledgerException("Truncated block " + record.sequence(), e);
+        }
+    }
+
+    private void recover() throws IOException, HyperledgerException {
+        if (Files.exists(stateFile)) {
+            loadState();
+        }
+        long firstRetained = log.shippedSequence() + 1;
+        if (checkpointBlock + 1 < firstRetained) {
+            throw new IOException(name() + " world state checkpoint at block " + checkpointBlock
+                    + " is older than its log, which starts at block " + firstRetained);
+        }
+        if (log.lastSequence() < checkpointBlock) {
+            throw new IOException(name() + " log ends at block " + log.lastSequence()
+                    + ", before its world state checkpoint at block " + checkpointBlock);
+        }
+
+        HyperledgerJournal.Reader reader = log.newReader();
+        long replayed = 0;
+        for (List<HyperledgerJournal.Record> records = reader.next(READ_BATCH_RECORDS, READ_BATCH_BYTES);
+                !records.isEmpty(); records = reader.next(READ_BATCH_RECORDS, READ_BATCH_BYTES)) {
+            for (HyperledgerJournal.Record record : records) {
+                if (record.sequence() > checkpointBlock) {
+                    for (Change change : decode(record)) {
+                        apply(writes(change.getPayload()));
+                    }
+                    replayed++;
+                }
+            }
+        }
+        committedBlock = log.lastSequence();
+        LOG.info("{} recovered {} keys at height {}, replayed {} blocks after its checkpoint", name(), state.size(),
+                committedBlock + 1, replayed);
+    }
+
+    private void loadState() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile),
+                64 * 1024))) {
+            if (in.readInt() != STATE_MAGIC) {
+                throw new IOException("Not a world state checkpoint: " + stateFile);
+            }
+            checkpointBlock = in.readLong();
+            for (int count = in.readInt(); count > 0; count--) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                state.put(new String(key, StandardCharsets.UTF_8), value);
+            }
+        }
+    }
+
+    private void checkpoint() {
+        final long blockNumber;
+        final List<Map.Entry<String, byte[]>> entries;
+        synchronized (this) {
+            blockNumber = committedBlock;
+            // Values are never modified in place, copying the entries is enough for a consistent view
+            entries = new ArrayList<>(state.size());
+            state.forEach((key, value) -> entries.add(Map.entry(key, value)));
+        }
+
+        try (FileChannel channel = FileChannel.open(tmpStateFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    64 * 1024));
+            out.writeInt(STATE_MAGIC);
+            out.writeLong(blockNumber);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, byte[]> entry : entries) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            LOG.warn("{} failed to checkpoint its world state at block {}", name(), blockNumber, e);
+            return;
+        }
+
+        try {
+            Files.move(tmpStateFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointBlock = blockNumber;
+            long retained = properties.getRetainedBlocks();
+            if (retained > 0 && blockNumber > retained) {
+                log.markShipped(blockNumber - retained);
+            }
+        } catch (IOException e) {
+            LOG.warn("{} failed to checkpoint its world state at block {}", name(), blockNumber, e);
+            return;
+        }
+        LOG.debug("{} checkpointed {} keys at block {}", name(), entries.size(), blockNumber);
+    }
+
+    private final class LogChangeStream implements ChangeStream {
+        private final HyperledgerJournal.Reader reader = log.newReader();
+        private final Deque<Change> buffered = new ArrayDeque<>();
+        // The first block whose changes are to be delivered
+        private final long fromBlock;
+        // The next block to be read
+        private long nextBlock = log.shippedSequence() + 1;
+        // Changes of the first block up to and including this transaction have been processed already
+        private String skipThrough;
+        private boolean streamClosed;
+
+        LogChangeStream(long fromBlock, String skipThrough) {
+            this.fromBlock = fromBlock;
+            this.skipThrough = skipThrough;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (buffered.isEmpty()) {
+                final long lastBlock;
+                synchronized (LogLedgerBackend.this) {
+                    while (committedBlock < Math.max(nextBlock, fromBlock) && !closed && !streamClosed) {
+                        try {
+                            LogLedgerBackend.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return false;
+                        }
+                    }
+                    if (closed || streamClosed) {
+                        return false;
+                    }
+                    lastBlock = committedBlock;
+                }
+                read(lastBlock);
+            }
+            return true;
+        }
+
+        // Buffers the changes of the blocks up to lastBlock, which are all durable
+        private void read(long lastBlock) {
+            while (nextBlock <= lastBlock) {
+                List<HyperledgerJournal.Record> records = reader.next(
+                        (int) Math.min(READ_BATCH_RECORDS, lastBlock - nextBlock + 1), READ_BATCH_BYTES);
+                if (records.isEmpty()) {
+                    return;
+                }
+                for (HyperledgerJournal.Record record : records) {
+                    nextBlock = record.sequence() + 1;
+                    if (record.sequence() < fromBlock) {
+                        continue;
+                    }
+                    final List<Change> changes;
+                    try {
+                        changes = decode(record);
+                    } catch (HyperledgerException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                    }
+                    for (Change change : changes) {
+                        if (skipThrough.isEmpty()) {
+                            buffered.add(change);
+                        } else if (skipThrough.equals(change.getTransactionId())) {
+                            skipThrough = "";
+                        }
+                    }
+                    skipThrough = "";
+                }
+            }
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return buffered.removeFirst();
+        }
+
+        @Override
+        public void close() {
+            synchronized (LogLedgerBackend.this) {
+                streamClosed = true;
+                LogLedgerBackend.this.notifyAll();
+            }
+        }
+    }
+}
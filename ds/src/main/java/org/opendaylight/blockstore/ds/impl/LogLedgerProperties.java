@@ -0,0 +1,71 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import javax.annotation.processing.Generated;
+import org.eclipse.jdt.annotation.NonNull;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * Holds where and how a {@link LogLedgerBackend} keeps its log and world state.
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PRIVATE, allowedClasspathAnnotations = {
+    SuppressWarnings.class, Generated.class
+})
+@SuppressWarnings("all")
+public abstract class LogLedgerProperties {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_MAX_BLOCK_BYTES = 4 * 1024 * 1024;
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 10000;
+
+    /**
+     * Returns a new {@link LogLedgerPropertiesBuilder}.
+     *
+     * @return a new {@link LogLedgerPropertiesBuilder}.
+     */
+    public static @NonNull LogLedgerPropertiesBuilder builder() {
+        return new LogLedgerPropertiesBuilder();
+    }
+
+    /**
+     * Returns the directory of the log segments and of the world state checkpoint.
+     */
+    public abstract String getDirectory();
+
+    /**
+     * Returns the size in bytes of a log segment file.
+     */
+    @Value.Default
+    public int getSegmentSize() {
+        return DEFAULT_SEGMENT_SIZE;
+    }
+
+    /**
+     * Returns the payload size in bytes above which the writer stops adding queued transactions to a block. A single
+     * larger transaction still makes a block of its own.
+     */
+    @Value.Default
+    public int getMaxBlockBytes() {
+        return DEFAULT_MAX_BLOCK_BYTES;
+    }
+
+    /**
+     * Returns the number of blocks after which the world state is checkpointed, bounding how much of the log is
+     * replayed on the next start. The world state is also checkpointed on close.
+     */
+    @Value.Default
+    public long getCheckpointInterval() {
+        return DEFAULT_CHECKPOINT_INTERVAL;
+    }
+
+    /**
+     * Returns how many blocks before the last world state checkpoint are kept for replays and change streams. Older
+     * segments are deleted. 0 keeps the whole history. It should cover the snapshot interval of the datastores, which
+     * replay the blocks following their last snapshot when they start.
+     */
+    @Value.Default
+    public long getRetainedBlocks() {
+        return 0;
+    }
+}
@@ -0,0 +1,393 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.opendaylight.infrautils.utils.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-memory ledger behaving like a Fabric channel which runs the {@code blockstore} chaincode, for load and latency
+ * testing without a network. Several datastores, or several controllers, may share one instance.
+ *
+ * <p>Endorsing a proposal takes the endorse latency on the calling thread, like the blocking call to a peer does, and
+ * simulates {@code PutBatch} against the current world state. Endorsed transactions reach the block cutter in
+ * submission order after the order latency. A block is cut once it holds {@code blockSize} transactions, or once its
+ * first transaction has waited {@code blockTimeout}. Blocks are validated and committed in order, the commit latency
+ * after being cut: the writes of their valid transactions are applied to the world state, and the commit status and
+ * the changes of the block are released together. Every block is kept in memory so that
+ * change streams and replays may start anywhere.
+ */
+@SuppressWarnings("all")
+public final class SimulatedLedgerBackend implements LedgerBackend {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimulatedLedgerBackend.class);
+
+    private static final class Versioned {
+        final byte[] value;
+        final long version;
+
+        Versioned(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    private static final class Tx {
+        final String id;
+        final byte[] payload;
+        // Keys written by the transaction, with null values for deletes
+        final Map<String, byte[]> writes;
+        // Versions of the keys read at endorsement, 0 for absent keys
+        final Map<String, Long> reads;
+        final SettableFuture<CommitStatus> status = SettableFuture.create();
+
+        Tx(String id, byte[] payload, Map<String, byte[]> writes, Map<String, Long> reads) {
+            this.id = id;
+            this.payload = payload;
+            this.writes = writes;
+            this.reads = reads;
+        }
+    }
+
+    private final String name;
+    private final SimulatedLedgerProperties properties;
+    private final Random random;
+    // Cuts and commits blocks, one task at a time
+    private final ListeningScheduledExecutorService orderer;
+    private final AtomicLong transactionIds = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    // Transactions sent to the orderer and not committed yet
+    private final Set<Tx> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private final NavigableMap<String, Versioned> state = new TreeMap<>();
+    // The changes of each committed block, starting with an empty genesis block
+    private final List<List<Change>> blocks = new ArrayList<>(List.of(List.of()));
+    private long version;
+    private long lastArrivalNanos;
+    private boolean closed;
+
+    // Confined to the orderer thread
+    private final List<Tx> pendingBlock = new ArrayList<>();
+    private ScheduledFuture<?> blockTimer;
+    private long lastCommitNanos;
+
+    public SimulatedLedgerBackend(String name, SimulatedLedgerProperties properties) {
+        this.name = name;
+        this.properties = properties;
+        this.random = new Random(properties.getSeed());
+        this.orderer = Executors.newListeningSingleThreadScheduledExecutor("HyperledgerDB-simulatedOrderer-" + name,
+                LOG);
+    }
+
+    @Override
+    public String name() {
+        return "simulated ledger " + name;
+    }
+
+    @Override
+    public synchronized long height() {
+        return blocks.size();
+    }
+
+    @Override
+    public synchronized byte[] read(String key) {
+        Versioned entry = state.get(key);
+        return entry == null ? new byte[0] : entry.value;
+    }
+
+    @Override
+    public synchronized HyperledgerScanPage scan(String startKey, String endKey, int pageSize, String bookmark) {
+        Iterator<Map.Entry<String, Versioned>> entries = state.subMap(bookmark.isEmpty() ? startKey : bookmark, true,
+                endKey, false).entrySet().iterator();
+        List<Map.Entry<String, byte[]>> page = new ArrayList<>();
+        while (page.size() < pageSize && entries.hasNext()) {
+            Map.Entry<String, Versioned> entry = entries.next();
+            page.add(Map.entry(entry.getKey(), entry.getValue().value));
+        }
+        return new HyperledgerScanPage(page, entries.hasNext() ? entries.next().getKey() : "");
+    }
+
+    @Override
+    public Submitted submit(byte[] payload, SubmitListener listener) throws HyperledgerException {
+        String transactionId = String.format("sim-%016x", transactionIds.incrementAndGet());
+        listener.proposed(transactionId);
+        long start = System.nanoTime();
+        pause(latency(properties.getEndorseLatency()));
+        final Tx tx;
+        try {
+            tx = endorse(transactionId, payload);
+        } catch (HyperledgerException e) {
+            listener.abandoned(transactionId);
+            throw e;
+        }
+        listener.phase(HyperledgerTracer.Phase.ENDORSE, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        inFlight.add(tx);
+        try {
+            orderer.schedule(() -> order(tx), arrivalDelay(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(tx);
+            listener.abandoned(transactionId);
+            throw new HyperledgerException(name() + " is closed", e);
+        }
+        listener.phase(HyperledgerTracer.Phase.SUBMIT, System.nanoTime() - start);
+
+        return new Submitted() {
+            @Override
+            public String transactionId() {
+                return transactionId;
+            }
+
+            @Override
+            public CommitStatus commitStatus() throws HyperledgerException {
+                try {
+                    return tx.status.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HyperledgerException("Interrupted while waiting for transaction " + transactionId, e);
+                } catch (ExecutionException e) {
+                    throw new HyperledgerException("Commit status of transaction " + transactionId
+                            + " not available", e.getCause());
+                }
+            }
+        };
+    }
+
+    // Runs PutBatch against the current world state, recording what it reads and writes
+    private synchronized Tx endorse(String transactionId, byte[] payload) throws HyperledgerException {
+        if (closed) {
+            throw new HyperledgerException(name() + " is closed");
+        }
+        Map<String, byte[]> writes = new HashMap<>();
+        HyperledgerBatch.replay(payload, new HyperledgerBatch.Handler() {
+            @Override
+            public void put(String key, byte[] value) {
+                writes.put(key, value);
+            }
+
+            @Override
+            public void delete(String key) {
+                writes.put(key, null);
+            }
+        });
+        Map<String, Long> reads = new HashMap<>();
+        if (properties.getMvccConflicts()) {
+            for (String key : writes.keySet()) {
+                Versioned entry = state.get(key);
+                reads.put(key, entry == null ? 0 : entry.version);
+            }
+        }
+        return new Tx(transactionId, payload, writes, reads);
+    }
+
+    // Transactions reach the block cutter in the order they were submitted
+    private synchronized long arrivalDelay() {
+        long now = System.nanoTime();
+        long arrival = Math.max(lastArrivalNanos, now + latency(properties.getOrderLatency()));
+        lastArrivalNanos = arrival;
+        return arrival - now;
+    }
+
+    private void order(Tx tx) {
+        pendingBlock.add(tx);
+        if (pendingBlock.size() >= properties.getBlockSize() || properties.getBlockTimeout() <= 0) {
+            cut();
+        } else if (pendingBlock.size() == 1) {
+            blockTimer = orderer.schedule(this::cut, properties.getBlockTimeout(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cut() {
+        if (blockTimer != null) {
+            blockTimer.cancel(false);
+            blockTimer = null;
+        }
+        if (pendingBlock.isEmpty()) {
+            return;
+        }
+        List<Tx> block = List.copyOf(pendingBlock);
+        pendingBlock.clear();
+        // Blocks are committed in the order they were cut
+        long now = System.nanoTime();
+        long commitAt = Math.max(lastCommitNanos, now + latency(properties.getCommitLatency()));
+        lastCommitNanos = commitAt;
+        orderer.schedule(() -> commit(block), commitAt - now, TimeUnit.NANOSECONDS);
+    }
+
+    private void commit(List<Tx> block) {
+        List<CommitStatus> statuses = new ArrayList<>(block.size());
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long blockNumber = blocks.size();
+            List<Change> changes = new ArrayList<>();
+            for (Tx tx : block) {
+                boolean valid = tx.reads.entrySet().stream().allMatch(read -> {
+                    Versioned entry = state.get(read.getKey());
+                    return (entry == null ? 0 : entry.version) == read.getValue();
+                });
+                if (valid) {
+                    version++;
+                    tx.writes.forEach((key, value) -> {
+                        if (value != null) {
+                            state.put(key, new Versioned(value, version));
+                        } else {
+                            state.remove(key);
+                        }
+                    });
+                    changes.add(new Change(blockNumber, tx.id, tx.payload));
+                } else {
+                    conflicts.incrementAndGet();
+                }
+                statuses.add(new CommitStatus(tx.id, blockNumber, valid, valid ? "VALID" : "MVCC_READ_CONFLICT"));
+            }
+            blocks.add(changes);
+            notifyAll();
+        }
+        for (int i = 0; i < block.size(); i++) {
+            Tx tx = block.get(i);
+            inFlight.remove(tx);
+            tx.status.set(statuses.get(i));
+        }
+    }
+
+    @Override
+    public void readChanges(long fromBlock, long toBlock, ChangeHandler handler) throws HyperledgerException {
+        final List<List<Change>> range;
+        synchronized (this) {
+            int size = blocks.size();
+            range = List.copyOf(blocks.subList((int) Math.min(fromBlock, size), (int) Math.min(toBlock, size)));
+        }
+        for (List<Change> changes : range) {
+            for (Change change : changes) {
+                handler.onChange(change);
+            }
+        }
+    }
+
+    @Override
+    public synchronized ChangeStream changes(Checkpoint checkpoint) {
+        return new SimulatedChangeStream(checkpoint.getBlockNumber().orElse(blocks.size()),
+                checkpoint.getTransactionId().orElse(""));
+    }
+
+    /**
+     * Returns how many transactions failed validation with {@code MVCC_READ_CONFLICT} so far.
+     */
+    public long conflicts() {
+        return conflicts.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        Executors.shutdownAndAwaitTermination(orderer);
+        HyperledgerException cause = new HyperledgerException(name() + " closed before commit");
+        inFlight.forEach(tx -> tx.status.setException(cause));
+        inFlight.clear();
+    }
+
+    // Adds an exponentially distributed delay with a mean of the configured fraction of the latency
+    private long latency(long micros) {
+        double jitter = properties.getLatencyJitter();
+        double extra = jitter > 0 ? -Math.log(1 - random.nextDouble()) * jitter : 0;
+        return (long) (TimeUnit.MICROSECONDS.toNanos(micros) * (1 + extra));
+    }
+
+    private static void pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private final class SimulatedChangeStream implements ChangeStream {
+        private long blockNumber;
+        private int index;
+        // Changes of the first block up to and including this transaction have been processed already
+        private String skipThrough;
+        private Change next;
+        private boolean streamClosed;
+
+        SimulatedChangeStream(long blockNumber, String skipThrough) {
+            this.blockNumber = blockNumber;
+            this.skipThrough = skipThrough;
+        }
+
+        @Override
+        public boolean hasNext() {
+            synchronized (SimulatedLedgerBackend.this) {
+                while (next == null) {
+                    if (closed || streamClosed) {
+                        return false;
+                    }
+                    if (blockNumber >= blocks.size()) {
+                        try {
+                            SimulatedLedgerBackend.this.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return false;
+                        }
+                        continue;
+                    }
+                    List<Change> changes = blocks.get((int) blockNumber);
+                    if (index >= changes.size()) {
+                        blockNumber++;
+                        index = 0;
+                        skipThrough = "";
+                        continue;
+                    }
+                    Change change = changes.get(index++);
+                    if (skipThrough.isEmpty()) {
+                        next = change;
+                    } else if (skipThrough.equals(change.getTransactionId())) {
+                        skipThrough = "";
+                    }
+                }
+                return true;
+            }
+        }
+
+        @Override
+        public Change next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Change change = next;
+            next = null;
+            return change;
+        }
+
+        @Override
+        public void close() {
+            synchronized (SimulatedLedgerBackend.this) {
+                streamClosed = true;
+                SimulatedLedgerBackend.this.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import javax.annotation.processing.Generated;
+import org.eclipse.jdt.annotation.NonNull;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * Holds the timing and validation behaviour of a {@link SimulatedLedgerBackend}. The defaults approximate the Fabric
+ * test network on a single machine.
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PRIVATE, allowedClasspathAnnotations = {
+    SuppressWarnings.class, Generated.class
+})
+@SuppressWarnings("all")
+public abstract class SimulatedLedgerProperties {
+
+    public static final long DEFAULT_ENDORSE_LATENCY = 5000;
+    public static final long DEFAULT_ORDER_LATENCY = 2000;
+    public static final long DEFAULT_COMMIT_LATENCY = 10000;
+    public static final double DEFAULT_LATENCY_JITTER = 0.2;
+    public static final int DEFAULT_BLOCK_SIZE = 10;
+    public static final long DEFAULT_BLOCK_TIMEOUT = 2000;
+
+    /**
+     * Returns a new {@link SimulatedLedgerPropertiesBuilder}.
+     *
+     * @return a new {@link SimulatedLedgerPropertiesBuilder}.
+     */
+    public static @NonNull SimulatedLedgerPropertiesBuilder builder() {
+        return new SimulatedLedgerPropertiesBuilder();
+    }
+
+    /**
+     * Returns how long in microseconds a peer takes to endorse a proposal.
+     */
+    @Value.Default
+    public long getEndorseLatency() {
+        return DEFAULT_ENDORSE_LATENCY;
+    }
+
+    /**
+     * Returns how long in microseconds an endorsed transaction takes to reach the block cutter of the orderer.
+     */
+    @Value.Default
+    public long getOrderLatency() {
+        return DEFAULT_ORDER_LATENCY;
+    }
+
+    /**
+     * Returns how long in microseconds a cut block takes to be delivered, validated and committed by the peers.
+     */
+    @Value.Default
+    public long getCommitLatency() {
+        return DEFAULT_COMMIT_LATENCY;
+    }
+
+    /**
+     * Returns the mean of the random delay added to each latency, as a fraction of it. The delay is exponentially
+     * distributed, which gives the latencies a long tail. 0 makes them constant.
+     */
+    @Value.Default
+    public double getLatencyJitter() {
+        return DEFAULT_LATENCY_JITTER;
+    }
+
+    /**
+     * Returns the maximum number of transactions in a block, like {@code BatchSize.MaxMessageCount} of an orderer.
+     */
+    @Value.Default
+    public int getBlockSize() {
+        return DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Returns how long in milliseconds the orderer waits for a block to fill up before cutting it, like
+     * {@code BatchTimeout}. 0 cuts a block as soon as a transaction arrives.
+     */
+    @Value.Default
+    public long getBlockTimeout() {
+        return DEFAULT_BLOCK_TIMEOUT;
+    }
+
+    /**
+     * Returns true if {@code PutBatch} reads each key before writing it, as chaincode checking previous values would.
+     * A transaction then fails validation with {@code MVCC_READ_CONFLICT} when another transaction committed one of
+     * its keys after it was endorsed. Otherwise writes are blind and never conflict.
+     */
+    @Value.Default
+    public boolean getMvccConflicts() {
+        return false;
+    }
+
+    /**
+     * Returns the seed of the random latency jitter, so that runs can be repeated.
+     */
+    @Value.Default
+    public long getSeed() {
+        return 0;
+    }
+}
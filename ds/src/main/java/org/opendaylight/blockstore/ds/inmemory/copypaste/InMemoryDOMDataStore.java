@@ -9,6 +9,7 @@ package org.opendaylight.blockstore.ds.inmemory.copypaste;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -28,6 +29,7 @@ import org.opendaylight.mdsal.dom.spi.store.SnapshotBackedWriteTransaction.Trans
 import org.opendaylight.yangtools.concepts.Identifiable;
 import org.opendaylight.yangtools.concepts.Registration;
 import org.opendaylight.yangtools.util.ExecutorServiceUtil;
+import org.opendaylight.yangtools.util.concurrent.ListenerNotificationQueueStats;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
 import org.opendaylight.yangtools.yang.data.tree.api.DataTree;
 import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidate;
@@ -80,12 +82,26 @@ public class InMemoryDOMDataStore extends TransactionReadyPrototype<String> impl
     public InMemoryDOMDataStore(final String name, final DataTreeConfiguration config,
             final ExecutorService dataChangeListenerExecutor, final int maxDataChangeListenerQueueSize,
             final boolean debugTransactions) {
+        this(name, config, dataChangeListenerExecutor, InMemoryDOMDataStoreConfigProperties.builder()
+            .maxDataChangeListenerQueueSize(maxDataChangeListenerQueueSize)
+            .debugTransactions(debugTransactions)
+            .build());
+    }
+
+    public InMemoryDOMDataStore(final String name, final ExecutorService dataChangeListenerExecutor,
+            final InMemoryDOMDataStoreConfigProperties properties) {
+        this(name, defaultConfig(LogicalDatastoreType.OPERATIONAL), dataChangeListenerExecutor, properties);
+    }
+
+    public InMemoryDOMDataStore(final String name, final DataTreeConfiguration config,
+            final ExecutorService dataChangeListenerExecutor, final InMemoryDOMDataStoreConfigProperties properties) {
         this.name = requireNonNull(name);
         this.dataChangeListenerExecutor = requireNonNull(dataChangeListenerExecutor);
-        this.debugTransactions = debugTransactions;
+        this.debugTransactions = properties.getDebugTransactions();
         dataTree = new InMemoryDataTreeFactory().create(config);
         changePublisher = new InMemoryDOMStoreTreeChangePublisher("name", this.dataChangeListenerExecutor,
-                maxDataChangeListenerQueueSize);
+                properties.getMaxDataChangeListenerQueueSize(), properties.getDataChangeListenerOverflowPolicy(),
+                properties.getCoalesceDataChangeNotifications());
     }
 
     public void setCloseable(final AutoCloseable closeable) {
@@ -97,7 +113,7 @@ public class InMemoryDOMDataStore extends TransactionReadyPrototype<String> impl
         return name;
     }
 
-    public final synchronized void onModelContextUpdated(final EffectiveModelContext newModelContext) {
+    public synchronized void onModelContextUpdated(final EffectiveModelContext newModelContext) {
         dataTree.setEffectiveModelContext(newModelContext);
     }
 
@@ -142,7 +158,7 @@ public class InMemoryDOMDataStore extends TransactionReadyPrototype<String> impl
         return debugTransactions;
     }
 
-    final DataTreeSnapshot takeSnapshot() {
+    protected final DataTreeSnapshot takeSnapshot() {
         return dataTree.takeSnapshot();
     }
 
@@ -173,21 +189,113 @@ public class InMemoryDOMDataStore extends TransactionReadyPrototype<String> impl
         return new InMemoryDOMStoreThreePhaseCommitCohort(this, tx, modification, readyError);
     }
 
+    /**
+     * Returns true if the cohort belongs to a transaction of this store, so that a broker can tell its stores' commits
+     * apart.
+     */
+    public final boolean ownsCohort(final DOMStoreThreePhaseCommitCohort cohort) {
+        return cohort instanceof InMemoryDOMStoreThreePhaseCommitCohort
+                && ((InMemoryDOMStoreThreePhaseCommitCohort) cohort).getStore() == this;
+    }
+
     String nextIdentifier() {
         return name + "-" + txCounter.getAndIncrement();
     }
 
     void validate(final DataTreeModification modification) throws DataValidationFailedException {
+        final long start = System.nanoTime();
         dataTree.validate(modification);
+        validated(System.nanoTime() - start);
     }
 
     DataTreeCandidate prepare(final DataTreeModification modification) throws DataValidationFailedException {
+        final long start = System.nanoTime();
+        final DataTreeCandidate candidate = dataTree.prepare(modification);
+        prepared(System.nanoTime() - start);
+        return candidate;
+    }
+
+    /**
+     * Invoked with the time a transaction spent validating its modification against the data tree.
+     */
+    protected void validated(final long elapsedNanos) {
+        // Nothing by default
+    }
+
+    /**
+     * Invoked with the time a transaction spent computing the candidate of its modification.
+     */
+    protected void prepared(final long elapsedNanos) {
+        // Nothing by default
+    }
+
+    /**
+     * Returns the notification queue statistics of the registered tree change listeners.
+     */
+    protected final List<ListenerNotificationQueueStats> getListenerQueueStats() {
+        return changePublisher.getListenerQueueStats();
+    }
+
+    /**
+     * Commits the candidate of a transaction, as returned by {@link #rebase(DataTreeModification, DataTreeCandidate)}.
+     *
+     * @throws DataValidationFailedException if the modification of the transaction no longer applies
+     */
+    protected synchronized void commit(final DataTreeModification modification, final DataTreeCandidate candidate)
+            throws DataValidationFailedException {
+        final DataTreeCandidate current = rebase(modification, candidate);
+        dataTree.commit(current);
+        committed(current);
+        changePublisher.publishChange(current);
+    }
+
+    /**
+     * Returns the candidate of a transaction, or its modification validated and prepared again if the data tree moved
+     * on since the candidate was prepared, for example by {@link #commitModification(DataTreeModification)}. Only the
+     * lock of this store keeps the result current, it has to be held until the candidate is committed.
+     *
+     * @throws DataValidationFailedException if the modification no longer applies to the data tree
+     */
+    protected final DataTreeCandidate rebase(final DataTreeModification modification,
+            final DataTreeCandidate candidate) throws DataValidationFailedException {
+        if (candidate.getRootNode().dataBefore()
+                == dataTree.takeSnapshot().readNode(YangInstanceIdentifier.of()).orElse(null)) {
+            return candidate;
+        }
+        LOG.debug("{}: data tree changed since {} was prepared, preparing it again", name, candidate);
+        dataTree.validate(modification);
         return dataTree.prepare(modification);
     }
 
-    protected synchronized void commit(final DataTreeCandidate candidate) {
+    /**
+     * Invoked with each candidate committed to the data tree, by a transaction or by
+     * {@link #commitModification(DataTreeModification)}, while holding the lock of this store.
+     */
+    protected void committed(final DataTreeCandidate candidate) {
+        // Nothing by default
+    }
+
+    /**
+     * Returns a new modification on top of the current state of the data tree. Meant for subclasses which need to
+     * apply changes which do not originate from a transaction, see {@link #commitModification(DataTreeModification)}.
+     */
+    protected final DataTreeModification newModification() {
+        return dataTree.takeSnapshot().newModification();
+    }
+
+    /**
+     * Validates and commits a modification obtained from {@link #newModification()} straight to the data tree and
+     * notifies listeners, bypassing {@link #commit(DataTreeCandidate)}.
+     */
+    protected final synchronized DataTreeCandidate commitModification(final DataTreeModification modification)
+            throws DataValidationFailedException {
+        modification.ready();
+        dataTree.validate(modification);
+        final DataTreeCandidate candidate = dataTree.prepare(modification);
         dataTree.commit(candidate);
+        committed(candidate);
         changePublisher.publishChange(candidate);
+        return candidate;
     }
 
     private static DataTreeConfiguration defaultConfig(final LogicalDatastoreType type) {
@@ -89,6 +89,24 @@ public abstract class InMemoryDOMDataStoreConfigProperties {
         return DEFAULT_MAX_DATA_CHANGE_LISTENER_QUEUE_SIZE;
     }
 
+    /**
+     * Returns true if candidates queued for a data change listener should be merged into one candidate per subtree
+     * until the listener is notified, so that a slow listener receives the net effect of a burst of commits instead of
+     * every single one, and never makes committers wait for room in its queue.
+     */
+    @Value.Default
+    public boolean getCoalesceDataChangeNotifications() {
+        return false;
+    }
+
+    /**
+     * Returns what happens to a commit which would take a data change listener queue beyond its maximum size.
+     */
+    @Value.Default
+    public TreeChangeOverflowPolicy getDataChangeListenerOverflowPolicy() {
+        return TreeChangeOverflowPolicy.BLOCK;
+    }
+
     /**
      * Returns the maximum queue size for the data store executor.
      */
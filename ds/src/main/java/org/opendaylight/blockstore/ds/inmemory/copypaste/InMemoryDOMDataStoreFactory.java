@@ -48,7 +48,7 @@ public final class InMemoryDOMDataStoreFactory {
             @Nullable final DOMSchemaService schemaService) {
         final ExecutorService dataChangeListenerExecutor = createExecutorService(name, properties);
         final InMemoryDOMDataStore dataStore = new InMemoryDOMDataStore(name, dataChangeListenerExecutor,
-            properties.getMaxDataChangeListenerQueueSize(), properties.getDebugTransactions());
+            properties);
 
         if (schemaService != null) {
             schemaService.registerSchemaContextListener(dataStore::onModelContextUpdated);
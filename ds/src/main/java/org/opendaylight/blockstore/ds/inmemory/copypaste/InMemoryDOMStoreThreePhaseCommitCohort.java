@@ -110,6 +110,10 @@ class InMemoryDOMStoreThreePhaseCommitCohort implements DOMStoreThreePhaseCommit
         return SUCCESSFUL_FUTURE;
     }
 
+    final InMemoryDOMDataStore getStore() {
+        return store;
+    }
+
     protected final SnapshotBackedWriteTransaction<String> getTransaction() {
         return transaction;
     }
@@ -119,7 +123,18 @@ class InMemoryDOMStoreThreePhaseCommitCohort implements DOMStoreThreePhaseCommit
         checkState(candidate != null, "Proposed subtree must be computed");
 
         // The commit has to occur atomically with regard to listener registrations.
-        store.commit(candidate);
+        try {
+            store.commit(modification, candidate);
+        } catch (ConflictingModificationAppliedException e) {
+            LOG.warn("Store Tx: {} Conflicting modification for {} applied since it was prepared.",
+                    getTransaction().getIdentifier(), e.getPath());
+            return Futures.immediateFailedFuture(new OptimisticLockFailedException("Optimistic lock failed.", e));
+        } catch (DataValidationFailedException e) {
+            LOG.warn("Store Tx: {} Data Precondition failed for {} since it was prepared.",
+                    getTransaction().getIdentifier(), e.getPath(), e);
+            return Futures.immediateFailedFuture(
+                    new TransactionCommitFailedException("Data did not pass validation.", e));
+        }
         return CommitInfo.emptyFluentFuture();
     }
 }
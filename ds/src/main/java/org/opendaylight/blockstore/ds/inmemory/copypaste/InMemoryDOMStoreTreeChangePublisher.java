@@ -7,13 +7,16 @@
  */
 package org.opendaylight.blockstore.ds.inmemory.copypaste;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import org.eclipse.jdt.annotation.NonNull;
 import org.opendaylight.mdsal.dom.api.DOMDataTreeChangeListener;
 import org.opendaylight.mdsal.dom.spi.store.AbstractDOMStoreTreeChangePublisher;
 import org.opendaylight.yangtools.concepts.Registration;
-import org.opendaylight.yangtools.util.concurrent.EqualityQueuedNotificationManager;
+import org.opendaylight.yangtools.util.concurrent.ListenerNotificationQueueStats;
 import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
 import org.opendaylight.yangtools.yang.data.api.schema.DataContainerNode;
 import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidate;
@@ -22,43 +25,90 @@ import org.opendaylight.yangtools.yang.data.tree.spi.DataTreeCandidates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Publishes committed candidates to the tree change listeners, each through a {@link TreeChangeListenerQueue} of its
+ * own. A queue lives as long as its registration, and closing the registration drops what is still queued.
+ *
+ * <p>A queue holds up to {@code maxQueueSize} candidates, beyond which the {@link TreeChangeOverflowPolicy} decides
+ * whether the commit waits for the listener, or its candidates are merged or dropped until the listener is
+ * resynchronized.
+ *
+ * <p>In coalescing mode candidates committed while a listener is busy are merged into the pending candidate of the
+ * same subtree with {@link DataTreeCandidates#aggregate(List)}, and the listener receives the merged candidates once
+ * it is dispatched. A slow listener then sees the net effect of a burst in a single notification, and never fills its
+ * queue, so commits are not held up by it.
+ */
 @SuppressWarnings("all")
 final class InMemoryDOMStoreTreeChangePublisher extends AbstractDOMStoreTreeChangePublisher {
     private static final Logger LOG = LoggerFactory.getLogger(InMemoryDOMStoreTreeChangePublisher.class);
 
     // Registrations use identity for equality, hence we can skip wrapping them
-    private final EqualityQueuedNotificationManager<Reg, DataTreeCandidate> notificationManager;
+    private final Map<Reg, TreeChangeListenerQueue> queues;
+    private final Executor listenerExecutor;
+    private final int maxQueueSize;
+    private final TreeChangeOverflowPolicy overflowPolicy;
+    private final boolean coalesceNotifications;
+    // Set on the publisher delivering initial data, which queues it for the registration of the parent
+    private final InMemoryDOMStoreTreeChangePublisher parent;
+    private final Reg target;
 
-    InMemoryDOMStoreTreeChangePublisher(final String dsName, final Executor listenerExecutor, final int maxQueueSize) {
-        notificationManager = new EqualityQueuedNotificationManager<>("DataTreeChangeListenerQueueMgr + dsName",
-            listenerExecutor, maxQueueSize,
-            (listener, notifications) -> {
-                if (listener.notClosed()) {
-                    listener.listener().onDataTreeChanged(notifications);
-                }
-            });
+    InMemoryDOMStoreTreeChangePublisher(final String dsName, final Executor listenerExecutor, final int maxQueueSize,
+            final TreeChangeOverflowPolicy overflowPolicy, final boolean coalesceNotifications) {
+        this.queues = new ConcurrentHashMap<>();
+        this.listenerExecutor = listenerExecutor;
+        this.maxQueueSize = maxQueueSize;
+        this.overflowPolicy = overflowPolicy;
+        this.coalesceNotifications = coalesceNotifications;
+        this.parent = null;
+        this.target = null;
     }
 
-    private InMemoryDOMStoreTreeChangePublisher(
-            final EqualityQueuedNotificationManager<Reg, DataTreeCandidate> notificationManager) {
-        this.notificationManager = notificationManager;
+    private InMemoryDOMStoreTreeChangePublisher(final InMemoryDOMStoreTreeChangePublisher parent, final Reg target) {
+        this.queues = new ConcurrentHashMap<>();
+        this.listenerExecutor = parent.listenerExecutor;
+        this.maxQueueSize = parent.maxQueueSize;
+        this.overflowPolicy = parent.overflowPolicy;
+        this.coalesceNotifications = parent.coalesceNotifications;
+        this.parent = parent;
+        this.target = target;
     }
 
-    EqualityQueuedNotificationManager<?, ?> getNotificationManager() {
-        return notificationManager;
+    List<ListenerNotificationQueueStats> getListenerQueueStats() {
+        final var stats = new ArrayList<ListenerNotificationQueueStats>(queues.size());
+        queues.values().forEach(queue -> stats.add(
+            new ListenerNotificationQueueStats(queue.listenerClassName(), queue.size())));
+        return stats;
     }
 
     @Override
     protected void notifyListener(final Reg registration, final List<DataTreeCandidate> changes) {
+        if (parent != null) {
+            parent.enqueue(target, changes);
+        } else {
+            enqueue(registration, changes);
+        }
+    }
+
+    private void enqueue(final Reg registration, final List<DataTreeCandidate> changes) {
         LOG.debug("Enqueueing candidates {} for registration {}", changes, registration);
-        notificationManager.submitNotifications(registration, changes);
+        final var queue = queues.computeIfAbsent(registration, reg -> new TreeChangeListenerQueue(reg.listener(),
+            reg::notClosed, listenerExecutor, maxQueueSize, overflowPolicy, coalesceNotifications));
+        if (!registration.notClosed()) {
+            // Closed after registrationRemoved() has looked for its queue
+            queues.remove(registration, queue);
+            queue.close();
+            return;
+        }
+        queue.submit(changes);
     }
 
     @Override
     protected synchronized void registrationRemoved(final Reg registration) {
         LOG.debug("Closing registration {}", registration);
-
-        // FIXME: remove the queue for this registration and make sure we clear it
+        final var queue = queues.remove(registration);
+        if (queue != null) {
+            queue.close();
+        }
     }
 
     Registration registerTreeChangeListener(final YangInstanceIdentifier treeId,
@@ -87,7 +137,7 @@ final class InMemoryDOMStoreTreeChangePublisher extends AbstractDOMStoreTreeChan
         }
 
         final var candidate = DataTreeCandidates.fromNormalizedNode(YangInstanceIdentifier.of(), data);
-        final var publisher = new InMemoryDOMStoreTreeChangePublisher(notificationManager);
+        final var publisher = new InMemoryDOMStoreTreeChangePublisher(this, (Reg) reg);
         publisher.registerTreeChangeListener(treeId, listener);
         if (!publisher.publishChange(candidate)) {
             // There is no data in the conceptual data tree then notify with 'onInitialData()'.
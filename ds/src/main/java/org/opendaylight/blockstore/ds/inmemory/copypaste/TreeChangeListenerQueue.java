@@ -0,0 +1,329 @@
+package org.opendaylight.blockstore.ds.inmemory.copypaste;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.opendaylight.mdsal.dom.api.DOMDataTreeChangeListener;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.PathArgument;
+import org.opendaylight.yangtools.yang.data.api.schema.DistinctNodeContainer;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidate;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.tree.api.ModificationType;
+import org.opendaylight.yangtools.yang.data.tree.spi.DataTreeCandidateNodes;
+import org.opendaylight.yangtools.yang.data.tree.spi.DataTreeCandidates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The notification queue of one tree change listener registration. Candidates are delivered in order by tasks on a
+ * shared executor, at most one at a time per queue, each handing everything queued so far to the listener as one
+ * list. A task delivers a single list and leaves the rest to a new task, so that a busy listener does not keep a
+ * thread of a bounded executor to itself.
+ *
+ * <p>The queue holds up to {@code maxSize} candidates. Beyond that the {@link TreeChangeOverflowPolicy} applies. In
+ * coalescing mode candidates are always merged per subtree, and the queue never overflows.
+ */
+@SuppressWarnings("all")
+final class TreeChangeListenerQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(TreeChangeListenerQueue.class);
+    private static final long BLOCK_CHECK_MILLIS = 100;
+    private static final long BLOCK_WARN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    // The state of a subtree whose changes were dropped, from before the first one to after the last one
+    private static final class Resync {
+        final PathArgument name;
+        final NormalizedNode before;
+        NormalizedNode after;
+
+        Resync(final YangInstanceIdentifier path, final DataTreeCandidateNode first) {
+            // The root node has no name
+            name = path.isEmpty() ? null : path.getLastPathArgument();
+            before = first.dataBefore();
+            after = first.dataAfter();
+        }
+    }
+
+    private final DOMDataTreeChangeListener listener;
+    private final BooleanSupplier registered;
+    private final Executor executor;
+    private final int maxSize;
+    private final TreeChangeOverflowPolicy overflowPolicy;
+    private final boolean coalesce;
+
+    // Guarded by this
+    private List<DataTreeCandidate> queued = new ArrayList<>();
+    // Not null while the listener is to be resynchronized, later candidates are folded into it
+    private Map<YangInstanceIdentifier, Resync> resync;
+    private boolean scheduled;
+    private boolean closed;
+
+    TreeChangeListenerQueue(final DOMDataTreeChangeListener listener, final BooleanSupplier registered,
+            final Executor executor, final int maxSize, final TreeChangeOverflowPolicy overflowPolicy,
+            final boolean coalesce) {
+        this.listener = listener;
+        this.registered = registered;
+        this.executor = executor;
+        this.maxSize = maxSize;
+        this.overflowPolicy = overflowPolicy;
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * Queues candidates for delivery. With {@link TreeChangeOverflowPolicy#BLOCK} this waits for room in the queue,
+     * unless the registration or the queue is closed meanwhile.
+     */
+    synchronized void submit(final List<DataTreeCandidate> changes) {
+        if (closed) {
+            return;
+        }
+        if (resync != null) {
+            changes.forEach(this::dropped);
+        } else if (coalesce) {
+            changes.forEach(change -> coalesce(queued, change));
+        } else if (queued.size() + changes.size() <= maxSize || queued.isEmpty()) {
+            queued.addAll(changes);
+        } else {
+            overflow(changes);
+        }
+        schedule();
+    }
+
+    synchronized int size() {
+        return queued.size() + (resync != null ? resync.size() : 0);
+    }
+
+    String listenerClassName() {
+        return listener.getClass().getName();
+    }
+
+    /**
+     * Drops whatever is queued and releases committers waiting for room. Nothing is delivered afterwards.
+     */
+    synchronized void close() {
+        closed = true;
+        queued = new ArrayList<>();
+        resync = null;
+        notifyAll();
+    }
+
+    private void overflow(final List<DataTreeCandidate> changes) {
+        switch (overflowPolicy) {
+            case MERGE:
+                final var merged = new ArrayList<DataTreeCandidate>(queued.size());
+                queued.forEach(candidate -> coalesce(merged, candidate));
+                changes.forEach(candidate -> coalesce(merged, candidate));
+                LOG.debug("Merged {} queued and {} new candidates for {} into {}", queued.size(), changes.size(),
+                    listener, merged.size());
+                queued = merged;
+                break;
+            case DROP_TO_RESYNC:
+                LOG.debug("Dropping {} queued and {} new candidates for {} to resynchronize it", queued.size(),
+                    changes.size(), listener);
+                resync = new LinkedHashMap<>();
+                queued.forEach(this::dropped);
+                changes.forEach(this::dropped);
+                queued = new ArrayList<>();
+                break;
+            case BLOCK:
+            default:
+                awaitRoom(changes.size());
+                if (!closed) {
+                    queued.addAll(changes);
+                }
+                break;
+        }
+    }
+
+    private void awaitRoom(final int needed) {
+        final long start = System.nanoTime();
+        long warnAt = start + BLOCK_WARN_NANOS;
+        while (!closed && registered.getAsBoolean() && !queued.isEmpty() && queued.size() + needed > maxSize) {
+            try {
+                wait(BLOCK_CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOG.warn("Interrupted while waiting for room in the queue of {}, queueing anyway", listener);
+                return;
+            }
+            final long now = System.nanoTime();
+            if (now >= warnAt) {
+                LOG.warn("Waiting for {} to take its {} queued candidates for {} s", listener, queued.size(),
+                    TimeUnit.NANOSECONDS.toSeconds(now - start));
+                warnAt = now + BLOCK_WARN_NANOS;
+            }
+        }
+    }
+
+    private void dropped(final DataTreeCandidate candidate) {
+        final var existing = resync.get(candidate.getRootPath());
+        if (existing == null) {
+            resync.put(candidate.getRootPath(), new Resync(candidate.getRootPath(), candidate.getRootNode()));
+        } else {
+            existing.after = candidate.getRootNode().dataAfter();
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled && size() > 0) {
+            scheduled = true;
+            execute();
+        }
+    }
+
+    private void execute() {
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Executor rejected delivery to {}, dropping its {} queued candidates", listener, size(), e);
+            scheduled = false;
+            queued = new ArrayList<>();
+            resync = null;
+        }
+    }
+
+    @SuppressWarnings("checkstyle:IllegalCatch")
+    private void deliver() {
+        final List<DataTreeCandidate> changes;
+        synchronized (this) {
+            changes = take();
+            // Committers blocked on a full queue may proceed
+            notifyAll();
+        }
+
+        if (!changes.isEmpty() && registered.getAsBoolean()) {
+            try {
+                listener.onDataTreeChanged(changes);
+            } catch (RuntimeException e) {
+                LOG.error("Listener {} failed to process {} candidates", listener, changes.size(), e);
+            }
+        }
+
+        synchronized (this) {
+            if (size() > 0 && !closed) {
+                execute();
+            } else {
+                scheduled = false;
+            }
+        }
+    }
+
+    private List<DataTreeCandidate> take() {
+        if (closed) {
+            return List.of();
+        }
+        final List<DataTreeCandidate> changes;
+        if (resync != null) {
+            changes = new ArrayList<>(resync.size());
+            resync.forEach((path, state) -> {
+                if (state.before != state.after) {
+                    changes.add(DataTreeCandidates.newDataTreeCandidate(path,
+                        new ResyncNode(state.name, state.before, state.after)));
+                }
+            });
+            resync = null;
+            return changes;
+        }
+
+        changes = queued;
+        queued = new ArrayList<>();
+        if (coalesce || overflowPolicy == TreeChangeOverflowPolicy.MERGE) {
+            // Changes which cancelled each other out leave nothing to report
+            changes.removeIf(candidate -> candidate.getRootNode().modificationType() == ModificationType.UNMODIFIED);
+        }
+        return changes;
+    }
+
+    // Merges a candidate into the last pending one of the same subtree, so that changes to a subtree stay in order
+    static void coalesce(final List<DataTreeCandidate> pending, final DataTreeCandidate change) {
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            final var previous = pending.get(i);
+            if (previous.getRootPath().equals(change.getRootPath())) {
+                try {
+                    pending.set(i, DataTreeCandidates.aggregate(List.of(previous, change)));
+                    return;
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("Cannot merge candidate {} into {}, queueing it separately", change, previous, e);
+                }
+                break;
+            }
+        }
+        pending.add(change);
+    }
+
+    /**
+     * The net change of a subtree between two states, its children being computed from the two states on demand. The
+     * node of the root has no name, like any other candidate root node.
+     */
+    private static final class ResyncNode implements DataTreeCandidateNode {
+        private final PathArgument name;
+        private final NormalizedNode before;
+        private final NormalizedNode after;
+
+        ResyncNode(final PathArgument name, final NormalizedNode before, final NormalizedNode after) {
+            this.name = name;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public PathArgument name() {
+            if (name == null) {
+                throw new IllegalStateException("Attempted to get identifier of the root node");
+            }
+            return name;
+        }
+
+        @Override
+        public Collection<DataTreeCandidateNode> childNodes() {
+            return isContainer(before) || isContainer(after)
+                ? DataTreeCandidateNodes.containerDelta(container(before), container(after)) : List.of();
+        }
+
+        @Override
+        public DataTreeCandidateNode modifiedChild(final PathArgument childName) {
+            return isContainer(before) || isContainer(after)
+                ? DataTreeCandidateNodes.containerDelta(container(before), container(after), childName) : null;
+        }
+
+        @Override
+        public ModificationType modificationType() {
+            if (before == null) {
+                return ModificationType.WRITE;
+            }
+            if (after == null) {
+                return ModificationType.DELETE;
+            }
+            return isContainer(before) && isContainer(after) ? ModificationType.SUBTREE_MODIFIED
+                : ModificationType.WRITE;
+        }
+
+        @Override
+        public NormalizedNode dataBefore() {
+            return before;
+        }
+
+        @Override
+        public NormalizedNode dataAfter() {
+            return after;
+        }
+
+        private static boolean isContainer(final NormalizedNode node) {
+            return node instanceof DistinctNodeContainer;
+        }
+
+        // Children of a distinct container are always keyed by their own path argument
+        @SuppressWarnings("unchecked")
+        private static DistinctNodeContainer<PathArgument, NormalizedNode> container(final NormalizedNode node) {
+            return node instanceof DistinctNodeContainer ? (DistinctNodeContainer<PathArgument, NormalizedNode>) node
+                : null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.opendaylight.blockstore.ds.inmemory.copypaste;
+
+import java.util.Locale;
+
+/**
+ * What happens to a commit when the notification queue of a tree change listener is full.
+ */
+@SuppressWarnings("all")
+public enum TreeChangeOverflowPolicy {
+    /**
+     * The commit waits until the listener has taken the queued candidates.
+     */
+    BLOCK,
+    /**
+     * The queued candidates are merged per subtree, which brings the queue down to one candidate per subtree.
+     */
+    MERGE,
+    /**
+     * The queued candidates are dropped. The listener is brought back in sync with a single candidate per subtree,
+     * from the state before the first dropped candidate to the state after the last one, computed when it is
+     * notified.
+     */
+    DROP_TO_RESYNC;
+
+    /**
+     * Parses a policy name, ignoring case.
+     */
+    public static TreeChangeOverflowPolicy parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,104 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class HyperledgerBatchTest {
+
+    @Test
+    void replayReturnsEntriesInOrder() throws HyperledgerException {
+        HyperledgerBatch batch = new HyperledgerBatch();
+        assertTrue(batch.isEmpty());
+        batch.put("C\u0010a", new byte[] { 1, 2 });
+        batch.delete("C\u0010b");
+        // Key characters above U+007F, as written by the key codec
+        batch.put("C\u00ff\u0000", new byte[0]);
+        batch.put("C\u0010a", new byte[200]);
+
+        assertEquals(4, batch.size());
+        assertEquals(List.of("put C\u0010a [1, 2]", "delete C\u0010b", "put C\u00ff\u0000 []",
+                "put C\u0010a " + Arrays.toString(new byte[200])), replay(batch.toByteArray()));
+    }
+
+    @Test
+    void emptyBatchReplaysNothing() throws HyperledgerException {
+        assertEquals(List.of(), replay(new HyperledgerBatch().toByteArray()));
+    }
+
+    @Test
+    void mergeConcatenatesEntries() throws HyperledgerException {
+        HyperledgerBatch first = new HyperledgerBatch();
+        first.put("a", new byte[] { 1 });
+        first.delete("b");
+        HyperledgerBatch second = new HyperledgerBatch();
+        second.delete("a");
+        // Entry count above one varint byte
+        HyperledgerBatch third = new HyperledgerBatch();
+        List<String> expected = new ArrayList<>(List.of("put a [1]", "delete b", "delete a"));
+        for (int i = 0; i < 200; i++) {
+            third.put("k" + i, new byte[] { (byte) i });
+            expected.add("put k" + i + " [" + (byte) i + "]");
+        }
+
+        byte[] merged = HyperledgerBatch.merge(List.of(first.toByteArray(), second.toByteArray(),
+                new HyperledgerBatch().toByteArray(), third.toByteArray()));
+        assertEquals(expected, replay(merged));
+    }
+
+    @Test
+    void mergeOfOnePayloadReturnsIt() throws HyperledgerException {
+        HyperledgerBatch batch = new HyperledgerBatch();
+        batch.put("a", new byte[] { 1 });
+        byte[] payload = batch.toByteArray();
+
+        assertSame(payload, HyperledgerBatch.merge(List.of(payload)));
+    }
+
+    @Test
+    void varIntsRoundTrip() {
+        for (int value : new int[] { 0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE }) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            HyperledgerBatch.writeVarInt(out, value);
+            int[] offset = {0};
+            assertEquals(value, HyperledgerBatch.readVarInt(out.toByteArray(), offset));
+            assertEquals(out.size(), offset[0]);
+        }
+    }
+
+    @Test
+    void replayRejectsMalformedPayloads() {
+        HyperledgerBatch batch = new HyperledgerBatch();
+        batch.put("a", new byte[] { 1, 2, 3 });
+        byte[] payload = batch.toByteArray();
+
+        assertThrows(HyperledgerException.class, () -> replay(Arrays.copyOf(payload, payload.length - 1)));
+        assertThrows(HyperledgerException.class, () -> HyperledgerBatch.merge(List.of(payload, new byte[0])));
+        byte[] unknownOp = payload.clone();
+        unknownOp[1] = 'X';
+        assertThrows(HyperledgerException.class, () -> replay(unknownOp));
+    }
+
+    private static List<String> replay(byte[] payload) throws HyperledgerException {
+        List<String> entries = new ArrayList<>();
+        HyperledgerBatch.replay(payload, new HyperledgerBatch.Handler() {
+            @Override
+            public void put(String key, byte[] value) {
+                entries.add("put " + key + " " + Arrays.toString(value));
+            }
+
+            @Override
+            public void delete(String key) {
+                entries.add("delete " + key);
+            }
+        });
+        return entries;
+    }
+}
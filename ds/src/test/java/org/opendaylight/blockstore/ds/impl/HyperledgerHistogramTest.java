@@ -0,0 +1,73 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperledgerHistogramTest {
+
+    @Test
+    void smallValuesHaveBucketsOfTheirOwn() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, HyperledgerHistogram.index(value));
+            assertEquals(value, HyperledgerHistogram.upperBound((int) value));
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousAtPowersOfTwo() {
+        for (int exponent = 4; exponent < 63; exponent++) {
+            long power = 1L << exponent;
+            for (long value : new long[] { power - 1, power, power + 1 }) {
+                int index = HyperledgerHistogram.index(value);
+                long upperBound = HyperledgerHistogram.upperBound(index);
+                assertTrue(upperBound >= value, value + " is above the bound " + upperBound + " of its bucket");
+                assertTrue(HyperledgerHistogram.upperBound(index - 1) < value,
+                        value + " belongs to the bucket before " + index);
+                // Buckets are 1/16 of the power of two they are in
+                assertTrue(upperBound - value < Math.max(1, Long.highestOneBit(value) >>> 4),
+                        "Bucket of " + value + " is too wide");
+            }
+            // A power of two starts a bucket
+            assertEquals(power - 1, HyperledgerHistogram.upperBound(HyperledgerHistogram.index(power) - 1));
+        }
+    }
+
+    @Test
+    void largestValueFitsTheLastBucket() {
+        int index = HyperledgerHistogram.index(Long.MAX_VALUE);
+        // The highest bit of a non-negative value is bit 62
+        assertEquals((62 - 4 + 1) * 16 + 15, index);
+        assertEquals(Long.MAX_VALUE, HyperledgerHistogram.upperBound(index));
+    }
+
+    @Test
+    void percentileIsUpperBoundOfTheRankedBucket() {
+        HyperledgerHistogram histogram = new HyperledgerHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.count());
+        assertEquals(50.5, histogram.mean(), 0);
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(10, histogram.percentile(0.1));
+        // 50 and 51 share a bucket
+        assertEquals(51, histogram.percentile(0.5));
+        assertEquals(99, histogram.percentile(0.99));
+        // Never above the largest recorded value
+        assertEquals(100, histogram.percentile(1));
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        HyperledgerHistogram histogram = new HyperledgerHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.count());
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.percentile(1));
+    }
+}
@@ -0,0 +1,139 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HyperledgerJournalTest {
+    private static final String NAME = "test";
+    // Length, CRC32C and sequence number
+    private static final int HEADER_SIZE = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopenKeepsAppendedRecords() throws IOException {
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            journal.append(payload(1));
+            journal.append(payload(2));
+            journal.sync(journal.lastSequence());
+        }
+
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            assertEquals(2, journal.lastSequence());
+            assertEquals(0, journal.shippedSequence());
+            assertRecords(journal, 1, 2);
+        }
+    }
+
+    @Test
+    void reopenTruncatesTornRecord() throws IOException {
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            journal.append(payload(1));
+            journal.append(payload(2));
+            journal.append(payload(3));
+            journal.sync(journal.lastSequence());
+        }
+        // The length of the third record made it to disk, but not all of its payload
+        int third = 2 * (HEADER_SIZE + payload(1).length);
+        corrupt(segments().get(0), third + HEADER_SIZE);
+
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            assertEquals(2, journal.lastSequence());
+            assertRecords(journal, 1, 2);
+            // The torn record is overwritten by the next one
+            assertEquals(3, journal.append(payload(4)));
+            journal.sync(journal.lastSequence());
+        }
+
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            assertEquals(3, journal.lastSequence());
+            List<HyperledgerJournal.Record> records = journal.newReader().next(10, Integer.MAX_VALUE);
+            assertEquals(3, records.size());
+            assertArrayEquals(payload(4), records.get(2).payload());
+        }
+    }
+
+    @Test
+    void markShippedDeletesShippedSegments() throws IOException {
+        // Each record fills a segment of its own
+        int segmentSize = HEADER_SIZE + payload(1).length + Integer.BYTES;
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, segmentSize)) {
+            for (int i = 1; i <= 5; i++) {
+                journal.append(payload(i));
+            }
+            journal.sync(journal.lastSequence());
+            assertEquals(5, journal.segmentCount());
+
+            journal.markShipped(3);
+            assertEquals(3, journal.shippedSequence());
+            assertEquals(2, journal.segmentCount());
+            assertEquals(2, segments().size());
+            assertRecords(journal, 4, 5);
+        }
+
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, segmentSize)) {
+            assertEquals(3, journal.shippedSequence());
+            assertEquals(5, journal.lastSequence());
+            assertRecords(journal, 4, 5);
+        }
+    }
+
+    @Test
+    void readerSkipsShippedRecordsOfRetainedSegment() throws IOException {
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            journal.append(payload(1));
+            journal.append(payload(2));
+            journal.append(payload(3));
+            journal.sync(journal.lastSequence());
+            journal.markShipped(2);
+            assertEquals(1, journal.segmentCount());
+        }
+
+        try (HyperledgerJournal journal = new HyperledgerJournal(directory, NAME, 4096)) {
+            assertEquals(2, journal.shippedSequence());
+            assertRecords(journal, 3);
+        }
+    }
+
+    private static void assertRecords(HyperledgerJournal journal, int... expected) {
+        List<HyperledgerJournal.Record> records = journal.newReader().next(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(expected.length, records.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], records.get(i).sequence());
+            assertArrayEquals(payload(expected[i]), records.get(i).payload());
+        }
+    }
+
+    private static byte[] payload(int sequence) {
+        return String.format("record %04d", sequence).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void corrupt(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { (byte) 0xFF, (byte) 0xFF }), position);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, NAME + "-*.journal")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+}
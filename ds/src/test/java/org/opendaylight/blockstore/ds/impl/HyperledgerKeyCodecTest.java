@@ -0,0 +1,152 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.opendaylight.yangtools.yang.common.Decimal64;
+import org.opendaylight.yangtools.yang.common.Empty;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.common.QNameModule;
+import org.opendaylight.yangtools.yang.common.Uint16;
+import org.opendaylight.yangtools.yang.common.Uint32;
+import org.opendaylight.yangtools.yang.common.Uint64;
+import org.opendaylight.yangtools.yang.common.Uint8;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeWithValue;
+
+class HyperledgerKeyCodecTest {
+    private static final QNameModule MODULE = QNameModule.of("urn:test");
+    private static final QNameModule OTHER_MODULE = QNameModule.of("urn:other", "2024-01-01");
+
+    private static final QName TOP = QName.create(MODULE, "top");
+    private static final QName LIST = QName.create(MODULE, "list");
+    private static final QName KEY = QName.create(MODULE, "key");
+    private static final QName LEAF_LIST = QName.create(MODULE, "leaf-list");
+    private static final QName IDENTITY = QName.create(OTHER_MODULE, "identity");
+
+    private final HyperledgerKeyCodec codec = newCodec(HyperledgerDataStore.CONFIGURATION_PREFIX);
+
+    @Test
+    void roundTripsEveryKeyValueType() throws HyperledgerException {
+        Map<QName, Object> keys = new LinkedHashMap<>();
+        keys.put(QName.create(MODULE, "string"), "name\0with nul");
+        keys.put(QName.create(MODULE, "boolean"), true);
+        keys.put(QName.create(MODULE, "int8"), (byte) -8);
+        keys.put(QName.create(MODULE, "int16"), (short) -16);
+        keys.put(QName.create(MODULE, "int32"), -32);
+        keys.put(QName.create(MODULE, "int64"), Long.MIN_VALUE);
+        keys.put(QName.create(MODULE, "uint8"), Uint8.MAX_VALUE);
+        keys.put(QName.create(MODULE, "uint16"), Uint16.valueOf(16));
+        keys.put(QName.create(MODULE, "uint32"), Uint32.MAX_VALUE);
+        keys.put(QName.create(MODULE, "uint64"), Uint64.MAX_VALUE);
+        keys.put(QName.create(MODULE, "identity"), IDENTITY);
+        keys.put(QName.create(MODULE, "empty"), Empty.value());
+        keys.put(QName.create(MODULE, "decimal64"), Decimal64.of(2, -150));
+        YangInstanceIdentifier path = YangInstanceIdentifier.of(TOP)
+                .node(LIST)
+                .node(NodeIdentifierWithPredicates.of(LIST, keys))
+                .node(LEAF_LIST)
+                .node(new NodeWithValue<>(LEAF_LIST, "value"))
+                .node(IDENTITY);
+
+        assertEquals(path, codec.decode(codec.encode(path)));
+    }
+
+    @Test
+    void roundTripsBinaryValues() throws HyperledgerException {
+        byte[] value = { 0, (byte) 0xFF, 0, 0, 1 };
+        YangInstanceIdentifier path = YangInstanceIdentifier.of(LEAF_LIST).node(new NodeWithValue<>(LEAF_LIST, value));
+
+        NodeWithValue<?> decoded = (NodeWithValue<?>) codec.decode(codec.encode(path)).getLastPathArgument();
+        assertArrayEquals(value, (byte[]) decoded.getValue());
+    }
+
+    @Test
+    void keysSortInValueOrder() {
+        assertSorted((byte) -128, (byte) -1, (byte) 0, (byte) 1, (byte) 127);
+        assertSorted((short) -32768, (short) -1, (short) 0, (short) 256, (short) 32767);
+        assertSorted(Integer.MIN_VALUE, -65536, -1, 0, 1, 65536, Integer.MAX_VALUE);
+        assertSorted(Long.MIN_VALUE, -1L, 0L, 1L, 1L << 32, Long.MAX_VALUE);
+        assertSorted(Uint8.ZERO, Uint8.valueOf(127), Uint8.valueOf(128), Uint8.MAX_VALUE);
+        assertSorted(Uint16.ZERO, Uint16.valueOf(255), Uint16.valueOf(32768), Uint16.MAX_VALUE);
+        assertSorted(Uint32.ZERO, Uint32.valueOf(65535), Uint32.valueOf(0x80000000L), Uint32.MAX_VALUE);
+        assertSorted(Uint64.ZERO, Uint64.valueOf(Long.MAX_VALUE), Uint64.fromLongBits(Long.MIN_VALUE),
+                Uint64.MAX_VALUE);
+        assertSorted(Decimal64.of(2, -1000), Decimal64.of(2, -1), Decimal64.of(2, 0), Decimal64.of(2, 150));
+        // A nul is escaped, yet sorts below any other character and above the end of the string
+        assertSorted("", "a", "a\0", "a\0\0", "a\0b", "a\u0001", "aa", "b", "\u00e9");
+    }
+
+    @Test
+    void keyOfNodePrefixesKeysOfDescendants() {
+        String parent = codec.encode(YangInstanceIdentifier.of(TOP).node(LIST).node(entry("a")));
+        String end = HyperledgerKeyCodec.prefixEnd(parent);
+
+        for (YangInstanceIdentifier child : List.of(
+                YangInstanceIdentifier.of(TOP).node(LIST).node(entry("a")).node(KEY),
+                YangInstanceIdentifier.of(TOP).node(LIST).node(entry("a")).node(LEAF_LIST)
+                        .node(new NodeWithValue<>(LEAF_LIST, "\0")))) {
+            String key = codec.encode(child);
+            assertTrue(key.startsWith(parent), child + " is not below its parent");
+            assertTrue(key.compareTo(end) < 0, child + " is not below the prefix end");
+        }
+        // Siblings are out of its range, even those whose keys start with its key
+        for (String sibling : List.of("", "a\0", "ab", "b")) {
+            String key = codec.encode(YangInstanceIdentifier.of(TOP).node(LIST).node(entry(sibling)));
+            assertTrue(key.compareTo(parent) < 0 || key.compareTo(end) >= 0, sibling + " is in the range of a");
+        }
+    }
+
+    @Test
+    void decodeRejectsForeignKeys() {
+        String key = codec.encode(YangInstanceIdentifier.of(TOP));
+
+        assertThrows(HyperledgerException.class,
+                () -> newCodec(HyperledgerDataStore.OPERATIONAL_PREFIX).decode(key));
+        // Unknown module
+        assertThrows(HyperledgerException.class,
+                () -> new HyperledgerKeyCodec(HyperledgerDataStore.CONFIGURATION_PREFIX).decode(key));
+        assertThrows(HyperledgerException.class, () -> codec.decode(key.substring(0, key.length() - 1)));
+    }
+
+    @Test
+    void moduleIdsDependOnRevision() {
+        QNameModule revised = QNameModule.of("urn:other", "2025-01-01");
+        HyperledgerKeyCodec revisedCodec = new HyperledgerKeyCodec(HyperledgerDataStore.CONFIGURATION_PREFIX);
+        revisedCodec.setModules(Set.of(revised));
+
+        YangInstanceIdentifier path = YangInstanceIdentifier.of(IDENTITY);
+        assertThrows(HyperledgerException.class, () -> revisedCodec.decode(codec.encode(path)));
+    }
+
+    private void assertSorted(Object... values) {
+        List<String> keys = new ArrayList<>();
+        for (Object value : values) {
+            keys.add(codec.encode(YangInstanceIdentifier.of(LIST).node(NodeIdentifierWithPredicates.of(LIST, KEY,
+                    value))));
+        }
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0,
+                    "Key of " + values[i - 1] + " does not sort before " + values[i]);
+        }
+    }
+
+    private static NodeIdentifierWithPredicates entry(String key) {
+        return NodeIdentifierWithPredicates.of(LIST, KEY, key);
+    }
+
+    private static HyperledgerKeyCodec newCodec(String prefix) {
+        HyperledgerKeyCodec codec = new HyperledgerKeyCodec(prefix);
+        codec.setModules(Set.of(MODULE, OTHER_MODULE));
+        return codec;
+    }
+}
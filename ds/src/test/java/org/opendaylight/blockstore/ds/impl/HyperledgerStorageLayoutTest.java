@@ -0,0 +1,142 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.spi.node.ImmutableNodes;
+import org.opendaylight.yangtools.yang.data.tree.api.DataTreeCandidateNode;
+import org.opendaylight.yangtools.yang.data.tree.spi.DataTreeCandidateNodes;
+
+class HyperledgerStorageLayoutTest {
+    private static final QName ROOT = QName.create("urn:test", "root");
+    private static final QName TOP = QName.create(ROOT, "top");
+    private static final QName NAME = QName.create(ROOT, "name");
+    private static final QName LIST = QName.create(ROOT, "list");
+    private static final QName KEY = QName.create(ROOT, "key");
+    private static final QName VALUE = QName.create(ROOT, "value");
+
+    private static final YangInstanceIdentifier TOP_PATH = YangInstanceIdentifier.of(TOP);
+    private static final YangInstanceIdentifier LIST_PATH = TOP_PATH.node(LIST);
+
+    private final HyperledgerStorageLayout layout = new HyperledgerStorageLayout(
+            HyperledgerStorageGranularity.LIST_ENTRY, Map.of(),
+            new HyperledgerPersistencePolicy(HyperledgerPersistence.LEDGER, Map.of()));
+
+    @Test
+    void changesPutParentsBeforeDescendants() {
+        List<HyperledgerStorageLayout.Change> changes = layout.changes(
+                DataTreeCandidateNodes.written(root(top("a", entry(1, "one"), entry(2, "two")))));
+
+        assertEquals(3, changes.size());
+        assertEquals(TOP_PATH, changes.get(0).path);
+        assertEquals(top("a"), changes.get(0).data);
+        // Entries of a list come in no particular order
+        assertEquals(Map.of(entryPath(1), entry(1, "one"), entryPath(2), entry(2, "two")),
+                Map.of(changes.get(1).path, changes.get(1).data, changes.get(2).path, changes.get(2).data));
+    }
+
+    @Test
+    void changesDeleteDescendantsFirst() {
+        List<HyperledgerStorageLayout.Change> changes = layout.changes(
+                modified(root(top("a", entry(1, "one"), entry(2, "two"))), root()));
+
+        assertEquals(3, changes.size());
+        assertEquals(Set.of(entryPath(1), entryPath(2)), Set.of(changes.get(0).path, changes.get(1).path));
+        assertNull(changes.get(0).data);
+        assertNull(changes.get(1).data);
+        assertEquals(TOP_PATH, changes.get(2).path);
+        assertNull(changes.get(2).data);
+    }
+
+    @Test
+    void changesSkipEntriesWithUnchangedContent() {
+        List<HyperledgerStorageLayout.Change> changes = layout.changes(modified(
+                root(top("a", entry(1, "one"), entry(2, "two"))), root(top("a", entry(1, "one"), entry(2, "TWO")))));
+
+        assertEquals(1, changes.size());
+        assertEquals(entryPath(2), changes.get(0).path);
+        assertEquals(entry(2, "TWO"), changes.get(0).data);
+    }
+
+    @Test
+    void stripRemovesDescendantEntries() {
+        assertEquals(top("a"), layout.strip(TOP_PATH, top("a", entry(1, "one"), entry(2, "two"))));
+        assertEquals(entry(1, "one"), layout.strip(entryPath(1), entry(1, "one")));
+    }
+
+    @Test
+    void restoreKeepsDescendantEntries() {
+        NormalizedNode existing = top("a", entry(1, "one"), entry(2, "two"));
+
+        assertEquals(top("b", entry(1, "one"), entry(2, "two")), layout.restore(TOP_PATH, top("b"), existing));
+        assertEquals(existing, layout.restore(TOP_PATH, layout.strip(TOP_PATH, existing), existing));
+    }
+
+    @Test
+    void restoreDropsRemovedContent() {
+        // The name is part of the entry of the container, leaving it out of a put removes it
+        ContainerNode nameless = ImmutableNodes.newContainerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(TOP))
+                .withChild(ImmutableNodes.newSystemMapBuilder().withNodeIdentifier(new NodeIdentifier(LIST)).build())
+                .build();
+        ContainerNode restored = ImmutableNodes.newContainerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(TOP))
+                .withChild(ImmutableNodes.newSystemMapBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(LIST))
+                        .withChild(entry(1, "one"))
+                        .build())
+                .build();
+
+        assertEquals(restored, layout.restore(TOP_PATH, nameless, top("a", entry(1, "one"))));
+    }
+
+    // A subtree modification of the root, as found in a candidate
+    private static DataTreeCandidateNode modified(ContainerNode before, ContainerNode after) {
+        NodeIdentifier parent = new NodeIdentifier(QName.create(ROOT, "parent"));
+        return DataTreeCandidateNodes.containerDelta(
+                ImmutableNodes.newContainerBuilder().withNodeIdentifier(parent).withChild(before).build(),
+                ImmutableNodes.newContainerBuilder().withNodeIdentifier(parent).withChild(after).build())
+                .iterator().next();
+    }
+
+    private static ContainerNode root(ContainerNode... children) {
+        return ImmutableNodes.newContainerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(ROOT))
+                .withValue(List.of(children))
+                .build();
+    }
+
+    private static ContainerNode top(String name, MapEntryNode... entries) {
+        return ImmutableNodes.newContainerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(TOP))
+                .withChild(ImmutableNodes.leafNode(NAME, name))
+                .withChild(ImmutableNodes.newSystemMapBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(LIST))
+                        .withValue(List.of(entries))
+                        .build())
+                .build();
+    }
+
+    private static MapEntryNode entry(int key, String value) {
+        return ImmutableNodes.newMapEntryBuilder()
+                .withNodeIdentifier(NodeIdentifierWithPredicates.of(LIST, KEY, key))
+                .withChild(ImmutableNodes.leafNode(KEY, key))
+                .withChild(ImmutableNodes.leafNode(VALUE, value))
+                .build();
+    }
+
+    private static YangInstanceIdentifier entryPath(int key) {
+        return LIST_PATH.node(NodeIdentifierWithPredicates.of(LIST, KEY, key));
+    }
+}
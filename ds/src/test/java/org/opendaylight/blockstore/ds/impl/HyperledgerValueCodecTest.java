@@ -0,0 +1,89 @@
+package org.opendaylight.blockstore.ds.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.opendaylight.yangtools.yang.common.QName;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifier;
+import org.opendaylight.yangtools.yang.data.api.YangInstanceIdentifier.NodeIdentifierWithPredicates;
+import org.opendaylight.yangtools.yang.data.api.schema.ContainerNode;
+import org.opendaylight.yangtools.yang.data.api.schema.MapEntryNode;
+import org.opendaylight.yangtools.yang.data.api.schema.NormalizedNode;
+import org.opendaylight.yangtools.yang.data.spi.node.ImmutableNodes;
+
+class HyperledgerValueCodecTest {
+    private static final QName TOP = QName.create("urn:test", "top");
+    private static final QName NAME = QName.create(TOP, "name");
+    private static final QName LIST = QName.create(TOP, "list");
+    private static final QName KEY = QName.create(TOP, "key");
+    private static final QName VALUE = QName.create(TOP, "value");
+
+    @Test
+    void smallValuesStayPlain() throws HyperledgerException {
+        HyperledgerValueCodec codec = new HyperledgerValueCodec(1024);
+        NormalizedNode data = top(1);
+
+        byte[] encoded = codec.encode(data);
+        assertEquals(0, encoded[0]);
+        assertEquals(data, codec.decode(encoded));
+    }
+
+    @Test
+    void largeValuesAreDeflated() throws HyperledgerException {
+        NormalizedNode data = top(100);
+        byte[] plain = new HyperledgerValueCodec(0).encode(data);
+        HyperledgerValueCodec codec = new HyperledgerValueCodec(plain.length);
+
+        byte[] encoded = codec.encode(data);
+        assertEquals(1, encoded[0]);
+        assertTrue(encoded.length < plain.length, "Deflated value is not smaller");
+        assertEquals(data, codec.decode(encoded));
+        // Whatever the threshold of the reader
+        assertEquals(data, new HyperledgerValueCodec(0).decode(encoded));
+    }
+
+    @Test
+    void incompressibleValuesStayPlain() throws HyperledgerException {
+        HyperledgerValueCodec codec = new HyperledgerValueCodec(1);
+        NormalizedNode data = ImmutableNodes.leafNode(NAME, "x");
+
+        byte[] encoded = codec.encode(data);
+        assertEquals(0, encoded[0]);
+        assertEquals(data, codec.decode(encoded));
+    }
+
+    @Test
+    void decodeRejectsMalformedValues() throws HyperledgerException {
+        HyperledgerValueCodec codec = new HyperledgerValueCodec(0);
+        byte[] encoded = codec.encode(top(1));
+
+        assertThrows(HyperledgerException.class, () -> codec.decode(new byte[0]));
+        encoded[0] = 2;
+        assertThrows(HyperledgerException.class, () -> codec.decode(encoded));
+        encoded[0] = 1;
+        assertThrows(HyperledgerException.class, () -> codec.decode(encoded));
+    }
+
+    private static ContainerNode top(int entries) {
+        List<MapEntryNode> list = new ArrayList<>();
+        for (int i = 0; i < entries; i++) {
+            list.add(ImmutableNodes.newMapEntryBuilder()
+                    .withNodeIdentifier(NodeIdentifierWithPredicates.of(LIST, KEY, i))
+                    .withChild(ImmutableNodes.leafNode(KEY, i))
+                    .withChild(ImmutableNodes.leafNode(VALUE, "value of entry " + i))
+                    .build());
+        }
+        return ImmutableNodes.newContainerBuilder()
+                .withNodeIdentifier(new NodeIdentifier(TOP))
+                .withChild(ImmutableNodes.leafNode(NAME, "top"))
+                .withChild(ImmutableNodes.newSystemMapBuilder()
+                        .withNodeIdentifier(new NodeIdentifier(LIST))
+                        .withValue(list)
+                        .build())
+                .build();
+    }
+}